@@ -0,0 +1,22 @@
+package de.mrunde.bachelorthesis.activities;
+
+import android.util.Log;
+
+import de.mrunde.bachelorthesis.basics.Logger;
+
+/**
+ * The AndroidLogHandler writes the messages of the <code>Logger</code> to the
+ * Android log. It is installed by the activities, so that the instructions
+ * are logged just like the activities themselves.
+ * 
+ * @author Marius Runde
+ */
+public class AndroidLogHandler implements Logger.Handler {
+
+	@Override
+	public void log(int priority, String tag, String message) {
+		// The priorities of the Logger are the same as the ones of the
+		// Android log
+		Log.println(priority, tag, message);
+	}
+}
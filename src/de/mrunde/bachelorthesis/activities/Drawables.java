@@ -0,0 +1,146 @@
+package de.mrunde.bachelorthesis.activities;
+
+import de.mrunde.bachelorthesis.R;
+import de.mrunde.bachelorthesis.basics.LandmarkCategory;
+import de.mrunde.bachelorthesis.basics.Maneuver;
+
+/**
+ * The Drawables class maps the maneuver types and landmark categories to the
+ * image files of the app. It is kept apart from the <code>Maneuver</code> and
+ * <code>LandmarkCategory</code> classes because the resources only exist in
+ * the app.
+ * 
+ * @author Marius Runde
+ */
+public class Drawables {
+
+	/**
+	 * The Drawables class only offers static functions
+	 */
+	private Drawables() {
+	}
+
+	/**
+	 * Get the id of the corresponding image file for this maneuver type
+	 * 
+	 * @param maneuverType
+	 *            The maneuver type received from MapQuest
+	 * @return The id of the corresponding image file
+	 */
+	public static int getManeuverDrawableId(int maneuverType) {
+		switch (maneuverType) {
+		case Maneuver.NONE:
+			return R.drawable.ii_none;
+		case Maneuver.STRAIGHT:
+			return R.drawable.ii_straight;
+		case Maneuver.BECOMES:
+			return R.drawable.ii_none;
+		case Maneuver.SLIGHT_LEFT:
+			return R.drawable.ii_slight_left;
+		case Maneuver.LEFT:
+			return R.drawable.ii_left;
+		case Maneuver.SHARP_LEFT:
+			return R.drawable.ii_sharp_left;
+		case Maneuver.SLIGHT_RIGHT:
+			return R.drawable.ii_slight_right;
+		case Maneuver.RIGHT:
+			return R.drawable.ii_right;
+		case Maneuver.SHARP_RIGHT:
+			return R.drawable.ii_sharp_right;
+		case Maneuver.STAY_LEFT:
+			return R.drawable.ii_stay_left;
+		case Maneuver.STAY_RIGHT:
+			return R.drawable.ii_stay_right;
+		case Maneuver.STAY_STRAIGHT:
+			return R.drawable.ii_stay_straight;
+		case Maneuver.MERGE_LEFT:
+			return R.drawable.ii_merge_left;
+		case Maneuver.MERGE_RIGHT:
+			return R.drawable.ii_merge_right;
+		case Maneuver.MERGE_STRAIGHT:
+			return R.drawable.ii_merge_straight;
+		case Maneuver.ENTERING:
+			return R.drawable.ii_entering;
+		case Maneuver.DESTINATION:
+			return R.drawable.ii_destination;
+		case Maneuver.DESTINATION_LEFT:
+			return R.drawable.ii_destination_left;
+		case Maneuver.DESTINATION_RIGHT:
+			return R.drawable.ii_destination_right;
+		case Maneuver.ROUNDABOUT1:
+			return R.drawable.ii_roundabout1;
+		case Maneuver.ROUNDABOUT2:
+			return R.drawable.ii_roundabout2;
+		case Maneuver.ROUNDABOUT3:
+			return R.drawable.ii_roundabout3;
+		case Maneuver.ROUNDABOUT4:
+			return R.drawable.ii_roundabout4;
+		case Maneuver.ROUNDABOUT5:
+			return R.drawable.ii_roundabout5;
+		case Maneuver.ROUNDABOUT6:
+			return R.drawable.ii_roundabout6;
+		case Maneuver.ROUNDABOUT7:
+			return R.drawable.ii_roundabout7;
+		case Maneuver.ROUNDABOUT8:
+			return R.drawable.ii_roundabout8;
+		case Maneuver.TRANSIT_TAKE:
+			return R.drawable.ii_none;
+		case Maneuver.TRANSIT_TRANSFER:
+			return R.drawable.ii_none;
+		case Maneuver.TRANSIT_ENTER:
+			return R.drawable.ii_none;
+		case Maneuver.TRANSIT_EXIT:
+			return R.drawable.ii_none;
+		case Maneuver.TRANSIT_REMAIN_ON:
+			return R.drawable.ii_none;
+		default:
+			return R.drawable.ii_none;
+		}
+	}
+
+	/**
+	 * Get the id of the corresponding image file for this landmark category
+	 * 
+	 * @param category
+	 *            The landmark category
+	 * @return The id of the corresponding image file. -1 if
+	 *         <code>category</category> is not a valid landmark category
+	 */
+	public static int getLandmarkDrawableId(String category) {
+		if (LandmarkCategory.isCategory(category)) {
+			if (category.equals(LandmarkCategory.CEMETERY))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/halloween-cemetery_12010
+				return R.drawable.landmark_cemetery;
+			if (category.equals(LandmarkCategory.HARBOUR))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/anchor-white-shape-inside-a-black-rounded-square_27592
+				return R.drawable.landmark_harbour;
+			if (category.equals(LandmarkCategory.LAKE))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/sea_3491
+				return R.drawable.landmark_lake;
+			if (category.equals(LandmarkCategory.CHURCH))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/church-black-silhouette-with-a-cross-on-top_34127
+				return R.drawable.landmark_church;
+			if (category.equals(LandmarkCategory.CINEMA))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/film-strip-with-play-symbol_48406
+				return R.drawable.landmark_cinema;
+			if (category.equals(LandmarkCategory.RESTAURANT))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/fork-and-knife-cutlery-circle-interface-symbol-for-restaurant_45605
+				return R.drawable.landmark_restaurant;
+			if (category.equals(LandmarkCategory.SHOP))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/shopping-cart-1_2772
+				return R.drawable.landmark_shop;
+			if (category.equals(LandmarkCategory.SIGHTSEEING))
+				// Source of image file:
+				// http://www.flaticon.com/free-icon/greek-temple-monument_482
+				return R.drawable.landmark_sightseeing;
+		}
+		return -1;
+	}
+}
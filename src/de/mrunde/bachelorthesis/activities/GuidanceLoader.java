@@ -0,0 +1,343 @@
+package de.mrunde.bachelorthesis.activities;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import com.mapquest.android.maps.GeoPoint;
+
+import de.mrunde.bachelorthesis.R;
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.basics.StageTimer;
+import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.io.FeatureFormat;
+import de.mrunde.bachelorthesis.io.HttpDownloader;
+import de.mrunde.bachelorthesis.io.RouteCache;
+
+/**
+ * The GuidanceLoader prepares the guidance for the NaviActivity: it gets the
+ * route from the route cache or downloads it, loads the features and creates
+ * the instructions. The downloader, the route cache and the memory-mapped
+ * feature file are shared by all activities, so that the MainActivity can
+ * prepare the guidance in advance and each navigation reuses the connections
+ * and the features.<br/>
+ * <br/>
+ * The methods loading data must not be called on the UI thread.
+ * 
+ * @author Marius Runde
+ */
+public class GuidanceLoader {
+
+	/**
+	 * Number of instructions after the current one that are created before
+	 * they are needed. Only the first instructions are created before the
+	 * navigation starts, the remaining ones are created in the background.
+	 */
+	public static final int LOOK_AHEAD = 2;
+
+	/**
+	 * Downloader of the guidance which is shared by all navigations, so that
+	 * its connections can be reused
+	 */
+	private static final HttpDownloader downloader = new HttpDownloader();
+
+	static {
+		// Reusing connections of the HttpURLConnection is broken before
+		// Android 2.3
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD) {
+			System.setProperty("http.keepAlive", "false");
+		}
+	}
+
+	/**
+	 * Cache of the routes that have been downloaded before
+	 */
+	private static RouteCache routeCache;
+
+	/**
+	 * The memory-mapped file of the landmarks, street furniture and
+	 * intersections or <code>null</code> if it has not been loaded yet
+	 */
+	private static FeatureFile features;
+
+	/**
+	 * The context of the application
+	 */
+	private final Context context;
+
+	/**
+	 * Constructor of the GuidanceLoader class
+	 * 
+	 * @param context
+	 *            Any context of the application
+	 */
+	public GuidanceLoader(Context context) {
+		// Only the application context is kept, so that no activity is leaked
+		this.context = context.getApplicationContext();
+		synchronized (GuidanceLoader.class) {
+			if (routeCache == null) {
+				routeCache = new RouteCache(new File(
+						this.context.getCacheDir(), "routes"));
+			}
+		}
+	}
+
+	/**
+	 * Create the URL to request the guidance from MapQuest
+	 * 
+	 * @param from
+	 *            Start of the route (address or "lat,lng")
+	 * @param to
+	 *            Destination of the route (address or "lat,lng")
+	 * @return The URL
+	 * @throws UnsupportedEncodingException
+	 *             If the locations could not be encoded
+	 */
+	public String getGuidanceUrl(String from, String to)
+			throws UnsupportedEncodingException {
+		return "https://open.mapquestapi.com/guidance/v1/route?key="
+				+ this.context.getResources().getString(R.string.apiKey)
+				+ "&from="
+				+ URLEncoder.encode(from, "UTF-8")
+				+ "&to="
+				+ URLEncoder.encode(to, "UTF-8")
+				+ "&narrativeType=text&fishbone=false&callback=renderBasicInformation";
+	}
+
+	/**
+	 * Create the key of a route in the route cache
+	 * 
+	 * @param fromLat
+	 *            Latitude of the start
+	 * @param fromLng
+	 *            Longitude of the start
+	 * @param toLat
+	 *            Latitude of the destination
+	 * @param toLng
+	 *            Longitude of the destination
+	 * @param routeType
+	 *            The route type (e.g. "fastest")
+	 * @return The key
+	 */
+	public String createCacheKey(double fromLat, double fromLng, double toLat,
+			double toLng, String routeType) {
+		return routeCache.createKey(fromLat, fromLng, toLat, toLng, routeType);
+	}
+
+	/**
+	 * Prepare the complete guidance
+	 * 
+	 * @param url
+	 *            URL of the guidance
+	 * @param cacheKey
+	 *            Key of the route in the route cache
+	 * @return The prepared guidance
+	 */
+	public PreparedGuidance prepareGuidance(String url, String cacheKey) {
+		StageTimer timer = new StageTimer();
+		Route route = getRoute(url, cacheKey);
+		Log.i("GuidanceLoader", "Got the route in " + timer.lap("route")
+				+ " ms");
+		if (route == null) {
+			return new PreparedGuidance(R.string.routeNotCalculated);
+		}
+		FeatureFile features = getFeatures();
+		Log.i("GuidanceLoader", "Loaded the features in "
+				+ timer.lap("features") + " ms");
+		if (features == null) {
+			return new PreparedGuidance(R.string.jsonImportNotSuccessful);
+		}
+		return prepareGuidance(route, features, timer);
+	}
+
+	/**
+	 * Get a route from the route cache. If it is not cached, the guidance is
+	 * downloaded and the route is stored in the cache.
+	 * 
+	 * @param url
+	 *            URL of the guidance
+	 * @param cacheKey
+	 *            Key of the route in the route cache
+	 * @return The route or <code>null</code> if it could not be downloaded
+	 */
+	public Route getRoute(String url, String cacheKey) {
+		Route route = routeCache.get(cacheKey);
+		if (route == null) {
+			route = downloadRoute(url);
+			if (route != null) {
+				routeCache.put(cacheKey, route);
+			}
+		}
+		Log.i("GuidanceLoader", routeCache.toString());
+		return route;
+	}
+
+	/**
+	 * Download the guidance and read the route straight from the stream
+	 * (the "renderBasicInformation" stuff at the beginning and end of the
+	 * output is skipped by the Route)
+	 * 
+	 * @param url
+	 *            URL of the guidance
+	 * @return The route or <code>null</code> if it could not be downloaded
+	 */
+	private static Route downloadRoute(String url) {
+		try {
+			return downloader.get(url,
+					new HttpDownloader.ResponseHandler<Route>() {
+
+						@Override
+						public Route handleResponse(InputStream in)
+								throws IOException {
+							return new Route(in);
+						}
+					});
+		} catch (Exception e) {
+			Log.e("GuidanceLoader",
+					"Could not get the data. This is the error message: "
+							+ e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Get the memory-mapped file of the landmarks, street furniture and
+	 * intersections. It is mapped only once and then shared by all
+	 * navigations. Each route only reads the tiles along the route, so the
+	 * features are never loaded into the heap as a whole.
+	 * 
+	 * @return The feature file or <code>null</code> if the features could not
+	 *         be loaded
+	 */
+	public FeatureFile getFeatures() {
+		synchronized (GuidanceLoader.class) {
+			if (features == null) {
+				features = loadFeatures();
+			}
+			return features;
+		}
+	}
+
+	/**
+	 * Load the landmarks, street furniture and intersections from
+	 * res/raw/features.bin. The file is copied into the internal storage when
+	 * it has changed, so that it can be memory-mapped.
+	 * 
+	 * @return The feature file or <code>null</code> if it could not be loaded
+	 */
+	private FeatureFile loadFeatures() {
+		File file = new File(this.context.getFilesDir(), "features.bin");
+		try {
+			InputStream is = new BufferedInputStream(this.context
+					.getResources().openRawResource(R.raw.features));
+			try {
+				// Compare the checksums of the resource and the copy
+				is.mark(FeatureFormat.HEADER_SIZE);
+				int checksum = FeatureFile.readChecksum(is);
+				is.reset();
+				boolean upToDate = false;
+				if (file.exists()) {
+					InputStream copy = new FileInputStream(file);
+					try {
+						upToDate = FeatureFile.readChecksum(copy) == checksum;
+					} catch (IOException e) {
+						// The copy is invalid and will be replaced
+					} finally {
+						copy.close();
+					}
+				}
+
+				// Copy the resource into a temporary file first, so that an
+				// interrupted copy is never used
+				if (!upToDate) {
+					File temp = new File(this.context.getFilesDir(),
+							"features.bin.tmp");
+					OutputStream out = new FileOutputStream(temp);
+					try {
+						IOUtils.copy(is, out);
+					} finally {
+						out.close();
+					}
+					if (!temp.renameTo(file)) {
+						throw new IOException("Could not replace " + file);
+					}
+				}
+			} finally {
+				is.close();
+			}
+			return FeatureFile.map(file);
+		} catch (IOException e) {
+			Log.e("GuidanceLoader",
+					"Could not load the features. This is the error message: "
+							+ e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Create the first instructions of a route and prepare the data of the
+	 * route overlay. The instruction plan contains the instructions up to the
+	 * look-ahead after the first one and is completed with the
+	 * InstructionManager of the prepared guidance.
+	 * 
+	 * @param route
+	 *            The route
+	 * @param features
+	 *            The feature file. Only the tiles along the route are read.
+	 * @param timer
+	 *            Timer of the stages
+	 * @return The prepared guidance
+	 */
+	public static PreparedGuidance prepareGuidance(Route route,
+			FeatureFile features, StageTimer timer) {
+		// Create the first instructions
+		InstructionManager im = new InstructionManager(route, features);
+		if (!im.isImportSuccessful()) {
+			return new PreparedGuidance(R.string.jsonImportNotSuccessful);
+		}
+		InstructionPlan plan = im.createPlan(LOOK_AHEAD + 1);
+		Log.i("GuidanceLoader", "Created the first instructions in "
+				+ timer.lap("instructions") + " ms");
+
+		// Prepare the data of the route overlay
+		List<GeoPoint> shapePoints = toGeoPoints(plan.getShapePoints());
+		timer.lap("overlay");
+
+		Log.i("GuidanceLoader", "Prepared the guidance (" + timer + ")");
+		return new PreparedGuidance(plan, im, shapePoints, features,
+				timer.toString());
+	}
+
+	/**
+	 * Convert coordinates of the instructions into locations of the map
+	 * 
+	 * @param coordinates
+	 *            The coordinates
+	 * @return The locations of the map
+	 */
+	private static List<GeoPoint> toGeoPoints(Coordinate[] coordinates) {
+		List<GeoPoint> result = new ArrayList<GeoPoint>(coordinates.length);
+		for (int i = 0; i < coordinates.length; i++) {
+			result.add(new GeoPoint(coordinates[i].getLatitudeE6(),
+					coordinates[i].getLongitudeE6()));
+		}
+		return result;
+	}
+}
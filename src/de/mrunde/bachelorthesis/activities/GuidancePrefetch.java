@@ -0,0 +1,111 @@
+package de.mrunde.bachelorthesis.activities;
+
+import android.os.AsyncTask;
+import android.util.Log;
+
+/**
+ * The GuidancePrefetch prepares the guidance in the background while the user
+ * is still in the MainActivity. Only one prefetch exists at a time. It is
+ * kept in a static holder until the NaviActivity takes it for the same route
+ * or it is cancelled because the route has changed.
+ * 
+ * @author Marius Runde
+ */
+public class GuidancePrefetch extends
+		AsyncTask<String, Void, PreparedGuidance> {
+
+	/**
+	 * The current prefetch or <code>null</code> if there is none
+	 */
+	private static GuidancePrefetch current;
+
+	/**
+	 * The loader preparing the guidance
+	 */
+	private final GuidanceLoader loader;
+
+	/**
+	 * Key of the route in the route cache to identify the route
+	 */
+	private final String cacheKey;
+
+	/**
+	 * Constructor of the GuidancePrefetch class
+	 * 
+	 * @param loader
+	 *            The loader preparing the guidance
+	 * @param cacheKey
+	 *            Key of the route in the route cache
+	 */
+	private GuidancePrefetch(GuidanceLoader loader, String cacheKey) {
+		this.loader = loader;
+		this.cacheKey = cacheKey;
+	}
+
+	/**
+	 * Start prefetching the guidance. A previous prefetch is cancelled. This
+	 * must be called on the UI thread.
+	 * 
+	 * @param loader
+	 *            The loader preparing the guidance
+	 * @param url
+	 *            URL of the guidance
+	 * @param cacheKey
+	 *            Key of the route in the route cache
+	 */
+	public static synchronized void start(GuidanceLoader loader, String url,
+			String cacheKey) {
+		cancelPrefetch();
+		current = new GuidancePrefetch(loader, cacheKey);
+		current.execute(url);
+		Log.i("GuidancePrefetch", "Prefetching the guidance of " + cacheKey);
+	}
+
+	/**
+	 * Cancel the current prefetch, e.g. because the destination has changed
+	 */
+	public static synchronized void cancelPrefetch() {
+		if (current != null) {
+			current.cancel(true);
+			current = null;
+			Log.i("GuidancePrefetch", "Prefetch cancelled");
+		}
+	}
+
+	/**
+	 * Take the prefetched guidance of a route. If the prefetch is still
+	 * running, this waits until it has finished, so it must not be called on
+	 * the UI thread. Each prefetch can only be taken once.
+	 * 
+	 * @param cacheKey
+	 *            Key of the route in the route cache
+	 * @return The prefetched guidance or <code>null</code> if no guidance of
+	 *         the route has been prefetched successfully
+	 */
+	public static PreparedGuidance take(String cacheKey) {
+		GuidancePrefetch prefetch;
+		synchronized (GuidancePrefetch.class) {
+			prefetch = current;
+			if (prefetch == null || !prefetch.cacheKey.equals(cacheKey)) {
+				return null;
+			}
+			current = null;
+		}
+
+		try {
+			PreparedGuidance result = prefetch.get();
+			return result.isSuccessful() ? result : null;
+		} catch (Exception e) {
+			// The prefetch has been cancelled or has failed
+			Log.w("GuidancePrefetch",
+					"Could not take the prefetched guidance. This is the error message: "
+							+ e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	protected PreparedGuidance doInBackground(String... url) {
+		return this.loader.prepareGuidance(url[0], this.cacheKey);
+	}
+}
@@ -1,6 +1,7 @@
 package de.mrunde.bachelorthesis.activities;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.util.List;
 import java.util.Locale;
 
@@ -41,6 +42,7 @@ import com.mapquest.android.maps.RouteManager;
 import com.mapquest.android.maps.RouteResponse;
 
 import de.mrunde.bachelorthesis.R;
+import de.mrunde.bachelorthesis.basics.Logger;
 
 /**
  * This is the initial activity which is started with the application. It offers
@@ -142,6 +144,17 @@ public class MainActivity extends MapActivity implements OnInitListener {
 	 */
 	private double[] destination_coords = null;
 
+	/**
+	 * Coordinates of the current location when the route has been calculated
+	 * to be sent to the NaviActivity
+	 */
+	private double[] currentLocation_coords = null;
+
+	/**
+	 * Loader preparing the guidance for the NaviActivity in advance
+	 */
+	private GuidanceLoader loader;
+
 	/**
 	 * TextToSpeech for audio output
 	 */
@@ -160,9 +173,15 @@ public class MainActivity extends MapActivity implements OnInitListener {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.main);
 
+		// Write the log of the instructions to the Android log
+		Logger.setHandler(new AndroidLogHandler());
+
 		// Initialize the TextToSpeech
 		tts = new TextToSpeech(this, this);
 
+		// Initialize the loader of the guidance
+		loader = new GuidanceLoader(this);
+
 		// Set the route type to fastest
 		this.routeType = ROUTETYPE_FASTEST;
 
@@ -210,11 +229,12 @@ public class MainActivity extends MapActivity implements OnInitListener {
 				} else if (btn_calculate.getText() == getResources().getString(
 						R.string.calculate)) {
 					// Transform the current location into a String
+					currentLocation_coords = new double[] {
+							myLocationOverlay.getMyLocation().getLatitude(),
+							myLocationOverlay.getMyLocation().getLongitude() };
 					str_currentLocation = "{latLng:{lat:"
-							+ myLocationOverlay.getMyLocation().getLatitude()
-							+ ",lng:"
-							+ myLocationOverlay.getMyLocation().getLongitude()
-							+ "}}";
+							+ currentLocation_coords[0] + ",lng:"
+							+ currentLocation_coords[1] + "}}";
 
 					// Transform the destination location into a String
 					str_destination = "{latLng:{lat:" + destination_coords[0]
@@ -231,6 +251,11 @@ public class MainActivity extends MapActivity implements OnInitListener {
 					intent.putExtra("str_destination", str_destination);
 					intent.putExtra("destination_lat", destination_coords[0]);
 					intent.putExtra("destination_lng", destination_coords[1]);
+					intent.putExtra("currentLocation_lat",
+							currentLocation_coords[0]);
+					intent.putExtra("currentLocation_lng",
+							currentLocation_coords[1]);
+					intent.putExtra("routeType", routeType);
 					intent.putExtra("routeOptions", getRouteOptions());
 					startActivity(intent);
 				}
@@ -375,6 +400,9 @@ public class MainActivity extends MapActivity implements OnInitListener {
 		this.destination_coords = new double[] { destination.getLatitude(),
 				destination.getLongitude() };
 
+		// The prefetched guidance leads to the previous destination
+		GuidancePrefetch.cancelPrefetch();
+
 		// Clear previous overlays first
 		if (map.getOverlays().size() > 1) {
 			map.getOverlays().remove(1);
@@ -395,6 +423,23 @@ public class MainActivity extends MapActivity implements OnInitListener {
 				new BoundingBox(currentLocation, destination));
 	}
 
+	/**
+	 * Prefetch the guidance of the calculated route for the NaviActivity
+	 */
+	private void prefetchGuidance() {
+		try {
+			String url = loader.getGuidanceUrl(str_currentLocation,
+					str_destination);
+			GuidancePrefetch.start(loader, url, loader.createCacheKey(
+					currentLocation_coords[0], currentLocation_coords[1],
+					destination_coords[0], destination_coords[1], routeType));
+		} catch (UnsupportedEncodingException e) {
+			Log.e("MainActivity",
+					"Could not encode the URL. This is the error message: "
+							+ e.getMessage());
+		}
+	}
+
 	/**
 	 * Calculate the route from the current location to the destination
 	 */
@@ -424,6 +469,10 @@ public class MainActivity extends MapActivity implements OnInitListener {
 						getResources().getString(R.string.routeCalculated));
 				// Change the text of the button to enable navigation
 				btn_calculate.setText(R.string.start);
+
+				// Prepare the guidance while the user is still here, so that
+				// the navigation can begin instantly
+				prefetchGuidance();
 			}
 
 			@Override
@@ -610,6 +659,7 @@ public class MainActivity extends MapActivity implements OnInitListener {
 		if (btn_calculate.getText() == getResources().getString(R.string.start)) {
 			btn_calculate.setText(R.string.calculate);
 			rm.clearRoute();
+			GuidancePrefetch.cancelPrefetch();
 		}
 
 		// Change the route type in the settings
@@ -684,10 +734,12 @@ public class MainActivity extends MapActivity implements OnInitListener {
 	}
 
 	/**
-	 * Shut down the TextToSpeech engine when the application is terminated
+	 * Shut down the TextToSpeech engine and cancel the prefetch when the
+	 * application is terminated
 	 */
 	@Override
 	protected void onDestroy() {
+		GuidancePrefetch.cancelPrefetch();
 		if (tts != null) {
 			tts.stop();
 			tts.shutdown();
@@ -1,7 +1,7 @@
 /**
  * 
  */
-package de.mrunde.bachelorthesis.basics;
+package de.mrunde.bachelorthesis.activities;
 
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
@@ -1,27 +1,10 @@
 package de.mrunde.bachelorthesis.activities;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import android.annotation.TargetApi;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.Context;
@@ -35,6 +18,7 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.speech.tts.TextToSpeech;
@@ -58,14 +42,20 @@ import com.mapquest.android.maps.RouteManager;
 import com.mapquest.android.maps.RouteResponse;
 
 import de.mrunde.bachelorthesis.R;
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Landmark;
-import de.mrunde.bachelorthesis.basics.LandmarkCategory;
-import de.mrunde.bachelorthesis.basics.Maneuver;
-import de.mrunde.bachelorthesis.basics.MyDefaultItemizedOverlay;
+import de.mrunde.bachelorthesis.basics.Logger;
+import de.mrunde.bachelorthesis.basics.ReadinessLatch;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.basics.StageTimer;
+import de.mrunde.bachelorthesis.instructions.DecisionPointTracker;
 import de.mrunde.bachelorthesis.instructions.GlobalInstruction;
 import de.mrunde.bachelorthesis.instructions.Instruction;
 import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
 import de.mrunde.bachelorthesis.instructions.LandmarkInstruction;
+import de.mrunde.bachelorthesis.instructions.NavigationCursor;
+import de.mrunde.bachelorthesis.io.FeatureFile;
 
 /**
  * This is the navigational activity which is started by the MainActivity. It
@@ -84,6 +74,33 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 
 	// --- End of indexes ---
 
+	/**
+	 * Calculate the route with the RouteManager as well. If this is
+	 * <code>FALSE</code>, the guidance is the only request: its response
+	 * feeds both the route overlay and the instructions.
+	 */
+	private final boolean USE_ROUTE_MANAGER = false;
+
+	// --- The conditions to display the first instruction ---
+	/**
+	 * The route has been calculated by the RouteManager (or the RouteManager
+	 * is not used)
+	 */
+	private final int ROUTE_CALCULATED = 0;
+
+	/**
+	 * The instructions have been created and the route overlay has been added
+	 */
+	private final int INSTRUCTIONS_CREATED = 1;
+
+	/**
+	 * Latch to display the first instruction as soon as the route and the
+	 * instructions are ready
+	 */
+	private ReadinessLatch guidanceReady;
+
+	// --- End of conditions ---
+
 	// --- The graphical user interface (GUI) ---
 	/**
 	 * Instruction view (verbal)
@@ -129,6 +146,21 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	 */
 	private double destination_lng;
 
+	/**
+	 * Latitude of the current location when the route has been calculated
+	 */
+	private double currentLocation_lat;
+
+	/**
+	 * Longitude of the current location when the route has been calculated
+	 */
+	private double currentLocation_lng;
+
+	/**
+	 * Route type (e.g. "fastest")
+	 */
+	private String routeType;
+
 	/**
 	 * Route manager for route calculation
 	 */
@@ -139,11 +171,6 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	 */
 	private String routeOptions;
 
-	/**
-	 * Instruction manager that creates instructions
-	 */
-	private InstructionManager im;
-
 	/**
 	 * Location manager to monitor the user's location
 	 */
@@ -155,58 +182,50 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	private String provider;
 
 	/**
-	 * Minimum distance for a route segment to use a NowInstruction
-	 */
-	private final int MIN_DISTANCE_FOR_NOW_INSTRUCTION = 100;
-
-	/**
-	 * The NowInstruction will be returned at this distance before reaching the
-	 * next decision point
+	 * Tracker deciding when to switch the instructions while the user is
+	 * moving. It holds the cursor of the current instruction plan, so a new
+	 * plan is swapped in by replacing the tracker.
 	 */
-	private final int DISTANCE_FOR_NOW_INSTRUCTION = 48;
+	private DecisionPointTracker tracker;
 
 	/**
-	 * Variable to control if the usage of a NowInstruction has been checked
+	 * Loader preparing the guidance
 	 */
-	private boolean nowInstructionChecked = false;
+	private GuidanceLoader loader;
 
 	/**
-	 * Variable to control if a NowInstruction will be used
+	 * Feature file of the guidance. It is reused when the guidance is updated
+	 * after a driving error.
 	 */
-	private boolean nowInstructionUsed = false;
+	private FeatureFile features;
 
 	/**
-	 * Maximum distance to a decision point when it is supposed to be reached
+	 * Overlay of the route of the guidance
 	 */
-	private final int MAX_DISTANCE_TO_DECISION_POINT = 32;
+	private LineOverlay routeOverlay;
 
 	/**
-	 * Store the last distance between the next decision point and the current
-	 * location. Is set to 0 when the instruction is updated.
+	 * Last location of the user or <code>null</code> if it is unknown
 	 */
-	private double lastDistanceDP1 = 0;
+	private Location lastLocation;
 
 	/**
-	 * Store the last distance between the decision point after next and the
-	 * current location. Is set to 0 when the instruction is updated.
+	 * Task updating the guidance after a driving error or <code>null</code> if
+	 * none is running
 	 */
-	private double lastDistanceDP2 = 0;
+	private RerouteTask rerouteTask;
 
 	/**
-	 * Counts the distance changes between the next decision point, the decision
-	 * point after next and the current location. Is set to 0 after the
-	 * instruction has been updated. The instruction is updated when the counter
-	 * reaches its maximum negative value (<code>(-1) * MAX_COUNTER_VALUE</code>
-	 * ) or the next decision point has been reached. If the counter reaches the
-	 * maximum positive value (<code>MAX_COUNTER_VALUE</code>), the whole
-	 * guidance will be updated.
+	 * Task creating the remaining instructions in the background or
+	 * <code>null</code> if none is running
 	 */
-	private int distanceCounter = 0;
+	private CompletePlanTask completePlanTask;
 
 	/**
-	 * Maximum value for the <code>distanceCounter</code>.
+	 * Dialog shown while waiting for the remaining instructions to display
+	 * all instructions or <code>null</code> if none is shown
 	 */
-	private final int MAX_COUNTER_VALUE = 5;
+	private ProgressDialog allInstructionsDialog;
 
 	// --- End of route and instruction objects ---
 
@@ -230,14 +249,25 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.navi);
 
+		// Write the log of the instructions to the Android log
+		Logger.setHandler(new AndroidLogHandler());
+
 		// Get the route information from the intent
 		Intent intent = getIntent();
 		this.str_currentLocation = intent.getStringExtra("str_currentLocation");
 		this.str_destination = intent.getStringExtra("str_destination");
 		this.destination_lat = intent.getDoubleExtra("destination_lat", 0.0);
 		this.destination_lng = intent.getDoubleExtra("destination_lng", 0.0);
+		this.currentLocation_lat = intent.getDoubleExtra("currentLocation_lat",
+				0.0);
+		this.currentLocation_lng = intent.getDoubleExtra("currentLocation_lng",
+				0.0);
+		this.routeType = intent.getStringExtra("routeType");
 		this.routeOptions = intent.getStringExtra("routeOptions");
 
+		// Initialize the loader of the guidance
+		loader = new GuidanceLoader(this);
+
 		// Initialize the TextToSpeech
 		tts = new TextToSpeech(this, this);
 
@@ -263,8 +293,34 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		// Add the destination overlay to the map
 		addDestinationOverlay(destination_lat, destination_lng);
 
-		// Calculate the route
-		calculateRoute();
+		// Display the first instruction once the route and the instructions
+		// are ready
+		guidanceReady = new ReadinessLatch(2, new Runnable() {
+
+			@Override
+			public void run() {
+				runOnUiThread(new Runnable() {
+
+					@Override
+					public void run() {
+						// Get the first instruction and display it
+						displayInstruction(tracker.getCursor().moveTo(0));
+					}
+				});
+			}
+		});
+
+		// Zoom to current location
+		map.getController().animateTo(myLocationOverlay.getMyLocation());
+		map.getController().setZoom(18);
+
+		// Calculate the route. Without the RouteManager the route overlay is
+		// drawn from the guidance only, so there is nothing to wait for.
+		if (USE_ROUTE_MANAGER) {
+			calculateRoute();
+		} else {
+			guidanceReady.signal(ROUTE_CALCULATED);
+		}
 
 		// Get the guidance information and create the instructions
 		getGuidance();
@@ -389,21 +445,20 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 				// Route has been calculated successfully
 				Log.i("NaviActivity",
 						getResources().getString(R.string.routeCalculated));
+				guidanceReady.signal(ROUTE_CALCULATED);
 			}
 
 			@Override
 			public void onError(RouteResponse response) {
-				// Route could not be calculated
+				// Route could not be calculated. The route overlay of the
+				// guidance is displayed anyway, so do not wait for it.
 				Log.e("NaviActivity",
 						getResources().getString(R.string.routeNotCalculated));
+				guidanceReady.signal(ROUTE_CALCULATED);
 			}
 		});
 		// Calculate the route and display it on the map
 		rm.createRoute(str_currentLocation, str_destination);
-
-		// Zoom to current location
-		map.getController().animateTo(myLocationOverlay.getMyLocation());
-		map.getController().setZoom(18);
 	}
 
 	/**
@@ -413,13 +468,7 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		// Create the URL to request the guidance from MapQuest
 		String url;
 		try {
-			url = "https://open.mapquestapi.com/guidance/v1/route?key="
-					+ getResources().getString(R.string.apiKey)
-					+ "&from="
-					+ URLEncoder.encode(str_currentLocation, "UTF-8")
-					+ "&to="
-					+ URLEncoder.encode(str_destination, "UTF-8")
-					+ "&narrativeType=text&fishbone=false&callback=renderBasicInformation";
+			url = loader.getGuidanceUrl(str_currentLocation, str_destination);
 		} catch (UnsupportedEncodingException e) {
 			Log.e("NaviActivity",
 					"Could not encode the URL. This is the error message: "
@@ -433,23 +482,22 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	}
 
 	/**
-	 * This is a class to get the JSON file asynchronously from the given URL.
+	 * This is a class to prepare the guidance asynchronously. Downloading and
+	 * parsing the route, loading the features and creating the instructions
+	 * run as stages in the background. Only the first instructions and the
+	 * overlay data are handed to the UI thread.
 	 * 
 	 * @author Marius Runde
 	 */
-	private class GetJsonTask extends AsyncTask<String, Void, JSONObject> {
+	private class GetJsonTask extends
+			AsyncTask<String, String, PreparedGuidance> {
 
 		/**
-		 * Progress dialog to inform the user about the download
+		 * Progress dialog to inform the user about the current stage
 		 */
 		private ProgressDialog progressDialog = new ProgressDialog(
 				NaviActivity.this);
 
-		/**
-		 * Count the time needed for the data download
-		 */
-		private int downloadTimer;
-
 		@Override
 		protected void onPreExecute() {
 			// Display progress dialog
@@ -464,158 +512,207 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 					GetJsonTask.this.cancel(true);
 				}
 			});
-
-			// Set timer to current time
-			downloadTimer = Calendar.getInstance().get(Calendar.SECOND);
 		}
 
 		@Override
-		protected JSONObject doInBackground(String... url) {
-			// Get the data from the URL
-			String output = "";
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpResponse response;
-			try {
-				response = httpclient.execute(new HttpGet(url[0]));
-				StatusLine statusLine = response.getStatusLine();
-				if (statusLine.getStatusCode() == HttpStatus.SC_OK) {
-					ByteArrayOutputStream out = new ByteArrayOutputStream();
-					response.getEntity().writeTo(out);
-					out.close();
-					output = out.toString();
-				} else {
-					// Close the connection
-					response.getEntity().getContent().close();
-					throw new IOException(statusLine.getReasonPhrase());
-				}
-			} catch (Exception e) {
-				Log.e("GetJsonTask",
-						"Could not get the data. This is the error message: "
-								+ e.getMessage());
-				return null;
-			}
-
-			// Delete the "renderBasicInformation" stuff at the beginning and
-			// end of the output if needed to convert it to a JSONObject
-			if (output.startsWith("renderBasicInformation(")) {
-				output = output.substring(23, output.length());
+		protected PreparedGuidance doInBackground(String... url) {
+			String cacheKey = loader.createCacheKey(currentLocation_lat,
+					currentLocation_lng, destination_lat, destination_lng,
+					routeType);
+
+			// Use the guidance prefetched by the MainActivity if available
+			PreparedGuidance prefetched = GuidancePrefetch.take(cacheKey);
+			if (prefetched != null) {
+				Log.i("GetJsonTask", "Using the prefetched guidance ("
+						+ prefetched.getTiming() + ")");
+				return prefetched;
 			}
-			if (output.endsWith(");")) {
-				output = output.substring(0, output.length() - 2);
+			StageTimer timer = new StageTimer();
+
+			// Get the route from the cache or download the guidance and read
+			// the route straight from the stream
+			Route route = loader.getRoute(url[0], cacheKey);
+			Log.i("GetJsonTask", "Downloaded and parsed the route in "
+					+ timer.lap("route") + " ms");
+			if (route == null || isCancelled()) {
+				return new PreparedGuidance(R.string.routeNotCalculated);
 			}
 
-			// Convert the output to a JSONObject
-			try {
-				JSONObject result = new JSONObject(output);
-				return result;
-			} catch (JSONException e) {
-				Log.e("GetJsonTask",
-						"Could not convert output to JSONObject. This is the error message: "
-								+ e.getMessage());
-				return null;
+			// Load the landmarks, street furniture and intersections from
+			// res/raw/features.bin. The file is mapped only once, so that it
+			// can be reused when the guidance is updated.
+			publishProgress("Loading landmarks...");
+			FeatureFile features = loader.getFeatures();
+			if (features == null || isCancelled()) {
+				return new PreparedGuidance(R.string.jsonImportNotSuccessful);
 			}
+			Log.i("GetJsonTask", "Loaded the features in "
+					+ timer.lap("features") + " ms");
+
+			// Create the instructions
+			publishProgress("Creating instructions...");
+			return GuidanceLoader.prepareGuidance(route, features, timer);
 		}
 
 		@Override
-		protected void onPostExecute(JSONObject result) {
+		protected void onProgressUpdate(String... stage) {
+			// Display the current stage
+			progressDialog.setMessage(stage[0]);
+		}
+
+		@Override
+		protected void onPostExecute(PreparedGuidance result) {
 			// Dismiss progress dialog
 			progressDialog.dismiss();
 
-			// Write the time needed for the download into the log
-			downloadTimer = Calendar.getInstance().get(Calendar.SECOND)
-					- downloadTimer;
-			Log.i("GetJsonTask", "Completed guidance download in "
-					+ downloadTimer + " seconds");
-
-			// Check if the download was successful
-			if (result == null) {
-				// Could not receive the JSON
+			// Check if the guidance has been prepared successfully
+			if (!result.isSuccessful()) {
 				Toast.makeText(NaviActivity.this,
-						getResources().getString(R.string.routeNotCalculated),
+						getResources().getString(result.getErrorMessage()),
 						Toast.LENGTH_SHORT).show();
 				// Finish the activity to return to MainActivity
 				finish();
 			} else {
-				// Create the instructions
-				createInstructions(result);
+				debugger += "Guidance prepared (" + result.getTiming() + ")\n";
+				features = result.getFeatures();
+				startNavigation(result);
 
-				// Draw the route and display the first instruction
-				drawRoute(result);
+				// Draw the route
+				drawRoute(result.getShapePoints());
+
+				// The first instruction is displayed as soon as the
+				// RouteManager has calculated the route as well
+				guidanceReady.signal(INSTRUCTIONS_CREATED);
 			}
 		}
 	}
 
 	/**
-	 * Create the instructions for the navigation
+	 * Start navigating along the instruction plan of a prepared guidance. The
+	 * plan only contains the first instructions. The remaining ones are
+	 * created in the background, until then the cursor creates the
+	 * instructions it needs itself.
 	 * 
 	 * @param guidance
-	 *            The guidance information from MapQuest
+	 *            The prepared guidance
 	 */
-	private void createInstructions(JSONObject guidance) {
-		// Load the landmarks as a JSONObject from res/raw/landmarks.json
-		InputStream is = getResources().openRawResource(R.raw.landmarks);
-		JSONObject landmarks = null;
-		try {
-			String rawJson = IOUtils.toString(is, "UTF-8");
-			landmarks = new JSONObject(rawJson);
-		} catch (Exception e) {
-			// Could not load landmarks
-			Log.e("NaviActivity",
-					"Could not load landmarks. This is the error message: "
-							+ e.getMessage());
+	private void startNavigation(PreparedGuidance guidance) {
+		tracker = new DecisionPointTracker(new NavigationCursor(
+				guidance.getPlan(), guidance.getManager(),
+				GuidanceLoader.LOOK_AHEAD));
+
+		// Create the remaining instructions in the background
+		completePlan();
+	}
+
+	/**
+	 * Create the remaining instructions of the current instruction plan in
+	 * the background. A task which is still running for a previous plan is
+	 * cancelled.
+	 */
+	private void completePlan() {
+		if (completePlanTask != null) {
+			completePlanTask.cancel(true);
 		}
+		completePlanTask = new CompletePlanTask(tracker.getCursor()
+				.getManager());
+		executeInParallel(completePlanTask, tracker.getCursor().getPlan());
+	}
 
-		// Load the street furniture as a JSONArray from
-		// res/raw/streetfurniture.json
-		is = getResources().openRawResource(R.raw.streetfurniture);
-		JSONArray streetFurniture = null;
-		try {
-			String rawJson = IOUtils.toString(is, "UTF-8");
-			streetFurniture = new JSONArray(rawJson);
-		} catch (Exception e) {
-			// Could not load street furniture
-			Log.e("NaviActivity",
-					"Could not load street furniture. This is the error message: "
-							+ e.getMessage());
+	/**
+	 * Execute a task next to the other tasks. Since Android 3.0 the tasks are
+	 * executed one after another by default, so e.g. a reroute would wait
+	 * until the instructions of the previous guidance have been created.
+	 * 
+	 * @param task
+	 *            The task
+	 * @param params
+	 *            The parameters of the task
+	 */
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	private static <Params> void executeInParallel(
+			AsyncTask<Params, ?, ?> task, Params... params) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, params);
+		} else {
+			// The tasks are executed in parallel before Android 3.0 anyway
+			task.execute(params);
 		}
+	}
 
-		// Load the intersections as a JSONArray from res/raw/intersections.json
-		is = getResources().openRawResource(R.raw.intersections);
-		JSONArray intersections = null;
-		try {
-			String rawJson = IOUtils.toString(is, "UTF-8");
-			intersections = new JSONArray(rawJson);
-		} catch (Exception e) {
-			// Could not load intersections
-			Log.e("NaviActivity",
-					"Could not load intersections. This is the error message: "
-							+ e.getMessage());
+	/**
+	 * This class creates the remaining instructions of an instruction plan in
+	 * the background. The plan is not changed, the complete plan is handed to
+	 * the cursor on the UI thread instead.
+	 * 
+	 * @author Marius Runde
+	 */
+	private class CompletePlanTask extends
+			AsyncTask<InstructionPlan, Void, InstructionPlan> {
+
+		/**
+		 * The InstructionManager that has created the plan
+		 */
+		private final InstructionManager manager;
+
+		/**
+		 * Constructor of the CompletePlanTask class
+		 * 
+		 * @param manager
+		 *            The InstructionManager that has created the plan
+		 */
+		public CompletePlanTask(InstructionManager manager) {
+			this.manager = manager;
 		}
 
-		// Create the instruction manager
-		im = new InstructionManager(guidance, landmarks, streetFurniture,
-				intersections);
-		// Check if the import was successful
-		if (im.isImportSuccessful()) {
-			// Create the instructions
-			im.createInstructions();
-		} else {
-			// Import was not successful
-			Toast.makeText(this,
-					getResources().getString(R.string.jsonImportNotSuccessful),
-					Toast.LENGTH_SHORT).show();
-			// Finish the activity to return to MainActivity
-			finish();
+		@Override
+		protected InstructionPlan doInBackground(InstructionPlan... plan) {
+			return this.manager.completePlan(plan[0]);
+		}
+
+		@Override
+		protected void onPostExecute(InstructionPlan result) {
+			completePlanTask = null;
+			// The plan is ignored if the guidance has been updated meanwhile
+			if (tracker.getCursor().offerPlan(result)) {
+				Log.i("CompletePlanTask", "All "
+						+ result.getNumberOfInstructions()
+						+ " instructions created");
+			}
+
+			// Display all instructions if the user is waiting for them
+			if (allInstructionsDialog != null) {
+				boolean waiting = allInstructionsDialog.isShowing();
+				allInstructionsDialog.dismiss();
+				allInstructionsDialog = null;
+				if (waiting) {
+					showAllInstructions();
+				}
+			}
 		}
 	}
 
 	/**
-	 * Draw the route with the given shapePoints from the guidance information
+	 * Convert a coordinate of the instructions into a location of the map
 	 * 
-	 * @param json
-	 *            The guidance information from MapQuest
+	 * @param coordinate
+	 *            The coordinate
+	 * @return The location of the map
 	 */
-	private void drawRoute(JSONObject json) {
+	private static GeoPoint toGeoPoint(Coordinate coordinate) {
+		return new GeoPoint(coordinate.getLatitudeE6(),
+				coordinate.getLongitudeE6());
+	}
+
+	/**
+	 * Draw the route with the shapePoints from the guidance information. A
+	 * previously drawn route is replaced at its position, so that the indexes
+	 * of the other overlays stay the same.
+	 * 
+	 * @param shapePoints
+	 *            The shape points of the route
+	 */
+	private void drawRoute(List<GeoPoint> shapePoints) {
 		// Set custom line style
 		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
 		paint.setColor(Color.BLUE);
@@ -623,30 +720,20 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		paint.setStrokeWidth(5);
 
 		// Initialize the route overlay
-		List<GeoPoint> shapePoints = new ArrayList<GeoPoint>(
-				Arrays.asList(this.im.getShapePoints()));
 		LineOverlay drawnRoute = new LineOverlay(paint);
 		drawnRoute.setData(shapePoints);
 
-		// Add the drawn route to the map
-		map.getOverlays().add(drawnRoute);
-		Log.d("NaviActivity", "Route overlay added");
-
-		if (!im.isImportSuccessful()) {
-			// Import was not successful
-			Toast.makeText(NaviActivity.this,
-					getResources().getString(R.string.jsonImportNotSuccessful),
-					Toast.LENGTH_SHORT).show();
-			// Finish the activity to return to the MainActivity
-			finish();
+		// Add the drawn route to the map or replace the previous one
+		int index = map.getOverlays().indexOf(routeOverlay);
+		if (index >= 0) {
+			map.getOverlays().set(index, drawnRoute);
+			Log.d("NaviActivity", "Route overlay replaced");
 		} else {
-			do {
-				// Route is not displayed yet
-			} while (!this.isRouteDisplayed());
-
-			// Get the first instruction and display it
-			displayInstruction(im.getInstruction(0));
+			map.getOverlays().add(drawnRoute);
+			Log.d("NaviActivity", "Route overlay added");
 		}
+		routeOverlay = drawnRoute;
+		map.invalidate();
 	}
 
 	@Override
@@ -693,17 +780,17 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		// Handle item selection
 		switch (item.getItemId()) {
 		case R.id.menu_allInstructions:
-			// Create an array of all verbal instructions
-			String[] allInstructions = im.getVerbalInstructions();
-
-			// Display all instructions in a list
-			AlertDialog.Builder builder1 = new AlertDialog.Builder(
-					NaviActivity.this);
-			builder1.setTitle(R.string.allInstructions);
-			builder1.setItems(allInstructions, null);
-
-			AlertDialog alertDialog1 = builder1.create();
-			alertDialog1.show();
+			if (tracker.getCursor().getPlan().isComplete()) {
+				showAllInstructions();
+			} else {
+				// Wait until the remaining instructions have been created in
+				// the background
+				allInstructionsDialog = ProgressDialog.show(NaviActivity.this,
+						null, "Creating instructions...", true, true);
+				if (completePlanTask == null) {
+					completePlan();
+				}
+			}
 			return true;
 		case R.id.menu_debugger:
 			// Display all stored logs in a list
@@ -720,6 +807,24 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		}
 	}
 
+	/**
+	 * Display all instructions of the current instruction plan in a list
+	 */
+	private void showAllInstructions() {
+		// Create an array of all verbal instructions
+		String[] allInstructions = tracker.getCursor().getPlan()
+				.getVerbalInstructions();
+
+		// Display all instructions in a list
+		AlertDialog.Builder builder = new AlertDialog.Builder(
+				NaviActivity.this);
+		builder.setTitle(R.string.allInstructions);
+		builder.setItems(allInstructions, null);
+
+		AlertDialog alertDialog = builder.create();
+		alertDialog.show();
+	}
+
 	@Override
 	protected void onResume() {
 		// Enable features of the MyLocationOverlay
@@ -738,6 +843,25 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 		lm.removeUpdates(this);
 	}
 
+	@Override
+	protected void onDestroy() {
+		// Stop updating the guidance
+		if (rerouteTask != null) {
+			rerouteTask.cancel(true);
+			rerouteTask = null;
+		}
+		// Stop creating the remaining instructions
+		if (completePlanTask != null) {
+			completePlanTask.cancel(true);
+			completePlanTask = null;
+		}
+		if (allInstructionsDialog != null) {
+			allInstructionsDialog.dismiss();
+			allInstructionsDialog = null;
+		}
+		super.onDestroy();
+	}
+
 	@Override
 	public void onInit(int status) {
 		// Initialize the TextToSpeech engine
@@ -753,94 +877,39 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	@Override
 	public void onLocationChanged(Location location) {
 		debugger += "onLocationChanged() called...\n";
+		lastLocation = location;
 
-		double lat = location.getLatitude();
-		double lng = location.getLongitude();
-
-		// Check if the instruction manager has been initialized already
-		if (im != null) {
-			// Get the coordinates of the next decision point
-			double dp1Lat = im.getCurrentInstruction().getDecisionPoint()
-					.getLatitude();
-			double dp1Lng = im.getCurrentInstruction().getDecisionPoint()
-					.getLongitude();
-
-			// Get the coordinates of the decision point after next
-			double dp2Lat = im.getNextInstructionLocation().getLatitude();
-			double dp2Lng = im.getNextInstructionLocation().getLongitude();
-
-			// Calculate the distance to the next decision point
-			float[] results = new float[1];
-			Location.distanceBetween(lat, lng, dp1Lat, dp1Lng, results);
-			double distanceDP1 = results[0];
-
-			// Check whether a now instruction must be used (only once for each
-			// route segment)
-			if (nowInstructionChecked == false
-					&& distanceDP1 >= MIN_DISTANCE_FOR_NOW_INSTRUCTION) {
-				nowInstructionUsed = true;
-			}
-			nowInstructionChecked = true;
-
-			// Calculate the distance to the decision point after next
-			Location.distanceBetween(lat, lng, dp2Lat, dp2Lng, results);
-			double distanceDP2 = results[0];
+		// Check if the instructions have been created already
+		if (tracker != null) {
+			int result = tracker.onLocationChanged(location.getLatitude(),
+					location.getLongitude());
 
 			// Log the distances
-			String distancesString = "LastDistanceDP1: " + lastDistanceDP1
-					+ " | distanceDP1: " + distanceDP1 + " | LastDistanceDP2: "
-					+ lastDistanceDP2 + " | distanceDP2: " + distanceDP2;
+			String distancesString = "distanceDP1: "
+					+ tracker.getDistanceDP1() + " | distanceDP2: "
+					+ tracker.getDistanceDP2() + " | distanceCounter: "
+					+ tracker.getDistanceCounter();
 			debugger += distancesString + "\n";
 			Log.v("NaviActivity.onLocationChanged", distancesString);
 
-			// Check the distances with the stored ones
-			if (distanceDP1 < MAX_DISTANCE_TO_DECISION_POINT) {
-				// Distance to decision point is less than
-				// MAX_DISTANCE_TO_DECISION_POINT
+			switch (result) {
+			case DecisionPointTracker.NEXT_INSTRUCTION:
+				// The next decision point has been reached
 				updateInstruction();
-			} else if (distanceDP1 < DISTANCE_FOR_NOW_INSTRUCTION
-					&& nowInstructionUsed == true) {
-				// Distance to decision point is less than
-				// DISTANCE_FOR_NOW_INSTRUCTION and decreasing, so a now
-				// instruction is prompted to the user
+				break;
+			case DecisionPointTracker.NOW_INSTRUCTION:
+				// The next decision point is close, so a now instruction is
+				// prompted to the user
 				updateNowInstruction();
-				// Set variable nowInstructionUsed to false, so that the now
-				// instruction is only used once
-				nowInstructionUsed = false;
-			} else if (distanceDP1 > lastDistanceDP1
-					&& distanceDP2 < lastDistanceDP2) {
-				// The distance to the next decision point has increased and the
-				// distance to the decision point after next has decreased
-				lastDistanceDP1 = distanceDP1;
-				lastDistanceDP2 = distanceDP2;
-				distanceCounter++;
-
-				String logMessage = "distanceCounter: " + distanceCounter;
-				debugger += logMessage + "\n";
-				Log.v("NaviActivity.onLocationChanged", logMessage);
-			} else if (distanceDP1 > lastDistanceDP1
-					&& distanceDP2 > lastDistanceDP2) {
-				// Distance to the next decision point and the decision point
-				// after next has increased (can lead to a driving error)
-				lastDistanceDP1 = distanceDP1;
-				lastDistanceDP2 = distanceDP2;
-				distanceCounter--;
-
-				String logMessage = "distanceIncreaseCounter: "
-						+ distanceCounter;
-				debugger += logMessage + "\n";
-				Log.v("NaviActivity.onLocationChanged", logMessage);
-			}
-
-			// Check if the whole guidance needs to be reloaded due to a driving
-			// error (user seems to go away from both the decision point and the
-			// decision point after next)
-			if (distanceCounter < (-1 * MAX_COUNTER_VALUE)) {
+				break;
+			case DecisionPointTracker.UPDATE_GUIDANCE:
+				// The user seems to go away from both the decision point and
+				// the decision point after next
 				updateGuidance();
-			}
-			// Check if the instruction needs to be updated
-			if (distanceCounter > MAX_COUNTER_VALUE) {
-				updateInstruction();
+				break;
+			case DecisionPointTracker.DESTINATION_REACHED:
+				Log.i("NaviActivity", "Destination reached");
+				break;
 			}
 		}
 	}
@@ -861,25 +930,16 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	}
 
 	/**
-	 * Called when the next decision point has been reached to update the
-	 * current instruction to the following instruction.
+	 * Called when the next decision point has been reached and the tracker has
+	 * moved the cursor to the following instruction.
 	 */
 	private void updateInstruction() {
 		String logMessage = "Updating Instruction...";
 		debugger += logMessage + "\n";
 		Log.i("NaviActivity", logMessage);
 
-		// Reset the distances, their counters, and the NowInstruction
-		// controllers
-		lastDistanceDP1 = 0;
-		lastDistanceDP2 = 0;
-		distanceCounter = 0;
-		nowInstructionChecked = false;
-		nowInstructionUsed = false;
-
-		// Get the next instruction and display it
-		Instruction nextInstruction = im.getNextInstruction();
-		displayInstruction(nextInstruction);
+		// Display the next instruction
+		displayInstruction(tracker.getCursor().getCurrentInstruction());
 	}
 
 	/**
@@ -899,7 +959,7 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 
 		// Get the corresponding instruction image and display it
 		this.iv_instruction.setImageDrawable(getResources().getDrawable(
-				Maneuver.getDrawableId(instruction.getManeuverType())));
+				Drawables.getManeuverDrawableId(instruction.getManeuverType())));
 		// --- End of update the instruction view ---
 
 		// --- Update the landmarks on the map (if available) ---
@@ -913,11 +973,11 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 			Landmark newLocalLandmark = ((LandmarkInstruction) instruction)
 					.getLocal();
 			OverlayItem oi_newLocalLandmark = new OverlayItem(
-					newLocalLandmark.getCenter(), newLocalLandmark.getTitle(),
-					newLocalLandmark.getCategory());
+					toGeoPoint(newLocalLandmark.getCenter()),
+					newLocalLandmark.getTitle(), newLocalLandmark.getCategory());
 			MyDefaultItemizedOverlay newLocalLandmarkOverlay = new MyDefaultItemizedOverlay(
 					getResources().getDrawable(
-							LandmarkCategory.getDrawableId(newLocalLandmark
+							Drawables.getLandmarkDrawableId(newLocalLandmark
 									.getCategory())));
 			newLocalLandmarkOverlay.addItem(oi_newLocalLandmark);
 			this.map.getOverlays().add(this.INDEX_OF_LANDMARK_OVERLAY,
@@ -929,12 +989,12 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 			Landmark newGlobalLandmark = ((GlobalInstruction) instruction)
 					.getGlobal();
 			OverlayItem oi_newGlobalLandmark = new OverlayItem(
-					newGlobalLandmark.getCenter(),
+					toGeoPoint(newGlobalLandmark.getCenter()),
 					newGlobalLandmark.getTitle(),
 					newGlobalLandmark.getCategory());
 			MyDefaultItemizedOverlay newGlobalLandmarkOverlay = new MyDefaultItemizedOverlay(
 					getResources().getDrawable(
-							LandmarkCategory.getDrawableId(newGlobalLandmark
+							Drawables.getLandmarkDrawableId(newGlobalLandmark
 									.getCategory())));
 			newGlobalLandmarkOverlay.addItem(oi_newGlobalLandmark);
 			this.map.getOverlays().add(this.INDEX_OF_LANDMARK_OVERLAY,
@@ -956,15 +1016,15 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 	}
 
 	/**
-	 * Called when the next decision point will be reached in
-	 * <code>DISTANCE_FOR_NOW_INSTRUCTION</code> and a
+	 * Called when the next decision point will be reached soon (see
+	 * <code>DecisionPointTracker</code>) and a
 	 * <code>NowInstruction</code> is used to update the current instruction to
 	 * the instruction. The map is not changed as in the
 	 * <code>updateInstruction</code> method.
 	 */
 	private void updateNowInstruction() {
 		// Get the now instruction
-		Instruction nowInstruction = im.getNowInstruction();
+		Instruction nowInstruction = tracker.getCursor().getNowInstruction();
 
 		// --- Update the instruction view ---
 		// Get the verbal instruction
@@ -980,16 +1040,129 @@ public class NaviActivity extends MapActivity implements OnInitListener,
 
 	/**
 	 * Update the complete guidance. This method is called when a driving error
-	 * has occurred.
+	 * has occurred. The guidance is requested from the last location of the
+	 * user and the new instructions replace the current ones without
+	 * restarting the activity.
 	 */
 	private void updateGuidance() {
+		// Check if the guidance is being updated already
+		if (rerouteTask != null) {
+			return;
+		}
+
+		// The remaining instructions of the current guidance are not needed
+		// anymore, so stop creating them to free the thread
+		if (completePlanTask != null) {
+			completePlanTask.cancel(true);
+			completePlanTask = null;
+		}
+
 		// Inform the user about updating the guidance
 		Log.i("NaviActivity", "Updating guidance...");
 		tts.setSpeechRate((float) 1);
 		tts.speak("Updating guidance", TextToSpeech.QUEUE_FLUSH, null);
 
-		// Restart the activity
-		finish();
-		startActivity(getIntent());
+		// Request the guidance from the last location to the destination. The
+		// coordinates are used directly, so they do not need to be geocoded.
+		String url;
+		try {
+			url = loader.getGuidanceUrl(lastLocation.getLatitude() + ","
+					+ lastLocation.getLongitude(), destination_lat + ","
+					+ destination_lng);
+		} catch (UnsupportedEncodingException e) {
+			Log.e("NaviActivity",
+					"Could not encode the URL. This is the error message: "
+							+ e.getMessage());
+			tracker.reset();
+			return;
+		}
+		rerouteTask = new RerouteTask(features, loader.createCacheKey(
+				lastLocation.getLatitude(), lastLocation.getLongitude(),
+				destination_lat, destination_lng, routeType));
+		executeInParallel(rerouteTask, url);
+	}
+
+	/**
+	 * This class updates the guidance in the background. The new route reads
+	 * the tiles along its corridor from the memory-mapped feature file shared
+	 * by all navigations, so only the route needs to be downloaded. The new
+	 * instruction plan replaces the current one on the UI thread at once.
+	 * 
+	 * @author Marius Runde
+	 */
+	private class RerouteTask extends
+			AsyncTask<String, Void, PreparedGuidance> {
+
+		/**
+		 * The memory-mapped feature file shared by all navigations
+		 */
+		private final FeatureFile features;
+
+		/**
+		 * Key of the route in the route cache
+		 */
+		private final String cacheKey;
+
+		/**
+		 * Constructor of the RerouteTask class
+		 * 
+		 * @param features
+		 *            The memory-mapped feature file shared by all navigations
+		 * @param cacheKey
+		 *            Key of the route in the route cache
+		 */
+		public RerouteTask(FeatureFile features, String cacheKey) {
+			this.features = features;
+			this.cacheKey = cacheKey;
+		}
+
+		@Override
+		protected PreparedGuidance doInBackground(String... url) {
+			StageTimer timer = new StageTimer();
+
+			// Get the route from the cache or download the guidance
+			Route route = loader.getRoute(url[0], this.cacheKey);
+			Log.i("RerouteTask", "Downloaded and parsed the route in "
+					+ timer.lap("route") + " ms");
+			if (route == null || isCancelled()) {
+				return new PreparedGuidance(R.string.routeNotCalculated);
+			}
+
+			// Create the instructions from the tiles of the shared feature file
+			// along the new route
+			return GuidanceLoader.prepareGuidance(route, this.features, timer);
+		}
+
+		@Override
+		protected void onPostExecute(PreparedGuidance result) {
+			rerouteTask = null;
+			if (!result.isSuccessful()) {
+				// Keep the current guidance until the next driving error
+				Toast.makeText(NaviActivity.this,
+						getResources().getString(result.getErrorMessage()),
+						Toast.LENGTH_SHORT).show();
+				tracker.reset();
+
+				// Continue creating the remaining instructions of the current
+				// guidance
+				if (!tracker.getCursor().getPlan().isComplete()) {
+					completePlan();
+				}
+			} else {
+				debugger += "Guidance updated (" + result.getTiming() + ")\n";
+
+				// Swap the instruction plan
+				startNavigation(result);
+
+				// The route of the RouteManager is outdated now
+				if (rm != null) {
+					rm.clearRoute();
+				}
+
+				// Draw the new route and display its first instruction
+				drawRoute(result.getShapePoints());
+				displayInstruction(tracker.getCursor().moveTo(0));
+			}
+		}
 	}
 }
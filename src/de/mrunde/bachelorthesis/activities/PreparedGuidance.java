@@ -0,0 +1,142 @@
+package de.mrunde.bachelorthesis.activities;
+
+import java.util.List;
+
+import com.mapquest.android.maps.GeoPoint;
+
+import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+
+/**
+ * The PreparedGuidance contains everything the NaviActivity needs to start
+ * the navigation. It is prepared in the background by the
+ * <code>GuidanceLoader</code> and handed to the UI thread.
+ * 
+ * @author Marius Runde
+ */
+public class PreparedGuidance {
+
+	/**
+	 * The instruction plan of the first route segments or <code>null</code>
+	 * if the guidance could not be prepared
+	 */
+	private final InstructionPlan plan;
+
+	/**
+	 * The InstructionManager to complete the instruction plan
+	 */
+	private final InstructionManager manager;
+
+	/**
+	 * The shape points of the route overlay
+	 */
+	private final List<GeoPoint> shapePoints;
+
+	/**
+	 * The feature file used for the instructions
+	 */
+	private final FeatureFile features;
+
+	/**
+	 * Resource id of the error message if the guidance could not be prepared
+	 */
+	private final int errorMessage;
+
+	/**
+	 * Time needed for each stage
+	 */
+	private final String timing;
+
+	/**
+	 * Constructor of the PreparedGuidance class for a guidance that has been
+	 * prepared successfully
+	 * 
+	 * @param plan
+	 *            The instruction plan of the first route segments
+	 * @param manager
+	 *            The InstructionManager to complete the instruction plan
+	 * @param shapePoints
+	 *            The shape points of the route overlay
+	 * @param features
+	 *            The feature file used for the instructions
+	 * @param timing
+	 *            Time needed for each stage
+	 */
+	public PreparedGuidance(InstructionPlan plan, InstructionManager manager,
+			List<GeoPoint> shapePoints, FeatureFile features, String timing) {
+		this.plan = plan;
+		this.manager = manager;
+		this.shapePoints = shapePoints;
+		this.features = features;
+		this.errorMessage = 0;
+		this.timing = timing;
+	}
+
+	/**
+	 * Constructor of the PreparedGuidance class for a guidance that could not
+	 * be prepared
+	 * 
+	 * @param errorMessage
+	 *            Resource id of the error message
+	 */
+	public PreparedGuidance(int errorMessage) {
+		this.plan = null;
+		this.manager = null;
+		this.shapePoints = null;
+		this.features = null;
+		this.errorMessage = errorMessage;
+		this.timing = null;
+	}
+
+	/**
+	 * @return <code>TRUE</code> if the guidance has been prepared successfully
+	 */
+	public boolean isSuccessful() {
+		return this.plan != null;
+	}
+
+	/**
+	 * @return The instruction plan of the first route segments or
+	 *         <code>null</code> if the guidance could not be prepared
+	 */
+	public InstructionPlan getPlan() {
+		return this.plan;
+	}
+
+	/**
+	 * @return The InstructionManager to complete the instruction plan
+	 */
+	public InstructionManager getManager() {
+		return this.manager;
+	}
+
+	/**
+	 * @return The shape points of the route overlay
+	 */
+	public List<GeoPoint> getShapePoints() {
+		return this.shapePoints;
+	}
+
+	/**
+	 * @return The feature file used for the instructions
+	 */
+	public FeatureFile getFeatures() {
+		return this.features;
+	}
+
+	/**
+	 * @return Resource id of the error message if the guidance could not be
+	 *         prepared
+	 */
+	public int getErrorMessage() {
+		return this.errorMessage;
+	}
+
+	/**
+	 * @return Time needed for each stage
+	 */
+	public String getTiming() {
+		return this.timing;
+	}
+}
@@ -0,0 +1,99 @@
+package de.mrunde.bachelorthesis.basics;
+
+/**
+ * The Coordinate class represents a location by its latitude and longitude.
+ * It is stored in microdegrees and converted the same way as the
+ * <code>GeoPoint</code> of the map does, so that the instructions do not
+ * depend on Android or the map library. The activities convert it into a
+ * <code>GeoPoint</code> when it is displayed on the map.
+ * 
+ * @author Marius Runde
+ */
+public class Coordinate {
+
+	/**
+	 * Latitude in microdegrees
+	 */
+	private final int latitudeE6;
+
+	/**
+	 * Longitude in microdegrees
+	 */
+	private final int longitudeE6;
+
+	/**
+	 * Constructor of the Coordinate class
+	 * 
+	 * @param latitudeE6
+	 *            Latitude in microdegrees
+	 * @param longitudeE6
+	 *            Longitude in microdegrees
+	 */
+	public Coordinate(int latitudeE6, int longitudeE6) {
+		this.latitudeE6 = latitudeE6;
+		this.longitudeE6 = longitudeE6;
+	}
+
+	/**
+	 * Constructor of the Coordinate class
+	 * 
+	 * @param latitude
+	 *            Latitude in degrees
+	 * @param longitude
+	 *            Longitude in degrees
+	 */
+	public Coordinate(double latitude, double longitude) {
+		this((int) (latitude * 1E6), (int) (longitude * 1E6));
+	}
+
+	/**
+	 * @return The latitude in microdegrees
+	 */
+	public int getLatitudeE6() {
+		return this.latitudeE6;
+	}
+
+	/**
+	 * @return The longitude in microdegrees
+	 */
+	public int getLongitudeE6() {
+		return this.longitudeE6;
+	}
+
+	/**
+	 * @return The latitude in degrees
+	 */
+	public double getLatitude() {
+		return this.latitudeE6 * 1E-6;
+	}
+
+	/**
+	 * @return The longitude in degrees
+	 */
+	public double getLongitude() {
+		return this.longitudeE6 * 1E-6;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof Coordinate)) {
+			return false;
+		}
+		Coordinate other = (Coordinate) object;
+		return this.latitudeE6 == other.latitudeE6
+				&& this.longitudeE6 == other.longitudeE6;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 + this.latitudeE6) + this.longitudeE6;
+	}
+
+	@Override
+	public String toString() {
+		return "Lat/Lng: " + getLatitude() + "," + getLongitude();
+	}
+}
@@ -0,0 +1,120 @@
+package de.mrunde.bachelorthesis.basics;
+
+/**
+ * The GeoMath class offers static functions to calculate distances between two
+ * locations without creating any objects. They are used in all places where
+ * many distances have to be calculated, e.g. when searching for landmarks or
+ * when checking the user's location.<br/>
+ * <br/>
+ * The equirectangular approximation is faster and precise enough at city scale
+ * (the error is far below one meter for distances of a few hundred meters).
+ * The haversine formula should be used for longer distances.
+ * The deviations from the distances of osmdroid and Android used before are
+ * checked by the GeoMathCheck tool.
+ * 
+ * @author Marius Runde
+ */
+public class GeoMath {
+
+	/**
+	 * Earth radius in meters (same value as used by osmdroid)
+	 */
+	public static final double EARTH_RADIUS = 6378137;
+
+	/**
+	 * Meters per degree of latitude used by the spatial indexes to convert
+	 * radii into degrees. This value is slightly lower than the real one, so
+	 * that the areas derived from it are rather too large than too small.
+	 */
+	public static final double METERS_PER_DEGREE = 111000;
+
+	/**
+	 * Factor to convert degrees into radians
+	 */
+	private static final double TO_RADIANS = Math.PI / 180;
+
+	/**
+	 * The GeoMath class only offers static functions
+	 */
+	private GeoMath() {
+	}
+
+	/**
+	 * Calculate the cosine of a latitude. The result can be stored and passed
+	 * to <code>equirectangular()</code> for all distances calculated from the
+	 * same location.
+	 * 
+	 * @param lat
+	 *            Latitude in degrees
+	 * @return The cosine of the latitude
+	 */
+	public static double cosLatitude(double lat) {
+		return Math.cos(lat * TO_RADIANS);
+	}
+
+	/**
+	 * Calculate the distance between two locations with the equirectangular
+	 * approximation. This should only be used for short distances.
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location in degrees
+	 * @param lng1
+	 *            Longitude of the first location in degrees
+	 * @param lat2
+	 *            Latitude of the second location in degrees
+	 * @param lng2
+	 *            Longitude of the second location in degrees
+	 * @param cosLat
+	 *            Cosine of the latitude of one of the locations (see
+	 *            <code>cosLatitude()</code>)
+	 * @return The distance in meters
+	 */
+	public static double equirectangular(double lat1, double lng1,
+			double lat2, double lng2, double cosLat) {
+		double x = (lng2 - lng1) * TO_RADIANS * cosLat;
+		double y = (lat2 - lat1) * TO_RADIANS;
+		return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+	}
+
+	/**
+	 * Calculate the distance between two locations with the equirectangular
+	 * approximation. This should only be used for short distances.
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location in degrees
+	 * @param lng1
+	 *            Longitude of the first location in degrees
+	 * @param lat2
+	 *            Latitude of the second location in degrees
+	 * @param lng2
+	 *            Longitude of the second location in degrees
+	 * @return The distance in meters
+	 */
+	public static double equirectangular(double lat1, double lng1,
+			double lat2, double lng2) {
+		return equirectangular(lat1, lng1, lat2, lng2,
+				cosLatitude((lat1 + lat2) / 2));
+	}
+
+	/**
+	 * Calculate the distance between two locations with the haversine formula
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location in degrees
+	 * @param lng1
+	 *            Longitude of the first location in degrees
+	 * @param lat2
+	 *            Latitude of the second location in degrees
+	 * @param lng2
+	 *            Longitude of the second location in degrees
+	 * @return The distance in meters
+	 */
+	public static double haversine(double lat1, double lng1, double lat2,
+			double lng2) {
+		double sinLat = Math.sin((lat2 - lat1) * TO_RADIANS / 2);
+		double sinLng = Math.sin((lng2 - lng1) * TO_RADIANS / 2);
+		double a = sinLat * sinLat + cosLatitude(lat1) * cosLatitude(lat2)
+				* sinLng * sinLng;
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+}
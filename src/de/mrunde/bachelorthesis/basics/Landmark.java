@@ -1,9 +1,5 @@
 package de.mrunde.bachelorthesis.basics;
 
-import android.util.Log;
-
-import com.mapquest.android.maps.GeoPoint;
-
 /**
  * The Landmark class represents local and global landmarks.
  * 
@@ -24,7 +20,7 @@ public class Landmark {
 	/**
 	 * Central position
 	 */
-	private GeoPoint center;
+	private Coordinate center;
 
 	/**
 	 * Radius of visibility in meters
@@ -51,7 +47,7 @@ public class Landmark {
 	 *            Category (must be from list of categories from
 	 *            LandmarkCategory)
 	 */
-	public Landmark(boolean local, String title, GeoPoint center, int radius,
+	public Landmark(boolean local, String title, Coordinate center, int radius,
 			String category) {
 		this.local = local;
 		this.title = title;
@@ -62,7 +58,8 @@ public class Landmark {
 		if (LandmarkCategory.isCategory(category)) {
 			this.category = category;
 		} else {
-			Log.e("Landmark", "Category is not correct and will be set to null");
+			Logger.e("Landmark",
+					"Category is not correct and will be set to null");
 			this.category = null;
 		}
 	}
@@ -92,7 +89,7 @@ public class Landmark {
 	/**
 	 * @return The central position
 	 */
-	public GeoPoint getCenter() {
+	public Coordinate getCenter() {
 		return this.center;
 	}
 
@@ -1,7 +1,5 @@
 package de.mrunde.bachelorthesis.basics;
 
-import de.mrunde.bachelorthesis.R;
-
 /**
  * Categories of landmarks (e.g. gas station, hospital, post office)
  * 
@@ -87,50 +85,4 @@ public abstract class LandmarkCategory {
 				RESTAURANT, SHOP, SIGHTSEEING };
 		return categories;
 	}
-
-	/**
-	 * Get the id of the corresponding image file for this landmark category
-	 * 
-	 * @param category
-	 *            The landmark category
-	 * @return The id of the corresponding image file. -1 if
-	 *         <code>category</category> is not a valid landmark category
-	 */
-	public static int getDrawableId(String category) {
-		if (isCategory(category)) {
-			if (category.equals(CEMETERY))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/halloween-cemetery_12010
-				return R.drawable.landmark_cemetery;
-			if (category.equals(HARBOUR))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/anchor-white-shape-inside-a-black-rounded-square_27592
-				return R.drawable.landmark_harbour;
-			if (category.equals(LAKE))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/sea_3491
-				return R.drawable.landmark_lake;
-			if (category.equals(CHURCH))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/church-black-silhouette-with-a-cross-on-top_34127
-				return R.drawable.landmark_church;
-			if (category.equals(CINEMA))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/film-strip-with-play-symbol_48406
-				return R.drawable.landmark_cinema;
-			if (category.equals(RESTAURANT))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/fork-and-knife-cutlery-circle-interface-symbol-for-restaurant_45605
-				return R.drawable.landmark_restaurant;
-			if (category.equals(SHOP))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/shopping-cart-1_2772
-				return R.drawable.landmark_shop;
-			if (category.equals(SIGHTSEEING))
-				// Source of image file:
-				// http://www.flaticon.com/free-icon/greek-temple-monument_482
-				return R.drawable.landmark_sightseeing;
-		}
-		return -1;
-	}
 }
@@ -0,0 +1,157 @@
+package de.mrunde.bachelorthesis.basics;
+
+/**
+ * The Logger is used instead of <code>android.util.Log</code> by all classes
+ * creating the instructions, so that they can run on a plain JVM (e.g. for
+ * batch generation on a server or benchmarks). The messages are passed to a
+ * <code>Handler</code>: the activities install one writing to the Android
+ * log, otherwise warnings and errors are written to the standard error
+ * stream.
+ * 
+ * @author Marius Runde
+ */
+public class Logger {
+
+	// --- Priorities (same values as in android.util.Log) ---
+	/**
+	 * Priority of verbose messages
+	 */
+	public static final int VERBOSE = 2;
+
+	/**
+	 * Priority of debug messages
+	 */
+	public static final int DEBUG = 3;
+
+	/**
+	 * Priority of info messages
+	 */
+	public static final int INFO = 4;
+
+	/**
+	 * Priority of warnings
+	 */
+	public static final int WARN = 5;
+
+	/**
+	 * Priority of errors
+	 */
+	public static final int ERROR = 6;
+
+	// --- End of priorities ---
+
+	/**
+	 * A Handler receives all log messages
+	 * 
+	 * @author Marius Runde
+	 */
+	public interface Handler {
+
+		/**
+		 * Write a log message
+		 * 
+		 * @param priority
+		 *            Priority of the message
+		 * @param tag
+		 *            Tag of the message (usually the class and method)
+		 * @param message
+		 *            The message
+		 */
+		void log(int priority, String tag, String message);
+	}
+
+	/**
+	 * Handler writing warnings and errors to the standard error stream
+	 */
+	private static final Handler DEFAULT_HANDLER = new Handler() {
+
+		@Override
+		public void log(int priority, String tag, String message) {
+			if (priority >= WARN) {
+				System.err.println(tag + ": " + message);
+			}
+		}
+	};
+
+	/**
+	 * The current handler
+	 */
+	private static volatile Handler handler = DEFAULT_HANDLER;
+
+	/**
+	 * The Logger class only offers static functions
+	 */
+	private Logger() {
+	}
+
+	/**
+	 * Set the handler of all log messages
+	 * 
+	 * @param handler
+	 *            The handler or <code>null</code> to restore the default
+	 *            handler
+	 */
+	public static void setHandler(Handler handler) {
+		Logger.handler = handler == null ? DEFAULT_HANDLER : handler;
+	}
+
+	/**
+	 * Write a verbose message
+	 * 
+	 * @param tag
+	 *            Tag of the message
+	 * @param message
+	 *            The message
+	 */
+	public static void v(String tag, String message) {
+		handler.log(VERBOSE, tag, message);
+	}
+
+	/**
+	 * Write a debug message
+	 * 
+	 * @param tag
+	 *            Tag of the message
+	 * @param message
+	 *            The message
+	 */
+	public static void d(String tag, String message) {
+		handler.log(DEBUG, tag, message);
+	}
+
+	/**
+	 * Write an info message
+	 * 
+	 * @param tag
+	 *            Tag of the message
+	 * @param message
+	 *            The message
+	 */
+	public static void i(String tag, String message) {
+		handler.log(INFO, tag, message);
+	}
+
+	/**
+	 * Write a warning
+	 * 
+	 * @param tag
+	 *            Tag of the message
+	 * @param message
+	 *            The message
+	 */
+	public static void w(String tag, String message) {
+		handler.log(WARN, tag, message);
+	}
+
+	/**
+	 * Write an error
+	 * 
+	 * @param tag
+	 *            Tag of the message
+	 * @param message
+	 *            The message
+	 */
+	public static void e(String tag, String message) {
+		handler.log(ERROR, tag, message);
+	}
+}
@@ -0,0 +1,71 @@
+package de.mrunde.bachelorthesis.basics;
+
+/**
+ * The ReadinessLatch runs an action once all of its conditions have been
+ * signalled (e.g. the route has been displayed and the instructions have been
+ * created). The conditions can be signalled in any order and from any thread.
+ * Each condition only counts once and the action is run exactly once on the
+ * thread that signals the last condition.
+ * 
+ * @author Marius Runde
+ */
+public class ReadinessLatch {
+
+	/**
+	 * The conditions that have been signalled already
+	 */
+	private final boolean[] signalled;
+
+	/**
+	 * Number of conditions that have not been signalled yet
+	 */
+	private int remaining;
+
+	/**
+	 * The action to run once all conditions have been signalled
+	 */
+	private final Runnable action;
+
+	/**
+	 * Constructor of the ReadinessLatch class
+	 * 
+	 * @param numberOfConditions
+	 *            Number of conditions. They are numbered from 0.
+	 * @param action
+	 *            The action to run once all conditions have been signalled
+	 */
+	public ReadinessLatch(int numberOfConditions, Runnable action) {
+		this.signalled = new boolean[numberOfConditions];
+		this.remaining = numberOfConditions;
+		this.action = action;
+	}
+
+	/**
+	 * Signal that a condition has been fulfilled. The action is run if this
+	 * was the last condition.
+	 * 
+	 * @param condition
+	 *            The condition
+	 */
+	public void signal(int condition) {
+		synchronized (this) {
+			if (this.signalled[condition]) {
+				return;
+			}
+			this.signalled[condition] = true;
+			this.remaining--;
+			if (this.remaining > 0) {
+				return;
+			}
+		}
+		// Run the action outside of the lock
+		this.action.run();
+	}
+
+	/**
+	 * @return <code>TRUE</code> if all conditions have been signalled
+	 */
+	public synchronized boolean isReady() {
+		return this.remaining == 0;
+	}
+}
@@ -1,5 +1,8 @@
 package de.mrunde.bachelorthesis.basics;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -7,9 +10,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import android.util.Log;
-
-import com.mapquest.android.maps.GeoPoint;
+import de.mrunde.bachelorthesis.io.JsonPullParser;
 
 /**
  * The Route class stores all information about route segments, maneuvers,
@@ -30,14 +31,17 @@ public class Route {
 	private List<RouteSegment> segments;
 
 	/**
-	 * Store the currently used segment
+	 * All shape points that create the route. The latitude and longitude of
+	 * each shape point are stored one after another in microdegrees, just as
+	 * a <code>Coordinate</code> stores them internally.
 	 */
-	private int currentSegment;
+	private int[] shapePoints;
 
 	/**
-	 * All shape points that create the route
+	 * Cosine of the latitude of each shape point to calculate distances with
+	 * the equirectangular approximation
 	 */
-	private GeoPoint[] shapePoints;
+	private double[] cosLatitudes;
 
 	/**
 	 * Constructor of the Route class
@@ -49,7 +53,7 @@ public class Route {
 		// Some temporal variables
 		int[] maneuvers;
 		int[] linkIndexes;
-		GeoPoint[] decisionPoints;
+		int[] decisionPoints;
 		double[] distances;
 		int[] shapePointIndexes;
 
@@ -82,12 +86,9 @@ public class Route {
 
 			// --- Get the decision points ---
 			JSONArray shapePoints = guidance.getJSONArray("shapePoints");
-			decisionPoints = new GeoPoint[shapePoints.length() / 2];
-			int j = 0;
-			for (int i = 0; i < shapePoints.length() - 1; i += 2) {
-				decisionPoints[j] = new GeoPoint(shapePoints.getDouble(i),
-						(Double) shapePoints.get(i + 1));
-				j++;
+			decisionPoints = new int[shapePoints.length() / 2 * 2];
+			for (int i = 0; i < decisionPoints.length; i++) {
+				decisionPoints[i] = (int) (shapePoints.getDouble(i) * 1E6);
 			}
 
 			// --- Get the distances and shape point indexes ---
@@ -102,27 +103,329 @@ public class Route {
 						.getInt("shapeIndex");
 			}
 
-			// Create the route segments
-			createRouteSegments(maneuvers, linkIndexes, decisionPoints,
-					distances, shapePointIndexes);
+			// Initialize the shape points and route segments
+			init(maneuvers, linkIndexes, decisionPoints, distances,
+					shapePointIndexes);
+		} catch (JSONException e) {
+			// Import has not been successful
+			Logger.e("InstructionManager",
+					"Could not extract the guidance JSONObject. This is the error message: "
+							+ e.getMessage());
+			this.importSuccessful = false;
+		}
+	}
+
+	/**
+	 * Constructor of the Route class. The guidance is read straight from the
+	 * stream without creating a <code>JSONObject</code>, so that the memory
+	 * needed for long routes stays low. A JSONP wrapper like
+	 * <code>renderBasicInformation( ... );</code> is skipped.
+	 * 
+	 * @param in
+	 *            Guidance returned by the MapQuest API as stream. The stream
+	 *            is not closed.
+	 */
+	public Route(InputStream in) {
+		// Some temporal variables
+		int[] maneuvers = null;
+		int[] linkIndexes = null;
+		int[] decisionPoints = null;
+		double[] distances = null;
+		int[] shapePointIndexes = null;
 
-			// Set current route segment to first segment
-			this.currentSegment = 0;
+		// Extract the guidance information out of the stream
+		try {
+			JsonPullParser parser = new JsonPullParser(new InputStreamReader(
+					in, "UTF-8"));
+			parser.beginObject();
+			while (parser.hasNext()) {
+				if (!parser.nextName().equals("guidance")) {
+					parser.skipValue();
+					continue;
+				}
+				parser.beginObject();
+				while (parser.hasNext()) {
+					String name = parser.nextName();
+					if (name.equals("GuidanceNodeCollection")) {
+						// --- Get the maneuver types and link indexes ---
+						int[][] nodes = readGuidanceNodes(parser);
+						maneuvers = nodes[0];
+						linkIndexes = nodes[1];
+					} else if (name.equals("shapePoints")) {
+						// --- Get the decision points ---
+						decisionPoints = readShapePoints(parser);
+					} else if (name.equals("GuidanceLinkCollection")) {
+						// --- Get the distances and shape point indexes ---
+						distances = new double[16];
+						shapePointIndexes = new int[16];
+						int size = 0;
+						parser.beginArray();
+						while (parser.hasNext()) {
+							if (size == distances.length) {
+								distances = grow(distances, size * 2);
+								shapePointIndexes = grow(shapePointIndexes,
+										size * 2);
+							}
+							parser.beginObject();
+							while (parser.hasNext()) {
+								String field = parser.nextName();
+								if (field.equals("length")) {
+									distances[size] = parser.nextDouble();
+								} else if (field.equals("shapeIndex")) {
+									shapePointIndexes[size] = parser.nextInt();
+								} else {
+									parser.skipValue();
+								}
+							}
+							parser.endObject();
+							size++;
+						}
+						parser.endArray();
+						distances = trim(distances, size);
+						shapePointIndexes = trim(shapePointIndexes, size);
+					} else {
+						parser.skipValue();
+					}
+				}
+				parser.endObject();
+			}
+			parser.endObject();
 
-			// Initialize the shapePoints
-			this.shapePoints = decisionPoints;
+			if (maneuvers == null || decisionPoints == null
+					|| distances == null) {
+				throw new IOException("Incomplete guidance");
+			}
 
-			// Import has been successful
-			this.importSuccessful = true;
-		} catch (JSONException e) {
+			// Initialize the shape points and route segments
+			init(maneuvers, linkIndexes, decisionPoints, distances,
+					shapePointIndexes);
+		} catch (IOException e) {
 			// Import has not been successful
-			Log.e("InstructionManager",
-					"Could not extract the guidance JSONObject. This is the error message: "
+			Logger.e("InstructionManager",
+					"Could not read the guidance. This is the error message: "
 							+ e.getMessage());
 			this.importSuccessful = false;
 		}
 	}
 
+	/**
+	 * Constructor of the Route class for a route that has been stored in a
+	 * compact form before, e.g. by the <code>RouteCache</code>
+	 * 
+	 * @param shapePoints
+	 *            Latitude and longitude of each shape point one after another
+	 *            in microdegrees
+	 * @param decisionPointIndexes
+	 *            Index of the shape point at the end of each route segment
+	 * @param maneuvers
+	 *            The maneuver type of each route segment
+	 * @param distances
+	 *            The distance of each route segment in meters
+	 */
+	public Route(int[] shapePoints, int[] decisionPointIndexes,
+			int[] maneuvers, int[] distances) {
+		// Initialize the shape points
+		initShapePoints(shapePoints);
+
+		// Create the route segments (the first one starts at the first shape
+		// point without a starting position like the ones of the guidance)
+		this.segments = new ArrayList<RouteSegment>(maneuvers.length);
+		for (int i = 0; i < maneuvers.length; i++) {
+			int startIndex = (i == 0) ? 0 : decisionPointIndexes[i - 1];
+			Coordinate startPoint = (i == 0) ? null : getShapePoint(startIndex);
+			this.segments.add(new RouteSegment(startPoint,
+					getShapePoint(decisionPointIndexes[i]), startIndex,
+					decisionPointIndexes[i], maneuvers[i], distances[i]));
+		}
+
+		// Import has been successful
+		this.importSuccessful = true;
+	}
+
+	/**
+	 * Read the maneuver types and link indexes of the
+	 * <code>GuidanceNodeCollection</code>. Only nodes with a maneuver type are
+	 * used.
+	 * 
+	 * @param parser
+	 *            Parser positioned at the <code>GuidanceNodeCollection</code>
+	 * @return The maneuver types (first element in array) and the link
+	 *         indexes (second element in array)
+	 * @throws IOException
+	 *             If the collection could not be read
+	 */
+	private static int[][] readGuidanceNodes(JsonPullParser parser)
+			throws IOException {
+		int[] maneuvers = new int[16];
+		int[] linkIndexes = new int[16];
+		int size = 0;
+		parser.beginArray();
+		while (parser.hasNext()) {
+			boolean hasManeuverType = false;
+			int maneuverType = 0;
+			int linkIndex = 0;
+			parser.beginObject();
+			while (parser.hasNext()) {
+				String field = parser.nextName();
+				if (field.equals("maneuverType")) {
+					hasManeuverType = true;
+					maneuverType = parser.nextInt();
+				} else if (field.equals("linkIds")) {
+					parser.beginArray();
+					if (parser.hasNext()) {
+						linkIndex = parser.nextInt();
+					} else {
+						throw new IOException("Missing link id");
+					}
+					while (parser.hasNext()) {
+						parser.skipValue();
+					}
+					parser.endArray();
+				} else {
+					parser.skipValue();
+				}
+			}
+			parser.endObject();
+
+			if (hasManeuverType) {
+				if (size == maneuvers.length) {
+					maneuvers = grow(maneuvers, size * 2);
+					linkIndexes = grow(linkIndexes, size * 2);
+				}
+				maneuvers[size] = maneuverType;
+				linkIndexes[size] = linkIndex;
+				size++;
+			}
+		}
+		parser.endArray();
+		return new int[][] { trim(maneuvers, size), trim(linkIndexes, size) };
+	}
+
+	/**
+	 * Read the shape points into microdegrees. A single coordinate at the end
+	 * is ignored.
+	 * 
+	 * @param parser
+	 *            Parser positioned at the <code>shapePoints</code>
+	 * @return Latitude and longitude of each shape point one after another
+	 * @throws IOException
+	 *             If the shape points could not be read
+	 */
+	private static int[] readShapePoints(JsonPullParser parser)
+			throws IOException {
+		int[] result = new int[256];
+		int size = 0;
+		parser.beginArray();
+		while (parser.hasNext()) {
+			if (size == result.length) {
+				result = grow(result, size * 2);
+			}
+			result[size] = (int) (parser.nextDouble() * 1E6);
+			size++;
+		}
+		parser.endArray();
+		return trim(result, size / 2 * 2);
+	}
+
+	/**
+	 * Initialize the shape points and create the route segments
+	 * 
+	 * @param maneuvers
+	 *            The maneuver types
+	 * @param linkIndexes
+	 *            All indexes of required entries in the
+	 *            <code>GuidanceLinkCollection</code>
+	 * @param shapePoints
+	 *            Latitude and longitude of each shape point in microdegrees
+	 * @param distances
+	 *            The distances of all street segments
+	 * @param shapePointIndexes
+	 *            All indexes of "real" decision points" stored in the shape
+	 *            points
+	 */
+	private void init(int[] maneuvers, int[] linkIndexes, int[] shapePoints,
+			double[] distances, int[] shapePointIndexes) {
+		// Initialize the shapePoints
+		initShapePoints(shapePoints);
+
+		// Create the route segments
+		createRouteSegments(maneuvers, linkIndexes, distances,
+				shapePointIndexes);
+
+		// Import has been successful
+		this.importSuccessful = true;
+	}
+
+	/**
+	 * Initialize the shape points and their cosines of the latitude
+	 * 
+	 * @param shapePoints
+	 *            Latitude and longitude of each shape point in microdegrees
+	 */
+	private void initShapePoints(int[] shapePoints) {
+		this.shapePoints = shapePoints;
+		this.cosLatitudes = new double[shapePoints.length / 2];
+		for (int i = 0; i < this.cosLatitudes.length; i++) {
+			this.cosLatitudes[i] = GeoMath.cosLatitude(getLatitude(i));
+		}
+	}
+
+	/**
+	 * Copy an array into an array of another length
+	 * 
+	 * @param array
+	 *            The array
+	 * @param length
+	 *            Length of the new array
+	 * @return The new array
+	 */
+	private static int[] grow(int[] array, int length) {
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	/**
+	 * Copy an array into an array of another length
+	 * 
+	 * @param array
+	 *            The array
+	 * @param length
+	 *            Length of the new array
+	 * @return The new array
+	 */
+	private static double[] grow(double[] array, int length) {
+		double[] result = new double[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	/**
+	 * Shorten an array to the given length if necessary
+	 * 
+	 * @param array
+	 *            The array
+	 * @param length
+	 *            Length of the new array
+	 * @return The array or a shortened copy
+	 */
+	private static int[] trim(int[] array, int length) {
+		return array.length == length ? array : grow(array, length);
+	}
+
+	/**
+	 * Shorten an array to the given length if necessary
+	 * 
+	 * @param array
+	 *            The array
+	 * @param length
+	 *            Length of the new array
+	 * @return The array or a shortened copy
+	 */
+	private static double[] trim(double[] array, int length) {
+		return array.length == length ? array : grow(array, length);
+	}
+
 	/**
 	 * Create the route segments out of the complete route information
 	 * 
@@ -131,33 +434,34 @@ public class Route {
 	 * @param linkIndexes
 	 *            All indexes of required entries in the
 	 *            <code>GuidanceLinkCollection</code>
-	 * @param decisionPoints
-	 *            All shape points returned by the MapQuest API
 	 * @param distances
 	 *            The distances of all street segments
 	 * @param shapePointIndexes
-	 *            All indexes of "real" decision points" stored in
-	 *            <code>decisionPoints</code>
+	 *            All indexes of "real" decision points" stored in the shape
+	 *            points
 	 */
 	private void createRouteSegments(int[] maneuvers, int[] linkIndexes,
-			GeoPoint[] decisionPoints, double[] distances,
-			int[] shapePointIndexes) {
+			double[] distances, int[] shapePointIndexes) {
 		this.segments = new ArrayList<RouteSegment>();
 
-		// Create the first route segment (starting position = null)
-		GeoPoint firstDecisionPoint = decisionPoints[shapePointIndexes[linkIndexes[0]]];
+		// Create the first route segment (starting position = null, so its
+		// index is the first shape point)
+		int firstIndex = shapePointIndexes[linkIndexes[0]];
+		Coordinate firstDecisionPoint = getShapePoint(firstIndex);
 		double firstDistance = 0;
 		for (int i = 0; i < linkIndexes[0]; i++) {
 			firstDistance += distances[i];
 		}
 		RouteSegment firstSegment = new RouteSegment(null, firstDecisionPoint,
-				maneuvers[0], (int) firstDistance);
+				0, firstIndex, maneuvers[0], (int) firstDistance);
 		this.segments.add(firstSegment);
 
 		// Create the rest of the route segments analog to the first segment
 		for (int i = 1; i < maneuvers.length; i++) {
-			GeoPoint lastDecisionPoint = decisionPoints[shapePointIndexes[linkIndexes[i - 1]]];
-			GeoPoint nextDecisionPoint = decisionPoints[shapePointIndexes[linkIndexes[i]]];
+			int lastIndex = shapePointIndexes[linkIndexes[i - 1]];
+			int nextIndex = shapePointIndexes[linkIndexes[i]];
+			Coordinate lastDecisionPoint = getShapePoint(lastIndex);
+			Coordinate nextDecisionPoint = getShapePoint(nextIndex);
 
 			double nextDistance = 0;
 			for (int j = (i == 0) ? 0 : linkIndexes[i - 1]; j < linkIndexes[i]; j++) {
@@ -173,7 +477,8 @@ public class Route {
 
 			// Create the route segment
 			RouteSegment nextSegment = new RouteSegment(lastDecisionPoint,
-					nextDecisionPoint, maneuvers[i], (int) nextDistance);
+					nextDecisionPoint, lastIndex, nextIndex, maneuvers[i],
+					(int) nextDistance);
 			this.segments.add(nextSegment);
 		}
 	}
@@ -186,19 +491,14 @@ public class Route {
 	}
 
 	/**
-	 * Get the next route segment
+	 * Get a route segment
 	 * 
-	 * @return The next route segment.<br/>
-	 *         Null when the end of route segments has been reached.
+	 * @param index
+	 *            Index of the route segment
+	 * @return The route segment
 	 */
-	public RouteSegment getNextSegment() {
-		if (currentSegment < this.segments.size()) {
-			RouteSegment nextSegment = this.segments.get(this.currentSegment);
-			this.currentSegment++;
-			return nextSegment;
-		} else {
-			return null;
-		}
+	public RouteSegment getSegment(int index) {
+		return this.segments.get(index);
 	}
 
 	/**
@@ -211,11 +511,100 @@ public class Route {
 	}
 
 	/**
-	 * Get all shape points that create the route
+	 * Get all shape points that create the route. The <code>Coordinate</code>
+	 * objects are created with every call, so this should only be used to
+	 * display the route. Use the index based methods instead to work with the
+	 * shape points.
 	 * 
 	 * @return All shape points
 	 */
-	public GeoPoint[] getShapePoints() {
-		return this.shapePoints;
+	public Coordinate[] getShapePoints() {
+		Coordinate[] result = new Coordinate[getNumberOfShapePoints()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getShapePoint(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of shape points that create the route
+	 * 
+	 * @return The number of shape points
+	 */
+	public int getNumberOfShapePoints() {
+		return this.shapePoints.length / 2;
+	}
+
+	/**
+	 * Get the shape point at the given index as a new <code>Coordinate</code>
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @return The shape point
+	 */
+	public Coordinate getShapePoint(int index) {
+		return new Coordinate(this.shapePoints[2 * index],
+				this.shapePoints[2 * index + 1]);
+	}
+
+	/**
+	 * Get the latitude of the shape point at the given index
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @return The latitude
+	 */
+	public double getLatitude(int index) {
+		return this.shapePoints[2 * index] * 1E-6;
+	}
+
+	/**
+	 * Get the longitude of the shape point at the given index
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @return The longitude
+	 */
+	public double getLongitude(int index) {
+		return this.shapePoints[2 * index + 1] * 1E-6;
+	}
+
+	/**
+	 * Get the latitude of the shape point at the given index in microdegrees
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @return The latitude in microdegrees
+	 */
+	public int getLatitudeE6(int index) {
+		return this.shapePoints[2 * index];
+	}
+
+	/**
+	 * Get the longitude of the shape point at the given index in microdegrees
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @return The longitude in microdegrees
+	 */
+	public int getLongitudeE6(int index) {
+		return this.shapePoints[2 * index + 1];
+	}
+
+	/**
+	 * Calculate the distance between the shape point at the given index and a
+	 * location close to it without creating any objects
+	 * 
+	 * @param index
+	 *            Index of the shape point
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 * @return The distance in meters
+	 */
+	public double distanceTo(int index, double lat, double lng) {
+		return GeoMath.equirectangular(getLatitude(index),
+				getLongitude(index), lat, lng, this.cosLatitudes[index]);
 	}
 }
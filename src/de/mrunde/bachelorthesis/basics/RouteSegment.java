@@ -1,7 +1,5 @@
 package de.mrunde.bachelorthesis.basics;
 
-import com.mapquest.android.maps.GeoPoint;
-
 /**
  * A route segment is the part of a route between two turn actions.
  * 
@@ -12,12 +10,22 @@ public class RouteSegment {
 	/**
 	 * Starting position
 	 */
-	private GeoPoint startPoint;
+	private Coordinate startPoint;
 
 	/**
 	 * Final position
 	 */
-	private GeoPoint endPoint;
+	private Coordinate endPoint;
+
+	/**
+	 * Index of the starting position in the shape points of the route
+	 */
+	private int startIndex;
+
+	/**
+	 * Index of the final position in the shape points of the route
+	 */
+	private int endIndex;
 
 	/**
 	 * Maneuver type at the final position
@@ -36,15 +44,22 @@ public class RouteSegment {
 	 *            Starting position
 	 * @param endPoint
 	 *            Final position
+	 * @param startIndex
+	 *            Index of the starting position in the shape points of the
+	 *            route
+	 * @param endIndex
+	 *            Index of the final position in the shape points of the route
 	 * @param maneuverType
 	 *            Maneuver type at the final position
 	 * @param distance
 	 *            Distance between the starting and the final position
 	 */
-	public RouteSegment(GeoPoint startPoint, GeoPoint endPoint,
-			int maneuverType, int distance) {
+	public RouteSegment(Coordinate startPoint, Coordinate endPoint,
+			int startIndex, int endIndex, int maneuverType, int distance) {
 		this.startPoint = startPoint;
 		this.endPoint = endPoint;
+		this.startIndex = startIndex;
+		this.endIndex = endIndex;
 		this.maneuverType = maneuverType;
 		this.distance = distance;
 	}
@@ -52,17 +67,31 @@ public class RouteSegment {
 	/**
 	 * @return The starting position
 	 */
-	public GeoPoint getStartPoint() {
+	public Coordinate getStartPoint() {
 		return startPoint;
 	}
 
 	/**
 	 * @return The final position
 	 */
-	public GeoPoint getEndPoint() {
+	public Coordinate getEndPoint() {
 		return endPoint;
 	}
 
+	/**
+	 * @return The index of the starting position in the shape points
+	 */
+	public int getStartIndex() {
+		return startIndex;
+	}
+
+	/**
+	 * @return The index of the final position in the shape points
+	 */
+	public int getEndIndex() {
+		return endIndex;
+	}
+
 	/**
 	 * @return The maneuver type
 	 */
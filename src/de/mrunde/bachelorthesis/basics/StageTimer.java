@@ -0,0 +1,82 @@
+package de.mrunde.bachelorthesis.basics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The StageTimer measures the time needed for each stage of a pipeline (e.g.
+ * downloading the guidance, loading the features and creating the
+ * instructions). A stage ends when the next lap is taken.
+ * 
+ * @author Marius Runde
+ */
+public class StageTimer {
+
+	/**
+	 * Start of the first stage in nanoseconds
+	 */
+	private final long start;
+
+	/**
+	 * Start of the current stage in nanoseconds
+	 */
+	private long lapStart;
+
+	/**
+	 * Names of the finished stages
+	 */
+	private final List<String> stages;
+
+	/**
+	 * Durations of the finished stages in milliseconds
+	 */
+	private final List<Long> durations;
+
+	/**
+	 * Constructor of the StageTimer class. The first stage starts immediately.
+	 */
+	public StageTimer() {
+		this.start = System.nanoTime();
+		this.lapStart = this.start;
+		this.stages = new ArrayList<String>();
+		this.durations = new ArrayList<Long>();
+	}
+
+	/**
+	 * Finish the current stage and start the next one
+	 * 
+	 * @param stage
+	 *            Name of the finished stage
+	 * @return The duration of the finished stage in milliseconds
+	 */
+	public long lap(String stage) {
+		long now = System.nanoTime();
+		long duration = (now - this.lapStart) / 1000000;
+		this.stages.add(stage);
+		this.durations.add(Long.valueOf(duration));
+		this.lapStart = now;
+		return duration;
+	}
+
+	/**
+	 * @return The time since the start of the first stage in milliseconds
+	 */
+	public long getTotal() {
+		return (System.nanoTime() - this.start) / 1000000;
+	}
+
+	/**
+	 * @return The durations of all finished stages and the total time, e.g.
+	 *         "download: 812 ms, features: 3 ms, total: 815 ms"
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < this.stages.size(); i++) {
+			result.append(this.stages.get(i)).append(": ")
+					.append(this.durations.get(i)).append(" ms, ");
+		}
+		return result.append("total: ").append(getTotal()).append(" ms")
+				.toString();
+	}
+}
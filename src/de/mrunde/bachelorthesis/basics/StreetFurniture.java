@@ -1,9 +1,5 @@
 package de.mrunde.bachelorthesis.basics;
 
-import android.util.Log;
-
-import com.mapquest.android.maps.GeoPoint;
-
 /**
  * A StreetFurniture can be e.g. a roundabout or stop sign.
  * 
@@ -14,7 +10,7 @@ public class StreetFurniture {
 	/**
 	 * Central position
 	 */
-	private GeoPoint center;
+	private Coordinate center;
 
 	/**
 	 * Category (must be from list of categories from StreetFurnitureCategory)
@@ -37,12 +33,12 @@ public class StreetFurniture {
 	 * @param radius
 	 *            Radius of visual salience
 	 */
-	public StreetFurniture(GeoPoint center, String category, int radius) {
+	public StreetFurniture(Coordinate center, String category, int radius) {
 		this.center = center;
 		if (StreetFurnitureCategory.isCategory(category)) {
 			this.category = category;
 		} else {
-			Log.e("StreetFurniture",
+			Logger.e("StreetFurniture",
 					"Category is not correct and will be set to null");
 			this.category = null;
 		}
@@ -59,7 +55,7 @@ public class StreetFurniture {
 	/**
 	 * @return The central position
 	 */
-	public GeoPoint getCenter() {
+	public Coordinate getCenter() {
 		return center;
 	}
 
@@ -0,0 +1,209 @@
+package de.mrunde.bachelorthesis.index;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+import de.mrunde.bachelorthesis.basics.GeoMath;
+
+/**
+ * The GridIndex is a uniform grid that buckets features (e.g. landmarks,
+ * street furniture or intersections) by their position. It is used to find the
+ * features close to a location without checking every single feature.<br/>
+ * <br/>
+ * The features are identified by the order in which they have been added (the
+ * first feature has the id 0). Queries return the ids in ascending order so
+ * that the results are the same as iterating through the original list.
+ * 
+ * @author Marius Runde
+ */
+public class GridIndex implements SpatialIndex {
+
+	/**
+	 * Size of a cell in degrees
+	 */
+	private final double cellSize;
+
+	/**
+	 * The cells of the grid that contain at least one feature
+	 */
+	private final HashMap<Long, Cell> cells;
+
+	/**
+	 * Number of features in the grid
+	 */
+	private int size;
+
+	/**
+	 * Largest radius of all features in meters
+	 */
+	private double maxRadius;
+
+	/**
+	 * Constructor of the GridIndex class
+	 * 
+	 * @param cellSize
+	 *            Size of a cell in meters
+	 */
+	public GridIndex(double cellSize) {
+		this.cellSize = cellSize / GeoMath.METERS_PER_DEGREE;
+		this.cells = new HashMap<Long, Cell>();
+		this.size = 0;
+		this.maxRadius = 0;
+	}
+
+	/**
+	 * Add a feature to the grid. Its id is the number of features that have
+	 * been added before.
+	 * 
+	 * @param lat
+	 *            Latitude of the feature
+	 * @param lng
+	 *            Longitude of the feature
+	 * @param radius
+	 *            Radius in meters in which the feature can be found
+	 */
+	public void add(double lat, double lng, double radius) {
+		Long key = Long.valueOf(key(cell(lat), cell(lng)));
+		Cell cell = this.cells.get(key);
+		if (cell == null) {
+			cell = new Cell();
+			this.cells.put(key, cell);
+		}
+		cell.add(this.size);
+		this.size++;
+
+		if (radius > this.maxRadius) {
+			this.maxRadius = radius;
+		}
+	}
+
+	/**
+	 * Find all features whose radius might reach the given location. The ids
+	 * of the features are set in <code>result</code>, which is not cleared
+	 * before. The exact distance must still be checked by the caller.
+	 * 
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 * @param result
+	 *            The ids of the found features
+	 */
+	@Override
+	public void query(double lat, double lng, BitSet result) {
+		query(lat, lng, lat, lng, result);
+	}
+
+	/**
+	 * Find all features whose radius might reach the given bounding box (e.g.
+	 * the box of a link of the route). The ids of the features are set in
+	 * <code>result</code>, which is not cleared before. The exact distance
+	 * must still be checked by the caller.
+	 * 
+	 * @param minLat
+	 *            Minimal latitude of the box
+	 * @param minLng
+	 *            Minimal longitude of the box
+	 * @param maxLat
+	 *            Maximal latitude of the box
+	 * @param maxLng
+	 *            Maximal longitude of the box
+	 * @param result
+	 *            The ids of the found features
+	 */
+	@Override
+	public void query(double minLat, double minLng, double maxLat,
+			double maxLng, BitSet result) {
+		if (this.size == 0) {
+			return;
+		}
+
+		// Enlarge the bounding box by the largest radius. The longitude is
+		// stretched at the side closer to the pole.
+		double deltaLat = this.maxRadius / GeoMath.METERS_PER_DEGREE;
+		double poleLat = Math.min(
+				Math.max(Math.abs(minLat), Math.abs(maxLat)) + deltaLat, 89);
+		double deltaLng = deltaLat / Math.cos(Math.toRadians(poleLat));
+
+		int minRow = cell(minLat - deltaLat);
+		int maxRow = cell(maxLat + deltaLat);
+		int minCol = cell(minLng - deltaLng);
+		int maxCol = cell(maxLng + deltaLng);
+
+		// Collect the features of all cells in the bounding box
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int col = minCol; col <= maxCol; col++) {
+				Cell cell = this.cells.get(Long.valueOf(key(row, col)));
+				if (cell != null) {
+					for (int i = 0; i < cell.size; i++) {
+						result.set(cell.ids[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of features in the grid
+	 */
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Get the row or column of the cell that contains the given coordinate
+	 * 
+	 * @param coordinate
+	 *            Latitude or longitude
+	 * @return Row or column of the cell
+	 */
+	private int cell(double coordinate) {
+		return (int) Math.floor(coordinate / this.cellSize);
+	}
+
+	/**
+	 * Combine the row and column of a cell to a single key
+	 * 
+	 * @param row
+	 *            Row of the cell
+	 * @param col
+	 *            Column of the cell
+	 * @return The key of the cell
+	 */
+	private static long key(int row, int col) {
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+
+	/**
+	 * A cell of the grid storing the ids of its features
+	 */
+	private static class Cell {
+
+		/**
+		 * Ids of the features in ascending order
+		 */
+		private int[] ids = new int[4];
+
+		/**
+		 * Number of features in this cell
+		 */
+		private int size = 0;
+
+		/**
+		 * Add a feature to this cell
+		 * 
+		 * @param id
+		 *            Id of the feature
+		 */
+		private void add(int id) {
+			if (this.size == this.ids.length) {
+				int[] newIds = new int[this.ids.length * 2];
+				System.arraycopy(this.ids, 0, newIds, 0, this.size);
+				this.ids = newIds;
+			}
+			this.ids[this.size] = id;
+			this.size++;
+		}
+	}
+}
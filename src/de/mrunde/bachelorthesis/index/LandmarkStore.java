@@ -0,0 +1,511 @@
+package de.mrunde.bachelorthesis.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import de.mrunde.bachelorthesis.basics.GeoMath;
+
+/**
+ * The LandmarkStore stores features with a radius of visual salience (e.g.
+ * landmarks or street furniture) in an R-tree. The R-tree is bulk-loaded with
+ * the Sort-Tile-Recursive (STR) algorithm over the bounding boxes of the
+ * salience circles, so that a query only visits the features whose circle can
+ * contain the queried location.<br/>
+ * <br/>
+ * The features are identified by the order in which they have been added (the
+ * first feature has the id 0). Queries return the ids in ascending order so
+ * that the results are the same as iterating through the original list.
+ * 
+ * @author Marius Runde
+ * 
+ * @param <T>
+ *            Type of the stored features
+ */
+public class LandmarkStore<T> implements SpatialIndex {
+
+	/**
+	 * Maximal number of children of a node in the R-tree
+	 */
+	private static final int NODE_CAPACITY = 16;
+
+	/**
+	 * The stored features
+	 */
+	private final List<T> features;
+
+	// --- Bounding boxes of the salience circles (indexed by feature id) ---
+	/**
+	 * Minimal latitudes of the salience circles
+	 */
+	private double[] minLat;
+
+	/**
+	 * Maximal latitudes of the salience circles
+	 */
+	private double[] maxLat;
+
+	/**
+	 * Minimal longitudes of the salience circles
+	 */
+	private double[] minLng;
+
+	/**
+	 * Maximal longitudes of the salience circles
+	 */
+	private double[] maxLng;
+
+	// --- End of bounding boxes ---
+
+	/**
+	 * The levels of the R-tree. The first level contains the leaves, the last
+	 * level only contains the root.
+	 */
+	private Level[] levels;
+
+	/**
+	 * Feature ids in the order of the leaves. The children of a leaf are a
+	 * range of this array.
+	 */
+	private int[] leafEntries;
+
+	/**
+	 * Constructor of the LandmarkStore class
+	 */
+	public LandmarkStore() {
+		this.features = new ArrayList<T>();
+		this.minLat = new double[16];
+		this.maxLat = new double[16];
+		this.minLng = new double[16];
+		this.maxLng = new double[16];
+	}
+
+	/**
+	 * Add a feature to the store. Its id is the number of features that have
+	 * been added before. The store must be built again after adding features.
+	 * 
+	 * @param feature
+	 *            The feature
+	 * @param lat
+	 *            Latitude of the center of the feature
+	 * @param lng
+	 *            Longitude of the center of the feature
+	 * @param radius
+	 *            Radius of visual salience in meters
+	 */
+	public void add(T feature, double lat, double lng, double radius) {
+		int id = this.features.size();
+		if (id == this.minLat.length) {
+			int capacity = id * 2;
+			this.minLat = grow(this.minLat, capacity);
+			this.maxLat = grow(this.maxLat, capacity);
+			this.minLng = grow(this.minLng, capacity);
+			this.maxLng = grow(this.maxLng, capacity);
+		}
+
+		// Create the bounding box of the salience circle. The longitude is
+		// stretched at the side closer to the pole.
+		double deltaLat = radius / GeoMath.METERS_PER_DEGREE;
+		double poleLat = Math.min(Math.abs(lat) + deltaLat, 89);
+		double deltaLng = deltaLat / Math.cos(Math.toRadians(poleLat));
+		this.minLat[id] = lat - deltaLat;
+		this.maxLat[id] = lat + deltaLat;
+		this.minLng[id] = lng - deltaLng;
+		this.maxLng[id] = lng + deltaLng;
+
+		this.features.add(feature);
+		this.levels = null;
+	}
+
+	/**
+	 * Build the R-tree with the Sort-Tile-Recursive algorithm. This must be
+	 * called after all features have been added and before the first query.
+	 */
+	public void build() {
+		int size = this.features.size();
+		List<Level> levels = new ArrayList<Level>();
+
+		// Create the leaves from the bounding boxes of the features
+		Integer[] order = sortTileRecursive(this.minLat, this.maxLat,
+				this.minLng, this.maxLng, size);
+		this.leafEntries = new int[size];
+		for (int i = 0; i < size; i++) {
+			this.leafEntries[i] = order[i].intValue();
+		}
+		Level level = new Level((size + NODE_CAPACITY - 1) / NODE_CAPACITY);
+		for (int i = 0; i < level.size; i++) {
+			int start = i * NODE_CAPACITY;
+			int end = Math.min(start + NODE_CAPACITY, size);
+			level.setChildren(i, start, end);
+			for (int j = start; j < end; j++) {
+				int id = this.leafEntries[j];
+				level.include(i, this.minLat[id], this.maxLat[id],
+						this.minLng[id], this.maxLng[id]);
+			}
+		}
+		levels.add(level);
+
+		// Create the upper levels from the nodes below until only the root is
+		// left
+		while (level.size > 1) {
+			order = sortTileRecursive(level.minLat, level.maxLat,
+					level.minLng, level.maxLng, level.size);
+			level.reorder(order);
+
+			Level parent = new Level((level.size + NODE_CAPACITY - 1)
+					/ NODE_CAPACITY);
+			for (int i = 0; i < parent.size; i++) {
+				int start = i * NODE_CAPACITY;
+				int end = Math.min(start + NODE_CAPACITY, level.size);
+				parent.setChildren(i, start, end);
+				for (int j = start; j < end; j++) {
+					parent.include(i, level.minLat[j], level.maxLat[j],
+							level.minLng[j], level.maxLng[j]);
+				}
+			}
+			levels.add(parent);
+			level = parent;
+		}
+
+		this.levels = levels.toArray(new Level[levels.size()]);
+	}
+
+	/**
+	 * Find all features whose salience circle might contain the given
+	 * location. The ids of the features are set in <code>result</code>, which
+	 * is not cleared before. Only the bounding box of each circle is checked,
+	 * so the exact distance must still be checked by the caller.
+	 * 
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 * @param result
+	 *            The ids of the found features
+	 */
+	@Override
+	public void query(double lat, double lng, BitSet result) {
+		query(lat, lng, lat, lng, result);
+	}
+
+	/**
+	 * Find all features whose salience circle might intersect the given
+	 * bounding box (e.g. the box of a link of the route). The ids of the
+	 * features are set in <code>result</code>, which is not cleared before.
+	 * Only the bounding box of each circle is checked, so the exact distance
+	 * must still be checked by the caller.
+	 * 
+	 * @param minLat
+	 *            Minimal latitude of the box
+	 * @param minLng
+	 *            Minimal longitude of the box
+	 * @param maxLat
+	 *            Maximal latitude of the box
+	 * @param maxLng
+	 *            Maximal longitude of the box
+	 * @param result
+	 *            The ids of the found features
+	 */
+	@Override
+	public void query(double minLat, double minLng, double maxLat,
+			double maxLng, BitSet result) {
+		if (this.levels == null) {
+			throw new IllegalStateException(
+					"The LandmarkStore must be built before it can be queried");
+		}
+		if (this.features.isEmpty()) {
+			return;
+		}
+		query(this.levels.length - 1, 0, minLat, minLng, maxLat, maxLng,
+				result);
+	}
+
+	/**
+	 * Search the subtree of the given node recursively
+	 * 
+	 * @param depth
+	 *            Level of the node
+	 * @param node
+	 *            Index of the node in its level
+	 * @param minLat
+	 *            Minimal latitude of the box
+	 * @param minLng
+	 *            Minimal longitude of the box
+	 * @param maxLat
+	 *            Maximal latitude of the box
+	 * @param maxLng
+	 *            Maximal longitude of the box
+	 * @param result
+	 *            The ids of the found features
+	 */
+	private void query(int depth, int node, double minLat, double minLng,
+			double maxLat, double maxLng, BitSet result) {
+		Level level = this.levels[depth];
+		if (!level.intersects(node, minLat, minLng, maxLat, maxLng)) {
+			return;
+		}
+
+		if (depth == 0) {
+			// Check the features of this leaf
+			for (int i = level.childStart[node]; i < level.childEnd[node]; i++) {
+				int id = this.leafEntries[i];
+				if (this.minLat[id] <= maxLat && minLat <= this.maxLat[id]
+						&& this.minLng[id] <= maxLng
+						&& minLng <= this.maxLng[id]) {
+					result.set(id);
+				}
+			}
+		} else {
+			// Check the children of this node
+			for (int i = level.childStart[node]; i < level.childEnd[node]; i++) {
+				query(depth - 1, i, minLat, minLng, maxLat, maxLng, result);
+			}
+		}
+	}
+
+	/**
+	 * Get the feature with the given id
+	 * 
+	 * @param id
+	 *            Id of the feature
+	 * @return The feature
+	 */
+	public T get(int id) {
+		return this.features.get(id);
+	}
+
+	/**
+	 * @return The number of features in the store
+	 */
+	@Override
+	public int size() {
+		return this.features.size();
+	}
+
+	/**
+	 * Copy an array into a larger one
+	 * 
+	 * @param array
+	 *            The array
+	 * @param capacity
+	 *            Length of the new array
+	 * @return The new array
+	 */
+	private static double[] grow(double[] array, int capacity) {
+		double[] result = new double[capacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/**
+	 * Order bounding boxes with the Sort-Tile-Recursive algorithm: The boxes
+	 * are sorted by longitude and cut into vertical slices, then each slice is
+	 * sorted by latitude. Packing the result into nodes of
+	 * <code>NODE_CAPACITY</code> creates nearly square nodes.
+	 * 
+	 * @param minLat
+	 *            Minimal latitudes of the boxes
+	 * @param maxLat
+	 *            Maximal latitudes of the boxes
+	 * @param minLng
+	 *            Minimal longitudes of the boxes
+	 * @param maxLng
+	 *            Maximal longitudes of the boxes
+	 * @param size
+	 *            Number of boxes
+	 * @return The indexes of the boxes in their new order
+	 */
+	private static Integer[] sortTileRecursive(final double[] minLat,
+			final double[] maxLat, final double[] minLng,
+			final double[] maxLng, int size) {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+
+		// Sort by the center longitude
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(minLng[a] + maxLng[a], minLng[b]
+						+ maxLng[b]);
+			}
+		});
+
+		// Sort each slice by the center latitude
+		int nodes = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int slices = (int) Math.ceil(Math.sqrt(nodes));
+		int sliceSize = slices * NODE_CAPACITY;
+		Comparator<Integer> byLatitude = new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(minLat[a] + maxLat[a], minLat[b]
+						+ maxLat[b]);
+			}
+		};
+		for (int start = 0; start < size; start += sliceSize) {
+			Arrays.sort(order, start, Math.min(start + sliceSize, size),
+					byLatitude);
+		}
+
+		return order;
+	}
+
+	/**
+	 * A level of the R-tree storing the bounding boxes of its nodes and the
+	 * ranges of their children in the level below
+	 */
+	private static class Level {
+
+		/**
+		 * Number of nodes in this level
+		 */
+		private final int size;
+
+		// --- Bounding boxes of the nodes ---
+		/**
+		 * Minimal latitudes of the nodes
+		 */
+		private double[] minLat;
+
+		/**
+		 * Maximal latitudes of the nodes
+		 */
+		private double[] maxLat;
+
+		/**
+		 * Minimal longitudes of the nodes
+		 */
+		private double[] minLng;
+
+		/**
+		 * Maximal longitudes of the nodes
+		 */
+		private double[] maxLng;
+
+		// --- End of bounding boxes ---
+
+		/**
+		 * First child of each node (inclusive)
+		 */
+		private int[] childStart;
+
+		/**
+		 * Last child of each node (exclusive)
+		 */
+		private int[] childEnd;
+
+		/**
+		 * Constructor of the Level class
+		 * 
+		 * @param size
+		 *            Number of nodes in this level
+		 */
+		private Level(int size) {
+			this.size = size;
+			this.minLat = new double[size];
+			this.maxLat = new double[size];
+			this.minLng = new double[size];
+			this.maxLng = new double[size];
+			this.childStart = new int[size];
+			this.childEnd = new int[size];
+			Arrays.fill(this.minLat, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.maxLat, Double.NEGATIVE_INFINITY);
+			Arrays.fill(this.minLng, Double.POSITIVE_INFINITY);
+			Arrays.fill(this.maxLng, Double.NEGATIVE_INFINITY);
+		}
+
+		/**
+		 * Set the range of children of a node
+		 * 
+		 * @param node
+		 *            Index of the node
+		 * @param start
+		 *            First child (inclusive)
+		 * @param end
+		 *            Last child (exclusive)
+		 */
+		private void setChildren(int node, int start, int end) {
+			this.childStart[node] = start;
+			this.childEnd[node] = end;
+		}
+
+		/**
+		 * Enlarge the bounding box of a node so that it includes the given box
+		 * 
+		 * @param node
+		 *            Index of the node
+		 * @param minLat
+		 *            Minimal latitude of the box
+		 * @param maxLat
+		 *            Maximal latitude of the box
+		 * @param minLng
+		 *            Minimal longitude of the box
+		 * @param maxLng
+		 *            Maximal longitude of the box
+		 */
+		private void include(int node, double minLat, double maxLat,
+				double minLng, double maxLng) {
+			this.minLat[node] = Math.min(this.minLat[node], minLat);
+			this.maxLat[node] = Math.max(this.maxLat[node], maxLat);
+			this.minLng[node] = Math.min(this.minLng[node], minLng);
+			this.maxLng[node] = Math.max(this.maxLng[node], maxLng);
+		}
+
+		/**
+		 * Check if the bounding box of a node intersects the given box
+		 * 
+		 * @param node
+		 *            Index of the node
+		 * @param minLat
+		 *            Minimal latitude of the box
+		 * @param minLng
+		 *            Minimal longitude of the box
+		 * @param maxLat
+		 *            Maximal latitude of the box
+		 * @param maxLng
+		 *            Maximal longitude of the box
+		 * @return <code>TRUE</code> if the boxes intersect
+		 */
+		private boolean intersects(int node, double minLat, double minLng,
+				double maxLat, double maxLng) {
+			return this.minLat[node] <= maxLat && minLat <= this.maxLat[node]
+					&& this.minLng[node] <= maxLng
+					&& minLng <= this.maxLng[node];
+		}
+
+		/**
+		 * Reorder the nodes of this level
+		 * 
+		 * @param order
+		 *            The indexes of the nodes in their new order
+		 */
+		private void reorder(Integer[] order) {
+			double[] newMinLat = new double[this.size];
+			double[] newMaxLat = new double[this.size];
+			double[] newMinLng = new double[this.size];
+			double[] newMaxLng = new double[this.size];
+			int[] newChildStart = new int[this.size];
+			int[] newChildEnd = new int[this.size];
+			for (int i = 0; i < this.size; i++) {
+				int j = order[i].intValue();
+				newMinLat[i] = this.minLat[j];
+				newMaxLat[i] = this.maxLat[j];
+				newMinLng[i] = this.minLng[j];
+				newMaxLng[i] = this.maxLng[j];
+				newChildStart[i] = this.childStart[j];
+				newChildEnd[i] = this.childEnd[j];
+			}
+			this.minLat = newMinLat;
+			this.maxLat = newMaxLat;
+			this.minLng = newMinLng;
+			this.maxLng = newMaxLng;
+			this.childStart = newChildStart;
+			this.childEnd = newChildEnd;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package de.mrunde.bachelorthesis.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import de.mrunde.bachelorthesis.basics.GeoMath;
+
+/**
+ * The RouteCorridor is the area around a route in which features (e.g.
+ * landmarks, street furniture or intersections) can be used for instructions.
+ * It is used to filter out all features that are too far away from the route
+ * before the instructions are created.<br/>
+ * <br/>
+ * The corridor is stored as the set of grid cells touched by the route
+ * buffered by the given distance. It therefore contains at least all
+ * locations within that distance of the route, but may contain a few more.
+ * 
+ * @author Marius Runde
+ */
+public class RouteCorridor {
+
+	/**
+	 * Width of the buffer around the route in degrees of latitude
+	 */
+	private final double buffer;
+
+	/**
+	 * Size of a cell in degrees
+	 */
+	private final double cellSize;
+
+	/**
+	 * The cells covered by the corridor
+	 */
+	private final HashSet<Long> cells;
+
+	/**
+	 * Latitude of the last point added to the route
+	 */
+	private double lastLat;
+
+	/**
+	 * Longitude of the last point added to the route
+	 */
+	private double lastLng;
+
+	/**
+	 * Number of points added to the route
+	 */
+	private int size;
+
+	/**
+	 * Constructor of the RouteCorridor class
+	 * 
+	 * @param buffer
+	 *            Width of the buffer around the route in meters
+	 */
+	public RouteCorridor(double buffer) {
+		this.buffer = Math.max(buffer, 1) / GeoMath.METERS_PER_DEGREE;
+		this.cellSize = this.buffer;
+		this.cells = new HashSet<Long>();
+		this.size = 0;
+	}
+
+	/**
+	 * Add the next point of the route. The corridor is extended along the
+	 * straight line from the previous point to this point.
+	 * 
+	 * @param lat
+	 *            Latitude of the point
+	 * @param lng
+	 *            Longitude of the point
+	 */
+	public void add(double lat, double lng) {
+		if (this.size == 0) {
+			cover(lat, lng);
+		} else {
+			// Cover the line to the previous point in steps of half a cell so
+			// that no cell is skipped
+			double deltaLat = lat - this.lastLat;
+			double deltaLng = lng - this.lastLng;
+			double length = Math.max(Math.abs(deltaLat), Math.abs(deltaLng));
+			int steps = (int) Math.ceil(length / (this.cellSize / 2));
+			for (int i = 1; i <= steps; i++) {
+				cover(this.lastLat + deltaLat * i / steps, this.lastLng
+						+ deltaLng * i / steps);
+			}
+		}
+		this.lastLat = lat;
+		this.lastLng = lng;
+		this.size++;
+	}
+
+	/**
+	 * Check if a location is inside the corridor
+	 * 
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 * @return <code>TRUE</code> if the location might be within the buffer
+	 *         distance of the route
+	 */
+	public boolean contains(double lat, double lng) {
+		return this.cells.contains(Long.valueOf(key(cell(lat), cell(lng))));
+	}
+
+	/**
+	 * Get the tiles of a coarser grid that are touched by the corridor, e.g. to
+	 * load only the parts of a tiled feature file along the route. The tile
+	 * with row r and column c covers the latitudes from r * tileSize to (r + 1)
+	 * * tileSize and the longitudes from c * tileSize to (c + 1) * tileSize.
+	 * 
+	 * @param tileSize
+	 *            Size of the tiles in degrees
+	 * @return Row and column of each tile sorted by row and then by column
+	 */
+	public List<int[]> getTiles(double tileSize) {
+		TreeSet<Long> tiles = new TreeSet<Long>();
+		for (Long cell : this.cells) {
+			int row = (int) (cell.longValue() >> 32);
+			int col = (int) cell.longValue();
+			int minRow = (int) Math.floor(row * this.cellSize / tileSize);
+			int maxRow = (int) Math.floor((row + 1) * this.cellSize / tileSize);
+			int minCol = (int) Math.floor(col * this.cellSize / tileSize);
+			int maxCol = (int) Math.floor((col + 1) * this.cellSize / tileSize);
+			for (int tileRow = minRow; tileRow <= maxRow; tileRow++) {
+				for (int tileCol = minCol; tileCol <= maxCol; tileCol++) {
+					tiles.add(Long.valueOf(((long) tileRow << 32)
+							+ ((long) tileCol + 0x80000000L)));
+				}
+			}
+		}
+
+		List<int[]> result = new ArrayList<int[]>(tiles.size());
+		for (Long tile : tiles) {
+			result.add(new int[] { (int) (tile.longValue() >> 32),
+					(int) ((tile.longValue() & 0xffffffffL) - 0x80000000L) });
+		}
+		return result;
+	}
+
+	/**
+	 * Add all cells around a location of the route to the corridor
+	 * 
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 */
+	private void cover(double lat, double lng) {
+		// Create a bounding box around the location which covers the buffer
+		// and the half cell to the next location of the route. The longitude
+		// is stretched at the side closer to the pole.
+		double bufferLat = this.buffer + this.cellSize / 2;
+		double poleLat = Math.min(Math.abs(lat) + this.buffer, 89);
+		double bufferLng = this.buffer / Math.cos(Math.toRadians(poleLat))
+				+ this.cellSize / 2;
+
+		int minRow = cell(lat - bufferLat);
+		int maxRow = cell(lat + bufferLat);
+		int minCol = cell(lng - bufferLng);
+		int maxCol = cell(lng + bufferLng);
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int col = minCol; col <= maxCol; col++) {
+				this.cells.add(Long.valueOf(key(row, col)));
+			}
+		}
+	}
+
+	/**
+	 * Get the row or column of the cell that contains the given coordinate
+	 * 
+	 * @param coordinate
+	 *            Latitude or longitude
+	 * @return Row or column of the cell
+	 */
+	private int cell(double coordinate) {
+		return (int) Math.floor(coordinate / this.cellSize);
+	}
+
+	/**
+	 * Combine the row and column of a cell to a single key
+	 * 
+	 * @param row
+	 *            Row of the cell
+	 * @param col
+	 *            Column of the cell
+	 * @return The key of the cell
+	 */
+	private static long key(int row, int col) {
+		return ((long) row << 32) | (col & 0xffffffffL);
+	}
+}
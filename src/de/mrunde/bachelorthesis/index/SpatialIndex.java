@@ -0,0 +1,53 @@
+package de.mrunde.bachelorthesis.index;
+
+import java.util.BitSet;
+
+/**
+ * A SpatialIndex finds the features (e.g. landmarks, street furniture or
+ * intersections) that might be close to a location or a bounding box. The
+ * features are identified by the order in which they have been added (the
+ * first feature has the id 0).
+ * 
+ * @author Marius Runde
+ */
+public interface SpatialIndex {
+
+	/**
+	 * Find all features that might reach the given location. The ids of the
+	 * features are set in <code>result</code>, which is not cleared before.
+	 * The exact distance must still be checked by the caller.
+	 * 
+	 * @param lat
+	 *            Latitude of the location
+	 * @param lng
+	 *            Longitude of the location
+	 * @param result
+	 *            The ids of the found features
+	 */
+	public void query(double lat, double lng, BitSet result);
+
+	/**
+	 * Find all features that might reach the given bounding box (e.g. the box
+	 * of a link of the route). The ids of the features are set in
+	 * <code>result</code>, which is not cleared before. The exact distance
+	 * must still be checked by the caller.
+	 * 
+	 * @param minLat
+	 *            Minimal latitude of the box
+	 * @param minLng
+	 *            Minimal longitude of the box
+	 * @param maxLat
+	 *            Maximal latitude of the box
+	 * @param maxLng
+	 *            Maximal longitude of the box
+	 * @param result
+	 *            The ids of the found features
+	 */
+	public void query(double minLat, double minLng, double maxLat,
+			double maxLng, BitSet result);
+
+	/**
+	 * @return The number of features in the index
+	 */
+	public int size();
+}
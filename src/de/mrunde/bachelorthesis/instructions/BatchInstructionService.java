@@ -0,0 +1,318 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.mrunde.bachelorthesis.basics.Logger;
+import de.mrunde.bachelorthesis.basics.Route;
+
+/**
+ * The BatchInstructionService creates the instructions for many routes (e.g.
+ * precomputing the instructions of a fleet on a server). All routes share one
+ * <code>FeatureIndex</code>, so the features are only read once. Each route
+ * gets its own InstructionManager, which is evaluated by the executor, so that
+ * several routes are processed at the same time.<br/>
+ * <br/>
+ * The results are passed to the listener in the order of the guidance
+ * documents and always on the thread calling <code>run()</code>, so the
+ * listener does not need to be thread-safe. Only a limited number of routes
+ * is in progress at the same time, so the guidance documents can be read
+ * lazily from a large source.
+ * 
+ * @author Marius Runde
+ */
+public class BatchInstructionService {
+
+	/**
+	 * The features shared by all routes
+	 */
+	private final FeatureIndex features;
+
+	/**
+	 * The executor to process the routes
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Maximal number of routes in progress at the same time
+	 */
+	private final int maxPendingRoutes;
+
+	/**
+	 * A Listener receives the instructions of each route
+	 * 
+	 * @author Marius Runde
+	 */
+	public interface Listener {
+
+		/**
+		 * The instructions of a route have been created
+		 * 
+		 * @param route
+		 *            Index of the guidance document (the first one has the
+		 *            index 0)
+		 * @param plan
+		 *            The instruction plan of the route
+		 */
+		void onInstructions(int route, InstructionPlan plan);
+
+		/**
+		 * The instructions of a route could not be created
+		 * 
+		 * @param route
+		 *            Index of the guidance document (the first one has the
+		 *            index 0)
+		 * @param message
+		 *            The error message
+		 */
+		void onError(int route, String message);
+	}
+
+	/**
+	 * Constructor of the BatchInstructionService class
+	 * 
+	 * @param features
+	 *            The features shared by all routes (see
+	 *            <code>InstructionManager.createFeatureIndex()</code>)
+	 * @param executor
+	 *            The executor to process the routes (e.g. a fixed thread pool
+	 *            with one thread for each processor)
+	 * @param maxPendingRoutes
+	 *            Maximal number of routes in progress at the same time. It
+	 *            should be a few times the number of threads of the executor.
+	 */
+	public BatchInstructionService(FeatureIndex features,
+			ExecutorService executor, int maxPendingRoutes) {
+		if (maxPendingRoutes < 1) {
+			throw new IllegalArgumentException(
+					"At least one route must be in progress");
+		}
+		this.features = features;
+		this.executor = executor;
+		this.maxPendingRoutes = maxPendingRoutes;
+	}
+
+	/**
+	 * Create the instructions for all guidance documents
+	 * 
+	 * @param guidance
+	 *            The guidance documents in the MapQuest format. Each stream
+	 *            is closed after it has been read.
+	 * @param listener
+	 *            The listener receiving the instructions of each route
+	 * @return The statistics of the batch
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting for a
+	 *             route. The remaining routes are cancelled.
+	 */
+	public Statistics run(Iterator<? extends InputStream> guidance,
+			Listener listener) throws InterruptedException {
+		Statistics statistics = new Statistics();
+		LinkedList<Future<InstructionPlan>> pending = new LinkedList<Future<InstructionPlan>>();
+		int submitted = 0;
+		try {
+			while (guidance.hasNext()) {
+				// Wait for the oldest route if too many are in progress
+				if (pending.size() >= this.maxPendingRoutes) {
+					report(submitted - pending.size(), pending.removeFirst(),
+							listener, statistics);
+				}
+				pending.addLast(this.executor.submit(createTask(guidance
+						.next())));
+				submitted++;
+			}
+			while (!pending.isEmpty()) {
+				report(submitted - pending.size(), pending.removeFirst(),
+						listener, statistics);
+			}
+		} finally {
+			// Stop the remaining routes if anything went wrong
+			for (Future<InstructionPlan> route : pending) {
+				route.cancel(true);
+			}
+		}
+		statistics.finish();
+		Logger.v("BatchInstructionService.run", statistics.toString());
+		return statistics;
+	}
+
+	/**
+	 * Create the task creating the instructions of a route
+	 * 
+	 * @param in
+	 *            The guidance document
+	 * @return The task. It returns <code>null</code> if the guidance could
+	 *         not be read.
+	 */
+	private Callable<InstructionPlan> createTask(final InputStream in) {
+		return new Callable<InstructionPlan>() {
+
+			@Override
+			public InstructionPlan call() throws IOException {
+				Route route;
+				try {
+					route = new Route(in);
+				} finally {
+					in.close();
+				}
+				if (!route.isImportSuccessful()) {
+					return null;
+				}
+				InstructionManager im = new InstructionManager(route,
+						BatchInstructionService.this.features);
+				return im.createPlan();
+			}
+		};
+	}
+
+	/**
+	 * Wait for the instructions of a route and pass them to the listener
+	 * 
+	 * @param index
+	 *            Index of the guidance document
+	 * @param route
+	 *            The instruction plan of the route
+	 * @param listener
+	 *            The listener
+	 * @param statistics
+	 *            The statistics to update
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting
+	 */
+	private void report(int index, Future<InstructionPlan> route,
+			Listener listener, Statistics statistics)
+			throws InterruptedException {
+		InstructionPlan plan;
+		try {
+			plan = route.get();
+		} catch (ExecutionException e) {
+			statistics.failedRoutes++;
+			listener.onError(index,
+					"Could not create the instructions. This is the error message: "
+							+ e.getCause().getMessage());
+			return;
+		}
+		if (plan == null) {
+			statistics.failedRoutes++;
+			listener.onError(index, "Could not read the guidance");
+		} else {
+			statistics.routes++;
+			statistics.instructions += plan.getNumberOfInstructions();
+			listener.onInstructions(index, plan);
+		}
+	}
+
+	/**
+	 * The Statistics of a batch describe its throughput
+	 * 
+	 * @author Marius Runde
+	 */
+	public static class Statistics {
+
+		/**
+		 * Start of the batch in nanoseconds
+		 */
+		private final long start;
+
+		/**
+		 * Duration of the batch in milliseconds
+		 */
+		private long duration;
+
+		/**
+		 * Number of routes with instructions
+		 */
+		private int routes;
+
+		/**
+		 * Number of routes whose instructions could not be created
+		 */
+		private int failedRoutes;
+
+		/**
+		 * Number of created instructions
+		 */
+		private long instructions;
+
+		/**
+		 * Constructor of the Statistics class. The batch starts immediately.
+		 */
+		private Statistics() {
+			this.start = System.nanoTime();
+		}
+
+		/**
+		 * Finish the batch
+		 */
+		private void finish() {
+			this.duration = (System.nanoTime() - this.start) / 1000000;
+		}
+
+		/**
+		 * @return The number of routes with instructions
+		 */
+		public int getRoutes() {
+			return this.routes;
+		}
+
+		/**
+		 * @return The number of routes whose instructions could not be
+		 *         created
+		 */
+		public int getFailedRoutes() {
+			return this.failedRoutes;
+		}
+
+		/**
+		 * @return The number of created instructions
+		 */
+		public long getInstructions() {
+			return this.instructions;
+		}
+
+		/**
+		 * @return The duration of the batch in milliseconds
+		 */
+		public long getDuration() {
+			return this.duration;
+		}
+
+		/**
+		 * @return The number of processed routes (including the failed ones)
+		 *         per second
+		 */
+		public double getRoutesPerSecond() {
+			return (this.routes + this.failedRoutes) * 1000.0
+					/ Math.max(this.duration, 1);
+		}
+
+		/**
+		 * @return The number of created instructions per second
+		 */
+		public double getInstructionsPerSecond() {
+			return this.instructions * 1000.0 / Math.max(this.duration, 1);
+		}
+
+		/**
+		 * @return The statistics, e.g. "120 routes (0 failed), 2400
+		 *         instructions in 850 ms (141.2 routes/s, 2823.5
+		 *         instructions/s)"
+		 */
+		@Override
+		public String toString() {
+			return this.routes + " routes (" + this.failedRoutes
+					+ " failed), " + this.instructions + " instructions in "
+					+ this.duration + " ms ("
+					+ Math.round(getRoutesPerSecond() * 10) / 10.0
+					+ " routes/s, "
+					+ Math.round(getInstructionsPerSecond() * 10) / 10.0
+					+ " instructions/s)";
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.GeoMath;
+
+/**
+ * The DecisionPointTracker decides for each location update whether the next
+ * decision point has been reached, a <code>NowInstruction</code> is due or a
+ * driving error has occurred. It compares the distances to the next decision
+ * point and the decision point after next with the ones of the previous
+ * location updates and moves the <code>NavigationCursor</code> accordingly.
+ * The tracker does not depend on Android, so it can be fed with recorded
+ * locations as well.
+ * 
+ * @author Marius Runde
+ */
+public class DecisionPointTracker {
+
+	// --- Results of a location update ---
+
+	/**
+	 * Nothing has to be done
+	 */
+	public static final int NONE = 0;
+
+	/**
+	 * The next decision point has been reached and the cursor has been moved
+	 * to the following instruction
+	 */
+	public static final int NEXT_INSTRUCTION = 1;
+
+	/**
+	 * The next decision point is close, so the <code>NowInstruction</code> of
+	 * the current instruction is due
+	 */
+	public static final int NOW_INSTRUCTION = 2;
+
+	/**
+	 * The user seems to go away from both the next decision point and the
+	 * decision point after next, so the guidance needs to be updated
+	 */
+	public static final int UPDATE_GUIDANCE = 3;
+
+	/**
+	 * The decision point of the last instruction (the destination) has been
+	 * reached
+	 */
+	public static final int DESTINATION_REACHED = 4;
+
+	// --- End of results of a location update ---
+
+	// --- Default thresholds ---
+
+	/**
+	 * Default minimum distance for a route segment to use a NowInstruction
+	 */
+	public static final int DEFAULT_MIN_DISTANCE_FOR_NOW_INSTRUCTION = 100;
+
+	/**
+	 * Default distance before reaching the next decision point at which the
+	 * NowInstruction is due
+	 */
+	public static final int DEFAULT_DISTANCE_FOR_NOW_INSTRUCTION = 48;
+
+	/**
+	 * Default maximum distance to a decision point when it is supposed to be
+	 * reached
+	 */
+	public static final int DEFAULT_MAX_DISTANCE_TO_DECISION_POINT = 32;
+
+	/**
+	 * Default maximum value for the <code>distanceCounter</code>
+	 */
+	public static final int DEFAULT_MAX_COUNTER_VALUE = 5;
+
+	// --- End of default thresholds ---
+
+	/**
+	 * The cursor of the navigation
+	 */
+	private final NavigationCursor cursor;
+
+	/**
+	 * Minimum distance for a route segment to use a NowInstruction
+	 */
+	private int minDistanceForNowInstruction = DEFAULT_MIN_DISTANCE_FOR_NOW_INSTRUCTION;
+
+	/**
+	 * The NowInstruction is due at this distance before reaching the next
+	 * decision point
+	 */
+	private int distanceForNowInstruction = DEFAULT_DISTANCE_FOR_NOW_INSTRUCTION;
+
+	/**
+	 * Maximum distance to a decision point when it is supposed to be reached
+	 */
+	private int maxDistanceToDecisionPoint = DEFAULT_MAX_DISTANCE_TO_DECISION_POINT;
+
+	/**
+	 * Maximum value for the <code>distanceCounter</code>
+	 */
+	private int maxCounterValue = DEFAULT_MAX_COUNTER_VALUE;
+
+	/**
+	 * Variable to control if the usage of a NowInstruction has been checked
+	 */
+	private boolean nowInstructionChecked = false;
+
+	/**
+	 * Variable to control if a NowInstruction will be used
+	 */
+	private boolean nowInstructionUsed = false;
+
+	/**
+	 * Store the last distance between the next decision point and the current
+	 * location. Is set to 0 when the instruction is updated.
+	 */
+	private double lastDistanceDP1 = 0;
+
+	/**
+	 * Store the last distance between the decision point after next and the
+	 * current location. Is set to 0 when the instruction is updated.
+	 */
+	private double lastDistanceDP2 = 0;
+
+	/**
+	 * Counts the distance changes between the next decision point, the decision
+	 * point after next and the current location. Is set to 0 after the
+	 * instruction has been updated. The instruction is updated when the counter
+	 * exceeds the maximum value (<code>maxCounterValue</code>) or the next
+	 * decision point has been reached. If the counter falls below the maximum
+	 * negative value (<code>(-1) * maxCounterValue</code>), the whole guidance
+	 * needs to be updated.
+	 */
+	private int distanceCounter = 0;
+
+	/**
+	 * Distance to the next decision point at the last location update
+	 */
+	private double distanceDP1 = 0;
+
+	/**
+	 * Distance to the decision point after next at the last location update
+	 * (0 if there is none)
+	 */
+	private double distanceDP2 = 0;
+
+	/**
+	 * <code>TRUE</code> if the destination has been reached
+	 */
+	private boolean destinationReached = false;
+
+	/**
+	 * Constructor of the DecisionPointTracker class with the default
+	 * thresholds
+	 * 
+	 * @param cursor
+	 *            The cursor of the navigation
+	 */
+	public DecisionPointTracker(NavigationCursor cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * Set the thresholds of the tracker
+	 * 
+	 * @param minDistanceForNowInstruction
+	 *            Minimum distance for a route segment to use a NowInstruction
+	 *            in meters
+	 * @param distanceForNowInstruction
+	 *            Distance before reaching the next decision point at which the
+	 *            NowInstruction is due in meters
+	 * @param maxDistanceToDecisionPoint
+	 *            Maximum distance to a decision point when it is supposed to be
+	 *            reached in meters
+	 * @param maxCounterValue
+	 *            Maximum value for the counter of the distance changes
+	 */
+	public void setThresholds(int minDistanceForNowInstruction,
+			int distanceForNowInstruction, int maxDistanceToDecisionPoint,
+			int maxCounterValue) {
+		this.minDistanceForNowInstruction = minDistanceForNowInstruction;
+		this.distanceForNowInstruction = distanceForNowInstruction;
+		this.maxDistanceToDecisionPoint = maxDistanceToDecisionPoint;
+		this.maxCounterValue = maxCounterValue;
+	}
+
+	/**
+	 * @return The cursor of the navigation
+	 */
+	public NavigationCursor getCursor() {
+		return this.cursor;
+	}
+
+	/**
+	 * Process a location update
+	 * 
+	 * @param lat
+	 *            Latitude of the current location
+	 * @param lng
+	 *            Longitude of the current location
+	 * @return What has to be done: <code>NONE</code>,
+	 *         <code>NEXT_INSTRUCTION</code>, <code>NOW_INSTRUCTION</code>,
+	 *         <code>UPDATE_GUIDANCE</code> or
+	 *         <code>DESTINATION_REACHED</code>
+	 */
+	public int onLocationChanged(double lat, double lng) {
+		if (this.destinationReached) {
+			return NONE;
+		}
+
+		// Calculate the distance to the next decision point
+		Coordinate dp1 = this.cursor.getCurrentInstruction().getDecisionPoint();
+		this.distanceDP1 = GeoMath.haversine(lat, lng, dp1.getLatitude(),
+				dp1.getLongitude());
+
+		// Check whether a now instruction must be used (only once for each
+		// route segment)
+		if (this.nowInstructionChecked == false
+				&& this.distanceDP1 >= this.minDistanceForNowInstruction) {
+			this.nowInstructionUsed = true;
+		}
+		this.nowInstructionChecked = true;
+
+		// Calculate the distance to the decision point after next. The last
+		// instruction has none, so only its decision point can be reached.
+		Coordinate dp2 = this.cursor.getNextInstructionLocation();
+		if (dp2 == null) {
+			this.distanceDP2 = 0;
+			if (this.distanceDP1 < this.maxDistanceToDecisionPoint) {
+				this.destinationReached = true;
+				return DESTINATION_REACHED;
+			}
+			return NONE;
+		}
+		this.distanceDP2 = GeoMath.haversine(lat, lng, dp2.getLatitude(),
+				dp2.getLongitude());
+
+		// Check the distances with the stored ones
+		if (this.distanceDP1 < this.maxDistanceToDecisionPoint) {
+			// Distance to decision point is less than
+			// maxDistanceToDecisionPoint
+			return nextInstruction();
+		} else if (this.distanceDP1 < this.distanceForNowInstruction
+				&& this.nowInstructionUsed == true) {
+			// Distance to decision point is less than
+			// distanceForNowInstruction and decreasing, so a now instruction is
+			// prompted to the user. It is only used once.
+			this.nowInstructionUsed = false;
+			return NOW_INSTRUCTION;
+		} else if (this.distanceDP1 > this.lastDistanceDP1
+				&& this.distanceDP2 < this.lastDistanceDP2) {
+			// The distance to the next decision point has increased and the
+			// distance to the decision point after next has decreased
+			this.lastDistanceDP1 = this.distanceDP1;
+			this.lastDistanceDP2 = this.distanceDP2;
+			this.distanceCounter++;
+		} else if (this.distanceDP1 > this.lastDistanceDP1
+				&& this.distanceDP2 > this.lastDistanceDP2) {
+			// Distance to the next decision point and the decision point after
+			// next has increased (can lead to a driving error)
+			this.lastDistanceDP1 = this.distanceDP1;
+			this.lastDistanceDP2 = this.distanceDP2;
+			this.distanceCounter--;
+		}
+
+		// Check if the whole guidance needs to be reloaded due to a driving
+		// error (user seems to go away from both the decision point and the
+		// decision point after next)
+		if (this.distanceCounter < (-1 * this.maxCounterValue)) {
+			return UPDATE_GUIDANCE;
+		}
+		// Check if the instruction needs to be updated
+		if (this.distanceCounter > this.maxCounterValue) {
+			return nextInstruction();
+		}
+		return NONE;
+	}
+
+	/**
+	 * Move the cursor to the following instruction
+	 * 
+	 * @return <code>NEXT_INSTRUCTION</code>
+	 */
+	private int nextInstruction() {
+		reset();
+		this.cursor.getNextInstruction();
+		return NEXT_INSTRUCTION;
+	}
+
+	/**
+	 * Reset the distances, their counter and the NowInstruction controllers,
+	 * e.g. after the cursor has been moved
+	 */
+	public void reset() {
+		this.lastDistanceDP1 = 0;
+		this.lastDistanceDP2 = 0;
+		this.distanceCounter = 0;
+		this.nowInstructionChecked = false;
+		this.nowInstructionUsed = false;
+		this.destinationReached = false;
+	}
+
+	/**
+	 * @return The distance to the next decision point at the last location
+	 *         update in meters
+	 */
+	public double getDistanceDP1() {
+		return this.distanceDP1;
+	}
+
+	/**
+	 * @return The distance to the decision point after next at the last
+	 *         location update in meters (0 if there is none)
+	 */
+	public double getDistanceDP2() {
+		return this.distanceDP2;
+	}
+
+	/**
+	 * @return The counter of the distance changes
+	 */
+	public int getDistanceCounter() {
+		return this.distanceCounter;
+	}
+}
@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Maneuver;
 
 /**
@@ -26,7 +25,7 @@ public class DistanceInstruction extends Instruction {
 	 * @param distance
 	 *            Distance to the decision point
 	 */
-	public DistanceInstruction(GeoPoint decisionPoint, int maneuverType,
+	public DistanceInstruction(Coordinate decisionPoint, int maneuverType,
 			int distance) {
 		super(decisionPoint, maneuverType);
 		this.distance = distance;
@@ -0,0 +1,214 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Landmark;
+import de.mrunde.bachelorthesis.basics.StreetFurniture;
+import de.mrunde.bachelorthesis.index.GridIndex;
+import de.mrunde.bachelorthesis.index.LandmarkStore;
+
+/**
+ * The FeatureIndex stores the landmarks, street furniture and intersections
+ * together with their spatial indexes. It is immutable once it has been
+ * created, so that one FeatureIndex can be shared by the InstructionManagers
+ * of many routes and read by several threads at the same time (e.g. when the
+ * instructions of many routes are created in a batch).
+ * 
+ * @author Marius Runde
+ */
+public class FeatureIndex {
+
+	/**
+	 * Size of the cells of the intersection index in meters
+	 */
+	private final int GRID_CELL_SIZE = 100;
+
+	/**
+	 * Tolerance added to the radius of the features in the spatial indexes.
+	 * The distances are only approximated, so a feature that is slightly
+	 * further away than its radius is still found.
+	 */
+	private final int INDEX_TOLERANCE = 1;
+
+	/**
+	 * Local landmarks
+	 */
+	private final List<Landmark> localLandmarks;
+
+	/**
+	 * Global landmarks
+	 */
+	private final List<Landmark> globalLandmarks;
+
+	/**
+	 * Street furniture
+	 */
+	private final List<StreetFurniture> streetFurniture;
+
+	/**
+	 * Intersections
+	 */
+	private final List<Coordinate> intersections;
+
+	/**
+	 * Spatial index of the local landmarks
+	 */
+	private final LandmarkStore<Landmark> localLandmarkStore;
+
+	/**
+	 * Spatial index of the global landmarks
+	 */
+	private final LandmarkStore<Landmark> globalLandmarkStore;
+
+	/**
+	 * Spatial index of the street furniture
+	 */
+	private final LandmarkStore<StreetFurniture> streetFurnitureStore;
+
+	/**
+	 * Spatial index of the intersections
+	 */
+	private final GridIndex intersectionIndex;
+
+	/**
+	 * Constructor of the FeatureIndex class. The features are copied, so the
+	 * given lists can be changed afterwards.
+	 * 
+	 * @param localLandmarks
+	 *            The local landmarks
+	 * @param globalLandmarks
+	 *            The global landmarks
+	 * @param streetFurniture
+	 *            The street furniture
+	 * @param intersections
+	 *            The intersections
+	 * @param intersectionRadius
+	 *            Maximal distance between an intersection and the route in
+	 *            meters
+	 */
+	FeatureIndex(List<Landmark> localLandmarks, List<Landmark> globalLandmarks,
+			List<StreetFurniture> streetFurniture,
+			List<Coordinate> intersections, int intersectionRadius) {
+		this.localLandmarks = Collections
+				.unmodifiableList(new ArrayList<Landmark>(localLandmarks));
+		this.globalLandmarks = Collections
+				.unmodifiableList(new ArrayList<Landmark>(globalLandmarks));
+		this.streetFurniture = Collections
+				.unmodifiableList(new ArrayList<StreetFurniture>(
+						streetFurniture));
+		this.intersections = Collections
+				.unmodifiableList(new ArrayList<Coordinate>(intersections));
+
+		// Index the landmarks by their radius of visibility
+		this.localLandmarkStore = createLandmarkStore(this.localLandmarks);
+		this.globalLandmarkStore = createLandmarkStore(this.globalLandmarks);
+
+		// Index the street furniture by their radius of visual salience
+		this.streetFurnitureStore = new LandmarkStore<StreetFurniture>();
+		for (int i = 0; i < this.streetFurniture.size(); i++) {
+			StreetFurniture furniture = this.streetFurniture.get(i);
+			this.streetFurnitureStore.add(furniture, furniture.getCenter()
+					.getLatitude(), furniture.getCenter().getLongitude(),
+					furniture.getRadius() + INDEX_TOLERANCE);
+		}
+		this.streetFurnitureStore.build();
+
+		// Index the intersections by their position
+		this.intersectionIndex = new GridIndex(GRID_CELL_SIZE);
+		for (int i = 0; i < this.intersections.size(); i++) {
+			this.intersectionIndex.add(this.intersections.get(i).getLatitude(),
+					this.intersections.get(i).getLongitude(),
+					intersectionRadius + INDEX_TOLERANCE);
+		}
+	}
+
+	/**
+	 * Index landmarks by their radius of visibility
+	 * 
+	 * @param landmarks
+	 *            The landmarks
+	 * @return The spatial index of the landmarks
+	 */
+	private LandmarkStore<Landmark> createLandmarkStore(List<Landmark> landmarks) {
+		LandmarkStore<Landmark> store = new LandmarkStore<Landmark>();
+		for (int i = 0; i < landmarks.size(); i++) {
+			Landmark landmark = landmarks.get(i);
+			store.add(landmark, landmark.getCenter().getLatitude(), landmark
+					.getCenter().getLongitude(), landmark.getRadius()
+					+ INDEX_TOLERANCE);
+		}
+		store.build();
+		return store;
+	}
+
+	/**
+	 * @return The local landmarks
+	 */
+	public List<Landmark> getLocalLandmarks() {
+		return this.localLandmarks;
+	}
+
+	/**
+	 * @return The global landmarks
+	 */
+	public List<Landmark> getGlobalLandmarks() {
+		return this.globalLandmarks;
+	}
+
+	/**
+	 * @return The street furniture
+	 */
+	public List<StreetFurniture> getStreetFurniture() {
+		return this.streetFurniture;
+	}
+
+	/**
+	 * @return The intersections
+	 */
+	public List<Coordinate> getIntersections() {
+		return this.intersections;
+	}
+
+	/**
+	 * @return The spatial index of the local landmarks. It must only be
+	 *         queried.
+	 */
+	LandmarkStore<Landmark> getLocalLandmarkStore() {
+		return this.localLandmarkStore;
+	}
+
+	/**
+	 * @return The spatial index of the global landmarks. It must only be
+	 *         queried.
+	 */
+	LandmarkStore<Landmark> getGlobalLandmarkStore() {
+		return this.globalLandmarkStore;
+	}
+
+	/**
+	 * @return The spatial index of the street furniture. It must only be
+	 *         queried.
+	 */
+	LandmarkStore<StreetFurniture> getStreetFurnitureStore() {
+		return this.streetFurnitureStore;
+	}
+
+	/**
+	 * @return The spatial index of the intersections. It must only be
+	 *         queried.
+	 */
+	GridIndex getIntersectionIndex() {
+		return this.intersectionIndex;
+	}
+
+	@Override
+	public String toString() {
+		return this.localLandmarks.size() + " local landmarks, "
+				+ this.globalLandmarks.size() + " global landmarks, "
+				+ this.streetFurniture.size() + " street furniture, "
+				+ this.intersections.size() + " intersections";
+	}
+}
@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Landmark;
 import de.mrunde.bachelorthesis.basics.LandmarkCategory;
 
@@ -30,7 +29,7 @@ public class GlobalInstruction extends Instruction {
 	 * @param global
 	 *            The global landmark along the route
 	 */
-	public GlobalInstruction(GeoPoint instructionPoint, Landmark global,
+	public GlobalInstruction(Coordinate instructionPoint, Landmark global,
 			boolean leftTurn) {
 		super(instructionPoint, 0);
 		this.global = global;
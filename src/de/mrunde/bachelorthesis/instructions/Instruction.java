@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Maneuver;
 
 /**
@@ -20,7 +19,7 @@ public abstract class Instruction {
 	 * landmark or local landmark is along the route so the instruction has to
 	 * be spoken at that position.
 	 */
-	private GeoPoint decisionPoint;
+	private Coordinate decisionPoint;
 
 	/**
 	 * The maneuver type
@@ -38,7 +37,7 @@ public abstract class Instruction {
 	 * @param maneuverType
 	 *            The maneuver type
 	 */
-	public Instruction(GeoPoint decisionPoint, int maneuverType) {
+	public Instruction(Coordinate decisionPoint, int maneuverType) {
 		this.decisionPoint = decisionPoint;
 		this.maneuverType = maneuverType;
 		this.maneuver = Maneuver.getManeuverText(this.maneuverType);
@@ -47,7 +46,7 @@ public abstract class Instruction {
 	/**
 	 * @return The decision point
 	 */
-	public GeoPoint getDecisionPoint() {
+	public Coordinate getDecisionPoint() {
 		return this.decisionPoint;
 	}
 
@@ -1,27 +1,39 @@
 package de.mrunde.bachelorthesis.instructions;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import android.util.Log;
-
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Landmark;
+import de.mrunde.bachelorthesis.basics.Logger;
 import de.mrunde.bachelorthesis.basics.Maneuver;
 import de.mrunde.bachelorthesis.basics.Route;
 import de.mrunde.bachelorthesis.basics.RouteSegment;
 import de.mrunde.bachelorthesis.basics.StreetFurniture;
 import de.mrunde.bachelorthesis.basics.StreetFurnitureCategory;
+import de.mrunde.bachelorthesis.index.RouteCorridor;
+import de.mrunde.bachelorthesis.index.SpatialIndex;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.io.FeatureFormat;
 
 /**
  * The InstructionManager handles turn events in the navigation process. It can
  * create instructions depending on the available landmarks, street furniture or
- * intersections.
+ * intersections.<br/>
+ * <br/>
+ * The instructions are returned as an <code>InstructionPlan</code>. The
+ * InstructionManager does not track the progress of the navigation (see
+ * <code>NavigationCursor</code>) and is not changed after it has been
+ * created, so it can be used by several threads.
  * 
  * @author Marius Runde
  */
@@ -31,50 +43,46 @@ public class InstructionManager {
 	 * This is the maximal distance between the decision point and a street
 	 * furniture
 	 */
-	private final int MAX_DISTANCE_TO_STREET_FURNITURE = 16;
+	private static final int MAX_DISTANCE_TO_STREET_FURNITURE = 16;
 
 	/**
 	 * This is the maximal number of intersections to be used for an instruction
 	 */
-	private final int MAX_NUMBER_OF_STREET_FURNITURE = 2;
+	private static final int MAX_NUMBER_OF_STREET_FURNITURE = 2;
 
 	/**
 	 * This is the maximal distance between the decision point and an
 	 * intersection
 	 */
-	private final int MAX_DISTANCE_TO_INTERSECTION = 16;
+	private static final int MAX_DISTANCE_TO_INTERSECTION = 16;
 
 	/**
 	 * This is the maximal number of intersections to be used for an instruction
 	 */
-	private final int MAX_NUMBER_OF_INTERSECTIONS = 3;
+	private static final int MAX_NUMBER_OF_INTERSECTIONS = 3;
 
 	/**
-	 * Value to check if the JSON import succeeded
+	 * Tolerance added to the radius of the features in the corridor around
+	 * the route. The distances are only approximated, so a feature that is
+	 * slightly further away than its radius is still found.
 	 */
-	private boolean importSuccessful;
+	private static final int INDEX_TOLERANCE = 1;
 
 	/**
-	 * Store the route information
+	 * Number of route segments evaluated by one task when the instructions
+	 * are created in parallel
 	 */
-	private Route route;
+	private static final int SEGMENTS_PER_TASK = 8;
 
 	/**
-	 * Instructions created by the InstructionManager
-	 */
-	private List<Instruction> instructions;
-
-	/**
-	 * Store the current instruction. Default = 0
+	 * Value to check if the JSON import succeeded
 	 */
-	private int currentInstruction;
+	private boolean importSuccessful;
 
 	/**
-	 * Stores a <code>boolean</code> whether the last instruction contained
-	 * information of a roundabout. Then the following instruction must be
-	 * ignored because it has the same information.
+	 * Store the route information
 	 */
-	private boolean lastInstructionWasForRoundabout;
+	private Route route;
 
 	/**
 	 * Local landmarks to be used
@@ -94,7 +102,13 @@ public class InstructionManager {
 	/**
 	 * Intersections to be used
 	 */
-	private List<GeoPoint> intersections;
+	private List<Coordinate> intersections;
+
+	/**
+	 * The features with their spatial indexes. It is either created for this
+	 * route or shared with other InstructionManagers.
+	 */
+	private FeatureIndex features;
 
 	/**
 	 * Constructor of the InstructionManager class
@@ -106,15 +120,25 @@ public class InstructionManager {
 	 */
 	public InstructionManager(JSONObject guidance, JSONObject landmarks,
 			JSONArray streetFurniture, JSONArray intersections) {
+		this(new Route(guidance), landmarks, streetFurniture, intersections);
+	}
+
+	/**
+	 * Constructor of the InstructionManager class
+	 * 
+	 * @param route
+	 *            The route (e.g. read from the guidance stream)
+	 * @param landmarks
+	 *            The landmarks from res/raw/landmarks.json
+	 */
+	public InstructionManager(Route route, JSONObject landmarks,
+			JSONArray streetFurniture, JSONArray intersections) {
 		// Initialize the route
-		this.route = new Route(guidance);
+		this.route = route;
 
 		// Check if the JSON import has been successful
 		this.importSuccessful = this.route.isImportSuccessful();
 
-		// Initialize the control variable for the roundabout instructions
-		this.lastInstructionWasForRoundabout = false;
-
 		// Initialize the landmarks
 		initLandmarks(landmarks);
 
@@ -123,6 +147,193 @@ public class InstructionManager {
 
 		// Initialize the intersections
 		initIntersections(intersections);
+
+		// Remove all features that are too far away from the route
+		if (this.importSuccessful) {
+			filterByCorridor();
+		}
+
+		// Initialize the spatial indexes of the features
+		initIndexes();
+	}
+
+	/**
+	 * Constructor of the InstructionManager class
+	 * 
+	 * @param route
+	 *            The route (e.g. read from the guidance stream)
+	 * @param features
+	 *            The landmarks, street furniture and intersections from
+	 *            res/raw/features.bin. Only the tiles along the route are
+	 *            read.
+	 */
+	public InstructionManager(Route route, FeatureFile features) {
+		// Initialize the route
+		this.route = route;
+
+		// Check if the JSON import has been successful
+		this.importSuccessful = this.route.isImportSuccessful();
+
+		// Initialize the landmarks, street furniture and intersections along
+		// the route
+		this.localLandmarks = new ArrayList<Landmark>();
+		this.globalLandmarks = new ArrayList<Landmark>();
+		this.streetFurniture = new ArrayList<StreetFurniture>();
+		this.intersections = new ArrayList<Coordinate>();
+		if (this.importSuccessful) {
+			initFeatures(features);
+		}
+
+		// Initialize the spatial indexes of the features
+		initIndexes();
+	}
+
+	/**
+	 * Constructor of the InstructionManager class. The features are not
+	 * copied or filtered, so creating an InstructionManager for another route
+	 * is cheap. The InstructionManagers of several routes can share the same
+	 * features and create their instructions in different threads.
+	 * 
+	 * @param route
+	 *            The route (e.g. read from the guidance stream)
+	 * @param features
+	 *            The shared features (see
+	 *            <code>createFeatureIndex(FeatureFile)</code>)
+	 */
+	public InstructionManager(Route route, FeatureIndex features) {
+		// Initialize the route
+		this.route = route;
+
+		// Check if the JSON import has been successful
+		this.importSuccessful = this.route.isImportSuccessful();
+
+		// Use the shared features
+		useFeatures(features);
+	}
+
+	/**
+	 * Create the features that can be shared by the InstructionManagers of
+	 * many routes. All landmarks, street furniture and intersections of the
+	 * feature file are read in the order of the file, so this is meant for
+	 * the batch processing on a server. The app uses
+	 * <code>InstructionManager(Route, FeatureFile)</code> instead, which only
+	 * reads the tiles along the route.
+	 * 
+	 * @param features
+	 *            The feature file
+	 * @return The features with their spatial indexes
+	 */
+	public static FeatureIndex createFeatureIndex(FeatureFile features) {
+		List<Landmark> localLandmarks = new ArrayList<Landmark>();
+		for (int i = 0; i < features.getNumberOfLocalLandmarks(); i++) {
+			localLandmarks.add(features.getLocalLandmark(i));
+		}
+		List<Landmark> globalLandmarks = new ArrayList<Landmark>();
+		for (int i = 0; i < features.getNumberOfGlobalLandmarks(); i++) {
+			globalLandmarks.add(features.getGlobalLandmark(i));
+		}
+		List<StreetFurniture> streetFurniture = new ArrayList<StreetFurniture>();
+		for (int i = 0; i < features.getNumberOfStreetFurniture(); i++) {
+			streetFurniture.add(features.getStreetFurniture(i,
+					MAX_DISTANCE_TO_STREET_FURNITURE));
+		}
+		List<Coordinate> intersections = new ArrayList<Coordinate>();
+		for (int i = 0; i < features.getNumberOfIntersections(); i++) {
+			intersections.add(features.getIntersection(i));
+		}
+		return new FeatureIndex(localLandmarks, globalLandmarks,
+				streetFurniture, intersections, MAX_DISTANCE_TO_INTERSECTION);
+	}
+
+	/**
+	 * Initialize the landmarks, street furniture and intersections from the
+	 * tiles of a binary feature file that are touched by the corridor around
+	 * the route. All other tiles are never read, so that the memory needed
+	 * does not depend on the size of the feature file.
+	 * 
+	 * @param features
+	 *            The feature file
+	 */
+	private void initFeatures(FeatureFile features) {
+		// Create the corridor around the route. Street furniture without an
+		// individual radius gets the default radius.
+		int maxRadius = Math.max(features.getMaxRadius(),
+				MAX_DISTANCE_TO_STREET_FURNITURE);
+		RouteCorridor corridor = createCorridor(Math.max(maxRadius,
+				MAX_DISTANCE_TO_INTERSECTION));
+
+		// Read the features inside the corridor tile by tile
+		List<int[]> tiles = corridor.getTiles(features.getTileSize() / 1E6);
+		int numberOfTiles = 0;
+		for (int[] tile : tiles) {
+			int index = features.findTile(tile[0], tile[1]);
+			if (index == -1) {
+				// No features in this tile
+				continue;
+			}
+			numberOfTiles++;
+
+			int end = features.getTileEnd(index, FeatureFormat.LOCAL_LANDMARKS);
+			for (int i = features.getTileStart(index,
+					FeatureFormat.LOCAL_LANDMARKS); i < end; i++) {
+				if (isInCorridor(features, FeatureFormat.LOCAL_LANDMARKS, i,
+						corridor)) {
+					this.localLandmarks.add(features.getLocalLandmark(i));
+				}
+			}
+			end = features.getTileEnd(index, FeatureFormat.GLOBAL_LANDMARKS);
+			for (int i = features.getTileStart(index,
+					FeatureFormat.GLOBAL_LANDMARKS); i < end; i++) {
+				if (isInCorridor(features, FeatureFormat.GLOBAL_LANDMARKS, i,
+						corridor)) {
+					this.globalLandmarks.add(features.getGlobalLandmark(i));
+				}
+			}
+			end = features.getTileEnd(index, FeatureFormat.STREET_FURNITURE);
+			for (int i = features.getTileStart(index,
+					FeatureFormat.STREET_FURNITURE); i < end; i++) {
+				if (isInCorridor(features, FeatureFormat.STREET_FURNITURE, i,
+						corridor)) {
+					this.streetFurniture.add(features.getStreetFurniture(i,
+							MAX_DISTANCE_TO_STREET_FURNITURE));
+				}
+			}
+			end = features.getTileEnd(index, FeatureFormat.INTERSECTIONS);
+			for (int i = features.getTileStart(index,
+					FeatureFormat.INTERSECTIONS); i < end; i++) {
+				if (isInCorridor(features, FeatureFormat.INTERSECTIONS, i,
+						corridor)) {
+					this.intersections.add(features.getIntersection(i));
+				}
+			}
+		}
+
+		Logger.v("InstructionManager.initFeatures", "Features along the route ("
+				+ numberOfTiles + " of " + tiles.size() + " tiles): "
+				+ this.localLandmarks.size() + " local landmarks, "
+				+ this.globalLandmarks.size() + " global landmarks, "
+				+ this.streetFurniture.size() + " street furniture, "
+				+ this.intersections.size() + " intersections");
+	}
+
+	/**
+	 * Check if a feature of a feature file is inside the corridor without
+	 * reading the whole feature
+	 * 
+	 * @param features
+	 *            The feature file
+	 * @param section
+	 *            The section of the feature (see <code>FeatureFormat</code>)
+	 * @param index
+	 *            Index of the feature
+	 * @param corridor
+	 *            The corridor around the route
+	 * @return <code>TRUE</code> if the feature is inside the corridor
+	 */
+	private boolean isInCorridor(FeatureFile features, int section, int index,
+			RouteCorridor corridor) {
+		return corridor.contains(features.getLatitudeE6(section, index) / 1E6,
+				features.getLongitudeE6(section, index) / 1E6);
 	}
 
 	/**
@@ -139,7 +350,7 @@ public class InstructionManager {
 			JSONArray local = landmarks.getJSONArray("local");
 			for (int i = 0; i < local.length(); i++) {
 				String title = ((JSONObject) local.get(i)).getString("title");
-				GeoPoint center = new GeoPoint(((JSONObject) local.get(i))
+				Coordinate center = new Coordinate(((JSONObject) local.get(i))
 						.getJSONObject("center").getDouble("lat"),
 						((JSONObject) local.get(i)).getJSONObject("center")
 								.getDouble("lng"));
@@ -154,11 +365,11 @@ public class InstructionManager {
 			JSONArray global = landmarks.getJSONArray("global");
 			for (int i = 0; i < global.length(); i++) {
 				String title = ((JSONObject) global.get(i)).getString("title");
-				GeoPoint center = new GeoPoint(((JSONObject) global.get(i))
+				Coordinate center = new Coordinate(((JSONObject) global.get(i))
 						.getJSONObject("center").getDouble("lat"),
 						((JSONObject) global.get(i)).getJSONObject("center")
 								.getDouble("lng"));
-				int radius = ((JSONObject) local.get(i)).getInt("radius");
+				int radius = ((JSONObject) global.get(i)).getInt("radius");
 				String category = ((JSONObject) global.get(i))
 						.getString("category");
 				this.globalLandmarks.add(new Landmark(false, title, center,
@@ -166,18 +377,18 @@ public class InstructionManager {
 			}
 		} catch (JSONException e) {
 			// Error while parsing JSONObject
-			Log.e("InstructionManager",
+			Logger.e("InstructionManager",
 					"Error while parsing JSONObject to initialize the landmarks.");
 			this.importSuccessful = false;
 		}
 
 		// Log the landmarks
 		for (int i = 0; i < this.localLandmarks.size(); i++) {
-			Log.v("InstructionManager.initLandmarks", "Local Landmark " + i
+			Logger.v("InstructionManager.initLandmarks", "Local Landmark " + i
 					+ ": " + this.localLandmarks.get(i).toString());
 		}
 		for (int i = 0; i < this.globalLandmarks.size(); i++) {
-			Log.v("InstructionManager.initLandmarks", "Global Landmark " + i
+			Logger.v("InstructionManager.initLandmarks", "Global Landmark " + i
 					+ ": " + this.globalLandmarks.get(i).toString());
 		}
 	}
@@ -192,10 +403,10 @@ public class InstructionManager {
 		this.streetFurniture = new ArrayList<StreetFurniture>();
 		try {
 			for (int i = 0; i < streetFurniture.length(); i++) {
-				GeoPoint center = new GeoPoint(streetFurniture.getJSONObject(i)
-						.getJSONObject("center").getDouble("lat"),
-						streetFurniture.getJSONObject(i)
-								.getJSONObject("center").getDouble("lng"));
+				Coordinate center = new Coordinate(streetFurniture
+						.getJSONObject(i).getJSONObject("center")
+						.getDouble("lat"), streetFurniture.getJSONObject(i)
+						.getJSONObject("center").getDouble("lng"));
 				String category = streetFurniture.getJSONObject(i).getString(
 						"category");
 				// Has the street furniture an individual radius of visual
@@ -214,15 +425,16 @@ public class InstructionManager {
 			}
 		} catch (JSONException e) {
 			// Error while parsing JSONArray
-			Log.e("InstructionManager",
+			Logger.e("InstructionManager",
 					"Error while parsing JSONArray to initialize the street furniture.");
 			this.importSuccessful = false;
 		}
 
 		// Log the street furniture
 		for (int i = 0; i < this.streetFurniture.size(); i++) {
-			Log.v("InstructionManager.initStreetFurniture", "Street furniture "
-					+ i + ": " + this.streetFurniture.get(i).toString());
+			Logger.v("InstructionManager.initStreetFurniture",
+					"Street furniture " + i + ": "
+							+ this.streetFurniture.get(i).toString());
 		}
 	}
 
@@ -233,27 +445,141 @@ public class InstructionManager {
 	 *            The intersections from res/raw/intersections.json
 	 */
 	private void initIntersections(JSONArray intersections) {
-		this.intersections = new ArrayList<GeoPoint>();
+		this.intersections = new ArrayList<Coordinate>();
 		try {
 			for (int i = 0; i < intersections.length(); i++) {
-				this.intersections.add(new GeoPoint(((JSONObject) intersections
-						.get(i)).getDouble("lat"), ((JSONObject) intersections
-						.get(i)).getDouble("lng")));
+				this.intersections.add(new Coordinate(
+						((JSONObject) intersections.get(i)).getDouble("lat"),
+						((JSONObject) intersections.get(i)).getDouble("lng")));
 			}
 		} catch (JSONException e) {
 			// Error while parsing JSONArray
-			Log.e("InstructionManager",
+			Logger.e("InstructionManager",
 					"Error while parsing JSONArray to initialize the intersections.");
 			this.importSuccessful = false;
 		}
 
 		// Log the intersections
 		for (int i = 0; i < this.intersections.size(); i++) {
-			Log.v("InstructionManager.initIntersections", "Intersection " + i
+			Logger.v("InstructionManager.initIntersections", "Intersection " + i
 					+ ": " + this.intersections.get(i).toString());
 		}
 	}
 
+	/**
+	 * Remove all landmarks, street furniture and intersections that are too
+	 * far away from the route to be used in any instruction. The route is
+	 * buffered by the largest radius of all features and every feature is
+	 * checked once whether it lies inside this corridor.
+	 */
+	private void filterByCorridor() {
+		// Find the largest radius of all features
+		int maxRadius = MAX_DISTANCE_TO_INTERSECTION;
+		for (int i = 0; i < this.localLandmarks.size(); i++) {
+			maxRadius = Math.max(maxRadius, this.localLandmarks.get(i)
+					.getRadius());
+		}
+		for (int i = 0; i < this.globalLandmarks.size(); i++) {
+			maxRadius = Math.max(maxRadius, this.globalLandmarks.get(i)
+					.getRadius());
+		}
+		for (int i = 0; i < this.streetFurniture.size(); i++) {
+			maxRadius = Math.max(maxRadius, this.streetFurniture.get(i)
+					.getRadius());
+		}
+
+		// Create the corridor around the route
+		RouteCorridor corridor = createCorridor(maxRadius);
+
+		// Keep only the features inside the corridor
+		this.localLandmarks = filterLandmarks(this.localLandmarks, corridor);
+		this.globalLandmarks = filterLandmarks(this.globalLandmarks, corridor);
+		List<StreetFurniture> streetFurniture = new ArrayList<StreetFurniture>();
+		for (int i = 0; i < this.streetFurniture.size(); i++) {
+			Coordinate center = this.streetFurniture.get(i).getCenter();
+			if (corridor.contains(center.getLatitude(), center.getLongitude())) {
+				streetFurniture.add(this.streetFurniture.get(i));
+			}
+		}
+		this.streetFurniture = streetFurniture;
+		List<Coordinate> intersections = new ArrayList<Coordinate>();
+		for (int i = 0; i < this.intersections.size(); i++) {
+			Coordinate intersection = this.intersections.get(i);
+			if (corridor.contains(intersection.getLatitude(),
+					intersection.getLongitude())) {
+				intersections.add(intersection);
+			}
+		}
+		this.intersections = intersections;
+
+		Logger.v("InstructionManager.filterByCorridor",
+				"Features along the route: " + this.localLandmarks.size()
+						+ " local landmarks, " + this.globalLandmarks.size()
+						+ " global landmarks, " + this.streetFurniture.size()
+						+ " street furniture, " + this.intersections.size()
+						+ " intersections");
+	}
+
+	/**
+	 * Create the corridor around the route
+	 * 
+	 * @param maxRadius
+	 *            The largest radius of all features in meters
+	 * @return The corridor
+	 */
+	private RouteCorridor createCorridor(int maxRadius) {
+		RouteCorridor corridor = new RouteCorridor(maxRadius + INDEX_TOLERANCE);
+		for (int i = 0; i < this.route.getNumberOfShapePoints(); i++) {
+			corridor.add(this.route.getLatitude(i), this.route.getLongitude(i));
+		}
+		return corridor;
+	}
+
+	/**
+	 * Keep only the landmarks inside the corridor
+	 * 
+	 * @param landmarks
+	 *            The landmarks
+	 * @param corridor
+	 *            The corridor around the route
+	 * @return The landmarks inside the corridor in their original order
+	 */
+	private List<Landmark> filterLandmarks(List<Landmark> landmarks,
+			RouteCorridor corridor) {
+		List<Landmark> result = new ArrayList<Landmark>();
+		for (int i = 0; i < landmarks.size(); i++) {
+			Coordinate center = landmarks.get(i).getCenter();
+			if (corridor.contains(center.getLatitude(), center.getLongitude())) {
+				result.add(landmarks.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Initialize the spatial indexes of the landmarks, street furniture and
+	 * intersections
+	 */
+	private void initIndexes() {
+		useFeatures(new FeatureIndex(this.localLandmarks, this.globalLandmarks,
+				this.streetFurniture, this.intersections,
+				MAX_DISTANCE_TO_INTERSECTION));
+	}
+
+	/**
+	 * Use the features of a feature index to create the instructions
+	 * 
+	 * @param features
+	 *            The feature index
+	 */
+	private void useFeatures(FeatureIndex features) {
+		this.features = features;
+		this.localLandmarks = features.getLocalLandmarks();
+		this.globalLandmarks = features.getGlobalLandmarks();
+		this.streetFurniture = features.getStreetFurniture();
+		this.intersections = features.getIntersections();
+	}
+
 	/**
 	 * @return Check if the JSON import has been successful
 	 */
@@ -266,165 +592,253 @@ public class InstructionManager {
 	 * 
 	 * @return All shape points
 	 */
-	public GeoPoint[] getShapePoints() {
+	public Coordinate[] getShapePoints() {
 		return this.route.getShapePoints();
 	}
 
 	/**
-	 * Get all verbal instructions as extended ones. This includes the titles of
-	 * the landmarks instead of their categories.
+	 * Create the instruction plan from the route information. The
+	 * InstructionManager itself is not changed, so several plans can be
+	 * created at the same time.
 	 * 
-	 * @return All verbal instructions
-	 */
-	public String[] getVerbalInstructions() {
-		String[] result = new String[this.instructions.size()];
-
-		for (int i = 0; i < result.length; i++) {
-			if (this.instructions.get(i).getClass() == de.mrunde.bachelorthesis.instructions.GlobalInstruction.class) {
-				result[i] = ((GlobalInstruction) this.instructions.get(i))
-						.toExtendedString();
-			} else if (this.instructions.get(i).getClass() == de.mrunde.bachelorthesis.instructions.LandmarkInstruction.class) {
-				result[i] = ((LandmarkInstruction) this.instructions.get(i))
-						.toExtendedString();
-			} else {
-				result[i] = this.instructions.get(i).toString();
-			}
-		}
+	 * @return The instruction plan
+	 */
+	public InstructionPlan createPlan() {
+		return createPlan(new ArrayList<Instruction>(), 0, Integer.MAX_VALUE);
+	}
 
-		return result;
+	/**
+	 * Create the instruction plan of the first route segments only, so that
+	 * the first instructions are available as soon as possible even for long
+	 * routes. The plan is completed later with <code>extendPlan()</code> or
+	 * <code>completePlan()</code>.
+	 * 
+	 * @param numberOfInstructions
+	 *            Minimum number of instructions of the plan. Route segments
+	 *            are added until the plan contains this number of
+	 *            instructions or all route segments have been added.
+	 * @return The instruction plan of the first route segments
+	 */
+	public InstructionPlan createPlan(int numberOfInstructions) {
+		return createPlan(new ArrayList<Instruction>(), 0,
+				numberOfInstructions);
 	}
 
 	/**
-	 * Get the instruction at the desired index
+	 * Extend an instruction plan by the instructions of the following route
+	 * segments. The given plan is not changed, so it can still be used while
+	 * the extended plan is being created.
 	 * 
-	 * @param index
-	 *            Index of the instruction
-	 * @return The instruction
+	 * @param plan
+	 *            The plan of the first route segments of this route
+	 * @param numberOfInstructions
+	 *            Minimum number of instructions of the extended plan
+	 * @return The extended plan or the given plan if it already contains
+	 *         enough instructions or is complete
 	 */
-	public Instruction getInstruction(int index) {
-		if (this.instructions.get(index) != null) {
-			this.currentInstruction = index;
-			return this.instructions.get(index);
-		} else {
-			Log.e("InstructionManager", "Could not get instruction at index "
-					+ index);
-			return null;
+	public InstructionPlan extendPlan(InstructionPlan plan,
+			int numberOfInstructions) {
+		if (plan.getRoute() != this.route) {
+			throw new IllegalArgumentException(
+					"The plan has been created for another route");
 		}
+		if (plan.isComplete()
+				|| plan.getNumberOfInstructions() >= numberOfInstructions) {
+			return plan;
+		}
+		return createPlan(new ArrayList<Instruction>(plan.getInstructions()),
+				plan.getNumberOfSegments(), numberOfInstructions);
 	}
 
 	/**
-	 * Get the current instruction
+	 * Extend an instruction plan by the instructions of all remaining route
+	 * segments
 	 * 
-	 * @return The current instruction
+	 * @param plan
+	 *            The plan of the first route segments of this route
+	 * @return The complete plan or a shorter one if the thread has been
+	 *         interrupted meanwhile (see <code>createPlan()</code>)
 	 */
-	public Instruction getCurrentInstruction() {
-		return this.instructions.get(this.currentInstruction);
+	public InstructionPlan completePlan(InstructionPlan plan) {
+		return extendPlan(plan, Integer.MAX_VALUE);
 	}
 
 	/**
-	 * Get the corresponding now instruction of the current instruction
+	 * Create the instructions of the route segments following the given ones.
+	 * If the thread is interrupted, e.g. because the task completing the plan
+	 * in the background has been cancelled, no further route segments are
+	 * added. The plan is shorter then, but it can still be extended later.
 	 * 
-	 * @return Now instruction of current instruction
+	 * @param instructions
+	 *            The instructions of the previous route segments. The new
+	 *            instructions are added.
+	 * @param firstSegment
+	 *            Index of the first route segment to be added
+	 * @param numberOfInstructions
+	 *            Minimum number of instructions of the plan
+	 * @return The instruction plan
 	 */
-	public NowInstruction getNowInstruction() {
-		return new NowInstruction(this.getCurrentInstruction());
+	private InstructionPlan createPlan(List<Instruction> instructions,
+			int firstSegment, int numberOfInstructions) {
+		boolean[] skipped = findSkippedSegments();
+		int i = firstSegment;
+		while (i < skipped.length
+				&& instructions.size() < numberOfInstructions
+				&& !Thread.currentThread().isInterrupted()) {
+			RouteSegment rs = this.route.getSegment(i);
+			Instruction[] instruction = null;
+			if (!skipped[i]) {
+				instruction = createInstruction(rs);
+			}
+			addInstructions(instructions, i, rs, instruction);
+			i++;
+		}
+		return new InstructionPlan(this.route, instructions, i);
 	}
 
 	/**
-	 * Get the next instruction
+	 * Create the instruction plan from the route information in parallel.
+	 * The route segments are split into ranges which are evaluated by the
+	 * given executor, while the feature indexes are only read. The result is
+	 * the same as the one of <code>createPlan()</code>.
 	 * 
-	 * @return The next instruction. <code>Null</code> if last instruction has
-	 *         already been reached.
-	 */
-	public Instruction getNextInstruction() {
-		if (this.instructions.size() > this.currentInstruction + 1) {
-			// Increase the pointer
-			this.currentInstruction++;
-			// Return the next instruction
-			return this.instructions.get(this.currentInstruction);
-		} else {
-			// Return null when last instruction has already been reached
-			return null;
+	 * @param executor
+	 *            The executor to evaluate the route segments (e.g. a fixed
+	 *            thread pool with one thread for each processor). It can be
+	 *            shared by several InstructionManagers.
+	 * @return The instruction plan
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting for the
+	 *             executor
+	 */
+	public InstructionPlan createPlan(ExecutorService executor)
+			throws InterruptedException {
+		final boolean[] skipped = findSkippedSegments();
+
+		// Evaluate the ranges of route segments in parallel
+		List<Future<Instruction[][]>> ranges = new ArrayList<Future<Instruction[][]>>();
+		for (int start = 0; start < skipped.length; start += SEGMENTS_PER_TASK) {
+			final int rangeStart = start;
+			final int rangeEnd = Math.min(start + SEGMENTS_PER_TASK,
+					skipped.length);
+			ranges.add(executor.submit(new Callable<Instruction[][]>() {
+
+				@Override
+				public Instruction[][] call() {
+					Instruction[][] result = new Instruction[rangeEnd
+							- rangeStart][];
+					for (int i = rangeStart; i < rangeEnd; i++) {
+						if (!skipped[i]) {
+							RouteSegment segment = InstructionManager.this.route
+									.getSegment(i);
+							result[i - rangeStart] = createInstruction(segment);
+						}
+					}
+					return result;
+				}
+			}));
 		}
+
+		// Add the instructions in the order of the route segments
+		List<Instruction> instructions = new ArrayList<Instruction>();
+		try {
+			int i = 0;
+			for (Future<Instruction[][]> range : ranges) {
+				for (Instruction[] instruction : range.get()) {
+					addInstructions(instructions, i, this.route.getSegment(i),
+							instruction);
+					i++;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			// Stop the remaining tasks if anything went wrong
+			for (Future<Instruction[][]> range : ranges) {
+				range.cancel(true);
+			}
+		}
+		return new InstructionPlan(this.route, instructions, skipped.length);
 	}
 
 	/**
-	 * Get the location (decision point) of the next instruction
+	 * Apply the roundabout rule: the instruction following a roundabout
+	 * instruction is skipped because it has the same information. The rule
+	 * only depends on the maneuver types, so the route segments can be
+	 * evaluated in any order afterwards.
 	 * 
-	 * @return The location of the next instruction. <code>Null</code> if last
-	 *         instruction has already been reached.
-	 */
-	public GeoPoint getNextInstructionLocation() {
-		if (this.instructions.size() > this.currentInstruction + 1) {
-			// Return the next instruction's decision point
-			return this.instructions.get(this.currentInstruction + 1)
-					.getDecisionPoint();
-		} else {
-			// Return null when last instruction has already been reached
-			return null;
+	 * @return For each route segment <code>TRUE</code> if it is skipped
+	 */
+	private boolean[] findSkippedSegments() {
+		boolean[] skipped = new boolean[this.route.getNumberOfSegments()];
+		for (int i = 1; i < skipped.length; i++) {
+			skipped[i] = !skipped[i - 1]
+					&& Maneuver.isRoundaboutAction(this.route.getSegment(i - 1)
+							.getManeuverType());
 		}
+		return skipped;
 	}
 
 	/**
-	 * Create the instructions from the route information
+	 * Add the instructions of a route segment
+	 * 
+	 * @param instructions
+	 *            The instructions created so far
+	 * @param segmentIndex
+	 *            Index of the route segment
+	 * @param rs
+	 *            The route segment
+	 * @param instruction
+	 *            The global and the local instruction of the route segment or
+	 *            <code>null</code> if it is skipped
 	 */
-	public void createInstructions() {
-		this.instructions = new ArrayList<Instruction>();
-		int j = 0;
-		for (int i = 0; i < this.route.getNumberOfSegments(); i++) {
-			RouteSegment rs = this.route.getNextSegment();
-			Instruction[] instruction = createInstruction(rs.getEndPoint(),
-					rs.getStartPoint(), rs.getManeuverType(), rs.getDistance());
-
-			// The first instruction will be ignored, if it is of maneuver type
-			// STRAIGHT so the user gets immediately the required instruction
-			if (i == 0 && rs.getManeuverType() == Maneuver.STRAIGHT) {
-				instruction = null;
-			}
+	private void addInstructions(List<Instruction> instructions,
+			int segmentIndex, RouteSegment rs, Instruction[] instruction) {
+		// The first instruction will be ignored, if it is of maneuver type
+		// STRAIGHT so the user gets immediately the required instruction
+		if (segmentIndex == 0 && rs.getManeuverType() == Maneuver.STRAIGHT) {
+			instruction = null;
+		}
 
-			if (instruction != null) {
-				// Add the global instruction (if available)
-				if (instruction[0] != null) {
-					// Check if the global instruction does not use the same
-					// landmark as the landmark-based instruction
-					if (instruction[1].getClass() != LandmarkInstruction.class
-							|| (instruction[1].getClass() == LandmarkInstruction.class && !((GlobalInstruction) instruction[0])
-									.getGlobal()
-									.equals(((LandmarkInstruction) instruction[1])
-											.getLocal()))) {
-						this.instructions.add(instruction[0]);
-						// Log global instruction
-						Log.v("InstructionManager.createInstructions",
-								"(Global) Instruction "
-										+ j
-										+ ": "
-										+ this.instructions.get(j).toString()
-										+ " | "
-										+ this.instructions.get(j)
-												.getDecisionPoint().toString());
-						j++;
-					}
-				}
-				// Remove "no-turn" instructions by ignoring them
-				if (instruction[1].toString() != null) {
-					this.instructions.add(instruction[1]);
-					// Log local instruction
-					Log.v("InstructionManager.createInstructions",
-							"(Local) Instruction "
-									+ j
+		if (instruction != null) {
+			// Add the global instruction (if available)
+			if (instruction[0] != null) {
+				// Check if the global instruction does not use the same
+				// landmark as the landmark-based instruction
+				if (instruction[1].getClass() != LandmarkInstruction.class
+						|| (instruction[1].getClass() == LandmarkInstruction.class && !((GlobalInstruction) instruction[0])
+								.getGlobal()
+								.equals(((LandmarkInstruction) instruction[1])
+										.getLocal()))) {
+					instructions.add(instruction[0]);
+					// Log global instruction
+					Logger.v("InstructionManager.createPlan",
+							"(Global) Instruction "
+									+ (instructions.size() - 1)
 									+ ": "
-									+ this.instructions.get(j).toString()
-									+ " | Maneuver Type: "
-									+ this.instructions.get(j)
-											.getManeuverType()
+									+ instruction[0].toString()
 									+ " | "
-									+ this.instructions.get(j)
-											.getDecisionPoint().toString()
-									+ " | Instruction Type: "
-									+ this.instructions.get(j).getClass());
-					j++;
+									+ instruction[0].getDecisionPoint()
+											.toString());
 				}
 			}
+			// Remove "no-turn" instructions by ignoring them
+			if (instruction[1].toString() != null) {
+				instructions.add(instruction[1]);
+				// Log local instruction
+				Logger.v("InstructionManager.createPlan",
+						"(Local) Instruction "
+								+ (instructions.size() - 1)
+								+ ": "
+								+ instruction[1].toString()
+								+ " | Maneuver Type: "
+								+ instruction[1].getManeuverType()
+								+ " | "
+								+ instruction[1].getDecisionPoint()
+										.toString()
+								+ " | Instruction Type: "
+								+ instruction[1].getClass());
+			}
 		}
 	}
 
@@ -442,105 +856,91 @@ public class InstructionManager {
 	 * </ul>
 	 * Global landmarks are used in the instructions if available.
 	 * 
-	 * @param decisionPoint
-	 *            Decision point where the maneuver has to be done
-	 * @param previousDecisionPoint
-	 *            Previous decision point. <code>Null</code> if first
-	 *            instruction. Used to find global landmarks
-	 * @param maneuverType
-	 *            The maneuver type
-	 * @param distance
-	 *            Distance to decision point (only used for
-	 *            <code>DistanceInstruction</code> objects)
+	 * @param segment
+	 *            The route segment ending at the decision point where the
+	 *            maneuver has to be done. Its distance is only used for
+	 *            <code>DistanceInstruction</code> objects.
 	 * @return The global instruction along the route (first element in array,
 	 *         if available) and the local instruction at the decision point
-	 *         (second element in array). If the previous local instruction
-	 *         contained information about a roundabout action,
-	 *         <code>null</code> will be returned.
+	 *         (second element in array). The roundabout rule is not applied
+	 *         here (see <code>findSkippedSegments()</code>).
 	 */
-	private Instruction[] createInstruction(GeoPoint decisionPoint,
-			GeoPoint previousDecisionPoint, Integer maneuverType,
-			Integer distance) {
-		if (this.lastInstructionWasForRoundabout) {
-			this.lastInstructionWasForRoundabout = false;
-			return null;
+	private Instruction[] createInstruction(RouteSegment segment) {
+		Coordinate decisionPoint = segment.getEndPoint();
+		int indexCurrent = segment.getEndIndex();
+		int indexPrevious = segment.getStartIndex();
+		int maneuverType = segment.getManeuverType();
+		int distance = segment.getDistance();
+
+		Instruction[] instruction = new Instruction[2];
+
+		// All maneuver types with ID greater or equal 23 already contain
+		// enough information in the maneuver text (e.g. a roundabout or the
+		// destination) or use the short-distance public transport so that a
+		// distance-based instruction reaches out there
+		if (maneuverType >= 23) {
+			instruction[1] = new DistanceInstruction(decisionPoint,
+					maneuverType, distance);
 		} else {
-			// Check if the next instruction will be for a roundabout
-			if (Maneuver.isRoundaboutAction(maneuverType)) {
-				this.lastInstructionWasForRoundabout = true;
+
+			// Search for global landmark along the route and create the
+			// corresponding instruction
+			instruction[0] = searchForGlobalLandmarkAlongRoute(
+					indexCurrent, indexPrevious);
+			// Create a LandmarkAlongRouteInstruction if no global landmark
+			// could be
+			// found before
+			if (instruction[0] == null) {
+				instruction[0] = searchForLocalLandmarkAlongRoute(
+						indexCurrent, indexPrevious);
 			}
 
-			Instruction[] instruction = new Instruction[2];
+			Landmark localLandmark;
+			String[] streetFurniture;
+			int intersections;
+
+			// Search for local landmark or street furniture to create
+			// instruction
+			if ((localLandmark = searchForLocalLandmark(indexCurrent)) != null) {
+				// There is no shape point before the start of the route, so
+				// the side is taken from the first link there
+				int indexFrom = Math.max(indexCurrent - 1, 0);
+				// Create a LandmarkInstruction
+				instruction[1] = new LandmarkInstruction(decisionPoint,
+						maneuverType, localLandmark, isLeftTurn(
+								this.route.getShapePoint(indexFrom),
+								this.route.getShapePoint(indexFrom + 1),
+								localLandmark.getCenter()));
+			} else if ((streetFurniture = searchForStreetFurniture(
+					indexCurrent, indexPrevious)) != null) {
+				// Create a StreetFurnitureInstruction from one street
+				// furniture
+				instruction[1] = new StreetFurnitureInstruction(
+						decisionPoint, maneuverType,
+						Integer.valueOf(streetFurniture[0]),
+						streetFurniture[1]);
+			}
 
-			// All maneuver types with ID greater or equal 23 already contain
-			// enough information in the maneuver text (e.g. a roundabout or the
-			// destination) or use the short-distance public transport so that a
-			// distance-based instruction reaches out there
-			if (maneuverType >= 23) {
+			// Check if the instruction is null in case the
+			// StreetFurnitureInstruction could not be created due to an
+			// intersection crossing the last route segment
+			if (instruction[1] == null
+					&& (intersections = searchForIntersections(
+							indexCurrent, indexPrevious)) > 0) {
+				// Create an IntersectionInstruction
+				instruction[1] = new IntersectionInstruction(decisionPoint,
+						maneuverType, intersections);
+			} else if (instruction[1] == null) {
+				// Create a DistanceInstruction if all other options failed
 				instruction[1] = new DistanceInstruction(decisionPoint,
 						maneuverType, distance);
-			} else {
-
-				// Search for global landmark along the route and create the
-				// corresponding instruction
-				instruction[0] = searchForGlobalLandmarkAlongRoute(
-						decisionPoint, previousDecisionPoint);
-				// Create a LandmarkAlongRouteInstruction if no global landmark
-				// could be
-				// found before
-				if (instruction[0] == null) {
-					instruction[0] = searchForLocalLandmarkAlongRoute(
-							decisionPoint, previousDecisionPoint);
-				}
-
-				Landmark localLandmark;
-				String[] streetFurniture;
-				int intersections;
-
-				// Search for local landmark or street furniture to create
-				// instruction
-				if ((localLandmark = searchForLocalLandmark(decisionPoint)) != null) {
-					// Get the shape points from the route
-					GeoPoint[] shapePoints = this.route.getShapePoints();
-					// Find the shape points index of this local landmark
-					int indexDecisionPoint = searchDecisionPointIndex(
-							decisionPoint, shapePoints);
-
-					// Create a LandmarkInstruction
-					instruction[1] = new LandmarkInstruction(decisionPoint,
-							maneuverType, localLandmark, isLeftTurn(
-									shapePoints[indexDecisionPoint - 1],
-									shapePoints[indexDecisionPoint],
-									localLandmark.getCenter()));
-				} else if ((streetFurniture = searchForStreetFurniture(
-						decisionPoint, previousDecisionPoint)) != null) {
-					// Create a StreetFurnitureInstruction from one street
-					// furniture
-					instruction[1] = new StreetFurnitureInstruction(
-							decisionPoint, maneuverType,
-							Integer.valueOf(streetFurniture[0]),
-							streetFurniture[1]);
-				}
-
-				// Check if the instruction is null in case the
-				// StreetFurnitureInstruction could not be created due to an
-				// intersection crossing the last route segment
-				if (instruction[1] == null
-						&& (intersections = searchForIntersections(
-								decisionPoint, previousDecisionPoint)) > 0) {
-					// Create an IntersectionInstruction
-					instruction[1] = new IntersectionInstruction(decisionPoint,
-							maneuverType, intersections);
-				} else if (instruction[1] == null) {
-					// Create a DistanceInstruction if all other options failed
-					instruction[1] = new DistanceInstruction(decisionPoint,
-							maneuverType, distance);
-				}
 			}
-			return instruction;
 		}
+		return instruction;
 	}
 
+	// The searches are package-private for the InstructionBenchmarks
+
 	/**
 	 * Search for a global landmark along the route between the two given
 	 * locations. The index of the current decision point in the shape points
@@ -548,44 +948,42 @@ public class InstructionManager {
 	 * that decision point. If this was successful, a
 	 * <code>GlobalInstruction</code> object will be created.
 	 * 
-	 * @param decisionPoint
-	 *            Decision point
-	 * @param previousDecisionPoint
-	 *            Previous decision point
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
 	 * @return <code>GlobalInstruction</code> object if available. Otherwise
 	 *         <code>null</code> will be returned.
 	 */
-	private GlobalInstruction searchForGlobalLandmarkAlongRoute(
-			GeoPoint decisionPoint, GeoPoint previousDecisionPoint) {
+	GlobalInstruction searchForGlobalLandmarkAlongRoute(int indexCurrent,
+			int indexPrevious) {
 		GlobalInstruction result = null;
 
-		// Get the shape points from the route
-		GeoPoint[] shapePoints = this.route.getShapePoints();
-
-		// Find the indexes of the current and the previous decision points
-		int indexCurrent = searchDecisionPointIndex(decisionPoint, shapePoints);
-		indexCurrent = indexCurrent - 2;
-		int indexPrevious = searchDecisionPointIndex(previousDecisionPoint,
-				shapePoints);
-
 		// Iterate through all shape points that lay between the current and
-		// the previous decision points beginning with the first of this segment
-		for (int i = indexPrevious + 2; i <= indexCurrent; i++) {
-			org.osmdroid.util.GeoPoint currentShapePoint = new org.osmdroid.util.GeoPoint(
-					shapePoints[i].getLatitude(), shapePoints[i].getLongitude());
-
-			for (int j = 0; j < this.globalLandmarks.size(); j++) {
+		// the previous decision points beginning with the first of this
+		// segment and leaving room for an instruction at the decision point
+		BitSet candidates = new BitSet();
+		for (int i = indexPrevious + 2; i <= indexCurrent - 2; i++) {
+			// Only check the landmarks visible from the shape point
+			candidates.clear();
+			this.features.getGlobalLandmarkStore().query(
+					this.route.getLatitude(i), this.route.getLongitude(i),
+					candidates);
+			for (int j = candidates.nextSetBit(0); j >= 0; j = candidates
+					.nextSetBit(j + 1)) {
 				// Get the landmark location
-				org.osmdroid.util.GeoPoint currentLandmark = new org.osmdroid.util.GeoPoint(
-						this.globalLandmarks.get(j).getCenter().getLatitude(),
-						this.globalLandmarks.get(j).getCenter().getLongitude());
+				Coordinate currentLandmark = this.globalLandmarks.get(j)
+						.getCenter();
 
-				double distance = currentShapePoint.distanceTo(currentLandmark);
+				double distance = this.route.distanceTo(i,
+						currentLandmark.getLatitude(),
+						currentLandmark.getLongitude());
 				if (distance <= this.globalLandmarks.get(j).getRadius()) {
-					result = new GlobalInstruction(shapePoints[i],
-							this.globalLandmarks.get(j), isLeftTurn(
-									shapePoints[i], shapePoints[i - 1],
-									decisionPoint));
+					Coordinate currentShapePoint = this.route.getShapePoint(i);
+					result = new GlobalInstruction(currentShapePoint,
+							this.globalLandmarks.get(j), isLeftTurn(currentShapePoint,
+									this.route.getShapePoint(i - 1),
+									this.route.getShapePoint(indexCurrent)));
 					return result;
 				}
 			}
@@ -600,44 +998,42 @@ public class InstructionManager {
 	 * that decision point. If this was successful, a
 	 * <code>GlobalInstruction</code> object will be created.
 	 * 
-	 * @param decisionPoint
-	 *            Decision point
-	 * @param previousDecisionPoint
-	 *            Previous decision point
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
 	 * @return <code>GlobalInstruction</code> object if available. Otherwise
 	 *         <code>null</code> will be returned.
 	 */
-	private GlobalInstruction searchForLocalLandmarkAlongRoute(
-			GeoPoint decisionPoint, GeoPoint previousDecisionPoint) {
+	GlobalInstruction searchForLocalLandmarkAlongRoute(int indexCurrent,
+			int indexPrevious) {
 		GlobalInstruction result = null;
 
-		// Get the shape points from the route
-		GeoPoint[] shapePoints = this.route.getShapePoints();
-
-		// Find the indexes of the current and the previous decision points
-		int indexCurrent = searchDecisionPointIndex(decisionPoint, shapePoints);
-		indexCurrent = indexCurrent - 2;
-		int indexPrevious = searchDecisionPointIndex(previousDecisionPoint,
-				shapePoints);
-
 		// Iterate through all shape points that lay between the current and
-		// the previous decision points beginning with the first of this segment
-		for (int i = indexPrevious + 2; i <= indexCurrent; i++) {
-			org.osmdroid.util.GeoPoint currentShapePoint = new org.osmdroid.util.GeoPoint(
-					shapePoints[i].getLatitude(), shapePoints[i].getLongitude());
-
-			for (int j = 0; j < this.localLandmarks.size(); j++) {
+		// the previous decision points beginning with the first of this
+		// segment and leaving room for an instruction at the decision point
+		BitSet candidates = new BitSet();
+		for (int i = indexPrevious + 2; i <= indexCurrent - 2; i++) {
+			// Only check the landmarks visible from the shape point
+			candidates.clear();
+			this.features.getLocalLandmarkStore().query(
+					this.route.getLatitude(i), this.route.getLongitude(i),
+					candidates);
+			for (int j = candidates.nextSetBit(0); j >= 0; j = candidates
+					.nextSetBit(j + 1)) {
 				// Get the landmark location
-				org.osmdroid.util.GeoPoint currentLandmark = new org.osmdroid.util.GeoPoint(
-						this.localLandmarks.get(j).getCenter().getLatitude(),
-						this.localLandmarks.get(j).getCenter().getLongitude());
+				Coordinate currentLandmark = this.localLandmarks.get(j)
+						.getCenter();
 
-				double distance = currentShapePoint.distanceTo(currentLandmark);
+				double distance = this.route.distanceTo(i,
+						currentLandmark.getLatitude(),
+						currentLandmark.getLongitude());
 				if (distance <= this.localLandmarks.get(j).getRadius()) {
-					result = new GlobalInstruction(shapePoints[i],
-							this.localLandmarks.get(j), isLeftTurn(
-									shapePoints[i], shapePoints[i - 1],
-									decisionPoint));
+					Coordinate currentShapePoint = this.route.getShapePoint(i);
+					result = new GlobalInstruction(currentShapePoint,
+							this.localLandmarks.get(j), isLeftTurn(currentShapePoint,
+									this.route.getShapePoint(i - 1),
+									this.route.getShapePoint(indexCurrent)));
 					return result;
 				}
 			}
@@ -648,25 +1044,27 @@ public class InstructionManager {
 	/**
 	 * Search for a local landmark close to the given location
 	 * 
-	 * @param decisionPoint
-	 *            Decision point
+	 * @param indexDecisionPoint
+	 *            Index of the decision point in the shape points
 	 * @return <code>Landmark</code> object if available. Otherwise
 	 *         <code>null</code> will be returned.
 	 */
-	private Landmark searchForLocalLandmark(GeoPoint decisionPoint) {
+	Landmark searchForLocalLandmark(int indexDecisionPoint) {
 		Landmark result = null;
 
 		double minDistance = Double.MAX_VALUE;
 
-		org.osmdroid.util.GeoPoint decisionPointFromOsmdroid = new org.osmdroid.util.GeoPoint(
-				decisionPoint.getLatitude(), decisionPoint.getLongitude());
-
-		for (int i = 0; i < this.localLandmarks.size(); i++) {
-			org.osmdroid.util.GeoPoint currentLandmark = new org.osmdroid.util.GeoPoint(
-					this.localLandmarks.get(i).getCenter().getLatitude(),
-					this.localLandmarks.get(i).getCenter().getLongitude());
-			double distance = decisionPointFromOsmdroid
-					.distanceTo(currentLandmark);
+		// Only check the landmarks visible from the decision point
+		BitSet candidates = new BitSet();
+		this.features.getLocalLandmarkStore().query(
+				this.route.getLatitude(indexDecisionPoint),
+				this.route.getLongitude(indexDecisionPoint), candidates);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates
+				.nextSetBit(i + 1)) {
+			Coordinate currentLandmark = this.localLandmarks.get(i).getCenter();
+			double distance = this.route.distanceTo(indexDecisionPoint,
+					currentLandmark.getLatitude(),
+					currentLandmark.getLongitude());
 			if (distance <= this.localLandmarks.get(i).getRadius()
 					&& distance <= minDistance) {
 				minDistance = distance;
@@ -681,15 +1079,14 @@ public class InstructionManager {
 	/**
 	 * Search for a street furniture on this route segment
 	 * 
-	 * @param decisionPoint
-	 *            Decision point
-	 * @param previousDecisionPoint
-	 *            Previous decision point
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
 	 * @return Number of street furniture and index of the street furniture
 	 *         category
 	 */
-	private String[] searchForStreetFurniture(GeoPoint decisionPoint,
-			GeoPoint previousDecisionPoint) {
+	String[] searchForStreetFurniture(int indexCurrent, int indexPrevious) {
 		// Street furniture categories
 		String[] categories = StreetFurnitureCategory.getCategories();
 		// Number of the found street furniture for each category
@@ -701,15 +1098,19 @@ public class InstructionManager {
 		// category
 		int[] indexLastStreetFurniture = new int[categories.length];
 
-		// Get the shape points from the route
-		GeoPoint[] shapePoints = this.route.getShapePoints();
-
-		// Find the indexes of the current and the previous decision points
-		int indexCurrent = searchDecisionPointIndex(decisionPoint, shapePoints);
-		int indexPrevious = searchDecisionPointIndex(previousDecisionPoint,
-				shapePoints);
+		// Leave out the first link after the previous decision point
+		int indexStart = indexPrevious + 2;
+		if (indexStart > indexCurrent) {
+			return null;
+		}
 
-		for (int i = 0; i < this.streetFurniture.size(); i++) {
+		// Only check the street furniture close to the links of this route
+		// segment
+		BitSet candidates = queryAlongRoute(
+				this.features.getStreetFurnitureStore(), indexStart,
+				indexCurrent);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates
+				.nextSetBit(i + 1)) {
 			// Get the street furniture category and store its index
 			int indexCategory = 0;
 			StreetFurniture currentStreetFurniture = this.streetFurniture
@@ -719,20 +1120,14 @@ public class InstructionManager {
 				indexCategory++;
 			}
 			// Get the street furniture location
-			org.osmdroid.util.GeoPoint streetFurnitureGeoPoint = new org.osmdroid.util.GeoPoint(
-					currentStreetFurniture.getCenter().getLatitude(),
-					currentStreetFurniture.getCenter().getLongitude());
+			Coordinate center = currentStreetFurniture.getCenter();
 
 			// Iterate through all shape points that lay between the current and
 			// the previous decision points
-			for (int j = indexCurrent; j > indexPrevious + 1; j--) {
-				org.osmdroid.util.GeoPoint currentShapePoint = new org.osmdroid.util.GeoPoint(
-						shapePoints[j].getLatitude(),
-						shapePoints[j].getLongitude());
-
-				double distance = currentShapePoint
-						.distanceTo(streetFurnitureGeoPoint);
-				if (distance <= this.streetFurniture.get(i).getRadius()) {
+			for (int j = indexCurrent; j >= indexStart; j--) {
+				double distance = this.route.distanceTo(j,
+						center.getLatitude(), center.getLongitude());
+				if (distance <= currentStreetFurniture.getRadius()) {
 					if (numberOfStreetFurniture[indexCategory] == 0) {
 						// Store the index of the shape point
 						indexLastStreetFurniture[indexCategory] = j;
@@ -752,7 +1147,7 @@ public class InstructionManager {
 			// Check if the number of street furniture of this category is
 			// higher than the maximal allowed number
 			if (0 < numberOfStreetFurniture[k]
-					&& numberOfStreetFurniture[k] <= this.MAX_NUMBER_OF_STREET_FURNITURE) {
+					&& numberOfStreetFurniture[k] <= MAX_NUMBER_OF_STREET_FURNITURE) {
 				if (result == null) {
 					result = new String[2];
 				}
@@ -763,8 +1158,8 @@ public class InstructionManager {
 
 				// Check if any intersections lay between the last street
 				// furniture and current decision point
-				if (searchForIntersections(decisionPoint,
-						shapePoints[indexLastStreetFurniture[k]]) > 0) {
+				if (searchForIntersections(indexCurrent,
+						indexLastStreetFurniture[k]) > 0) {
 					result = null;
 				} else {
 					break;
@@ -776,42 +1171,40 @@ public class InstructionManager {
 	}
 
 	/**
-	 * Search for intersections on this route segment
+	 * Search for intersections on this route segment. The search stops as
+	 * soon as too many intersections have been found.
 	 * 
-	 * @param decisionPoint
-	 *            Decision point
-	 * @param previousDecisionPoint
-	 *            Previous decision point
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
 	 * @return Number of intersections
 	 */
-	private int searchForIntersections(GeoPoint decisionPoint,
-			GeoPoint previousDecisionPoint) {
+	int searchForIntersections(int indexCurrent, int indexPrevious) {
 		int result = 0;
 
-		// Get the shape points from the route
-		GeoPoint[] shapePoints = this.route.getShapePoints();
-
-		// Find the indexes of the current and the previous decision points
-		int indexCurrent = searchDecisionPointIndex(decisionPoint, shapePoints);
-		int indexPrevious = searchDecisionPointIndex(previousDecisionPoint,
-				shapePoints);
+		// Leave out the previous decision point
+		int indexStart = indexPrevious + 1;
+		if (indexStart > indexCurrent) {
+			return result;
+		}
 
-		for (int i = 0; i < this.intersections.size(); i++) {
+		// Only check the intersections close to the links of this route
+		// segment
+		BitSet candidates = queryAlongRoute(
+				this.features.getIntersectionIndex(), indexStart, indexCurrent);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates
+				.nextSetBit(i + 1)) {
 			// Get the intersection location
-			org.osmdroid.util.GeoPoint intersectionGeoPoint = new org.osmdroid.util.GeoPoint(
-					this.intersections.get(i).getLatitude(), this.intersections
-							.get(i).getLongitude());
+			Coordinate intersection = this.intersections.get(i);
 
 			// Iterate through all shape points that lay between the current and
 			// the previous decision points
-			for (int j = indexCurrent; j > indexPrevious; j--) {
-				org.osmdroid.util.GeoPoint currentShapePoint = new org.osmdroid.util.GeoPoint(
-						shapePoints[j].getLatitude(),
-						shapePoints[j].getLongitude());
-
-				double distance = currentShapePoint
-						.distanceTo(intersectionGeoPoint);
-				if (distance <= this.MAX_DISTANCE_TO_INTERSECTION) {
+			for (int j = indexCurrent; j >= indexStart; j--) {
+				double distance = this.route.distanceTo(j,
+						intersection.getLatitude(),
+						intersection.getLongitude());
+				if (distance <= MAX_DISTANCE_TO_INTERSECTION) {
 					result++;
 					break;
 				}
@@ -819,7 +1212,7 @@ public class InstructionManager {
 
 			// Check if the number of intersections is higher than the maximal
 			// allowed number
-			if (result > this.MAX_NUMBER_OF_INTERSECTIONS) {
+			if (result > MAX_NUMBER_OF_INTERSECTIONS) {
 				result = 0;
 				break;
 			}
@@ -829,34 +1222,34 @@ public class InstructionManager {
 	}
 
 	/**
-	 * Search the index of the given decision point
+	 * Find all features of an index that might be close to the links of a
+	 * part of the route
 	 * 
-	 * @param decisionPoint
-	 *            The decision point
-	 * @param shapePoints
-	 *            The shape points that create the route
-	 * @return Index of the decision point. -1 if decision point could not be
-	 *         found or is <code>null</code>
-	 */
-	private int searchDecisionPointIndex(GeoPoint decisionPoint,
-			GeoPoint[] shapePoints) {
-		int index = -1;
-
-		if (decisionPoint == null) {
-			// If the decision point is null it seems to be the first
-			// instruction being created
-			index = 0;
-		} else {
-			// Iterate through all shape points until the correct one has been
-			// found
-			for (int i = 0; i < shapePoints.length; i++) {
-				if (decisionPoint.equals(shapePoints[i])) {
-					index = i;
-					break;
-				}
-			}
+	 * @param index
+	 *            The spatial index of the features
+	 * @param indexStart
+	 *            Index of the first shape point of the part of the route
+	 * @param indexEnd
+	 *            Index of the last shape point of the part of the route
+	 * @return The ids of the found features
+	 */
+	private BitSet queryAlongRoute(SpatialIndex index, int indexStart,
+			int indexEnd) {
+		BitSet result = new BitSet();
+		if (indexStart == indexEnd) {
+			index.query(this.route.getLatitude(indexStart),
+					this.route.getLongitude(indexStart), result);
+		}
+		for (int i = indexStart; i < indexEnd; i++) {
+			// Query the bounding box of the link
+			double lat1 = this.route.getLatitude(i);
+			double lng1 = this.route.getLongitude(i);
+			double lat2 = this.route.getLatitude(i + 1);
+			double lng2 = this.route.getLongitude(i + 1);
+			index.query(Math.min(lat1, lat2), Math.min(lng1, lng2),
+					Math.max(lat1, lat2), Math.max(lng1, lng2), result);
 		}
-		return index;
+		return result;
 	}
 
 	/**
@@ -873,7 +1266,7 @@ public class InstructionManager {
 	 * @return <code>TRUE</code>: left turn<br/>
 	 *         <code>FALSE</code>: right turn
 	 */
-	private boolean isLeftTurn(GeoPoint p1, GeoPoint p2, GeoPoint p3) {
+	private boolean isLeftTurn(Coordinate p1, Coordinate p2, Coordinate p3) {
 		double result = (p2.getLongitude() - p1.getLongitude())
 				* (p3.getLatitude() - p1.getLatitude())
 				- (p2.getLatitude() - p1.getLatitude())
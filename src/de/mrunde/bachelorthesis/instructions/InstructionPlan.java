@@ -0,0 +1,140 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Route;
+
+/**
+ * The InstructionPlan contains all instructions of a route in their order. It
+ * is created once by the <code>InstructionManager</code> and cannot be changed
+ * afterwards, so that it can be cached and read by several threads at the same
+ * time without locks. The progress of the navigation is tracked separately by
+ * a <code>NavigationCursor</code>.<br/>
+ * <br/>
+ * A plan may only contain the instructions of the first route segments, so
+ * that the navigation can start before the instructions of a long route are
+ * complete. Such a plan is extended by creating a new plan (see
+ * <code>InstructionManager.extendPlan()</code>).
+ * 
+ * @author Marius Runde
+ */
+public class InstructionPlan {
+
+	/**
+	 * The route of the instructions
+	 */
+	private final Route route;
+
+	/**
+	 * The instructions in the order of the route
+	 */
+	private final List<Instruction> instructions;
+
+	/**
+	 * Number of route segments whose instructions are contained
+	 */
+	private final int numberOfSegments;
+
+	/**
+	 * Constructor of the InstructionPlan class
+	 * 
+	 * @param route
+	 *            The route of the instructions
+	 * @param instructions
+	 *            The instructions in the order of the route. They are copied.
+	 * @param numberOfSegments
+	 *            Number of route segments whose instructions are contained
+	 */
+	InstructionPlan(Route route, List<Instruction> instructions,
+			int numberOfSegments) {
+		this.route = route;
+		this.instructions = Collections
+				.unmodifiableList(new ArrayList<Instruction>(instructions));
+		this.numberOfSegments = numberOfSegments;
+	}
+
+	/**
+	 * @return The route of the instructions
+	 */
+	public Route getRoute() {
+		return this.route;
+	}
+
+	/**
+	 * Get all shape points from the route that create it
+	 * 
+	 * @return All shape points
+	 */
+	public Coordinate[] getShapePoints() {
+		return this.route.getShapePoints();
+	}
+
+	/**
+	 * @return The number of route segments whose instructions are contained
+	 */
+	public int getNumberOfSegments() {
+		return this.numberOfSegments;
+	}
+
+	/**
+	 * @return <code>TRUE</code> if the instructions of all route segments are
+	 *         contained
+	 */
+	public boolean isComplete() {
+		return this.numberOfSegments >= this.route.getNumberOfSegments();
+	}
+
+	/**
+	 * @return The number of instructions
+	 */
+	public int getNumberOfInstructions() {
+		return this.instructions.size();
+	}
+
+	/**
+	 * Get the instruction at the desired index
+	 * 
+	 * @param index
+	 *            Index of the instruction
+	 * @return The instruction
+	 */
+	public Instruction getInstruction(int index) {
+		return this.instructions.get(index);
+	}
+
+	/**
+	 * @return All instructions in the order of the route
+	 */
+	public List<Instruction> getInstructions() {
+		return this.instructions;
+	}
+
+	/**
+	 * Get all verbal instructions as extended ones. This includes the titles of
+	 * the landmarks instead of their categories. Only the instructions of this
+	 * plan are returned, even if it is not complete yet (see
+	 * <code>InstructionManager.completePlan()</code>).
+	 * 
+	 * @return All verbal instructions
+	 */
+	public String[] getVerbalInstructions() {
+		String[] result = new String[this.instructions.size()];
+
+		for (int i = 0; i < result.length; i++) {
+			if (this.instructions.get(i).getClass() == GlobalInstruction.class) {
+				result[i] = ((GlobalInstruction) this.instructions.get(i))
+						.toExtendedString();
+			} else if (this.instructions.get(i).getClass() == LandmarkInstruction.class) {
+				result[i] = ((LandmarkInstruction) this.instructions.get(i))
+						.toExtendedString();
+			} else {
+				result[i] = this.instructions.get(i).toString();
+			}
+		}
+
+		return result;
+	}
+}
@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Maneuver;
 
 /**
@@ -26,7 +25,7 @@ public class IntersectionInstruction extends Instruction {
 	 * @param intersections
 	 *            The number of intersections
 	 */
-	public IntersectionInstruction(GeoPoint decisionPoint, int maneuverType,
+	public IntersectionInstruction(Coordinate decisionPoint, int maneuverType,
 			int intersections) {
 		super(decisionPoint, maneuverType);
 		this.intersections = intersections;
@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Landmark;
 import de.mrunde.bachelorthesis.basics.LandmarkCategory;
 import de.mrunde.bachelorthesis.basics.Maneuver;
@@ -33,7 +32,7 @@ public class LandmarkInstruction extends Instruction {
 	 * @param local
 	 *            The local landmark at the decision point
 	 */
-	public LandmarkInstruction(GeoPoint decisionPoint, int maneuverType,
+	public LandmarkInstruction(Coordinate decisionPoint, int maneuverType,
 			Landmark local, boolean leftTurn) {
 		super(decisionPoint, maneuverType);
 		this.local = local;
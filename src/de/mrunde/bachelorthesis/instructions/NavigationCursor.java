@@ -0,0 +1,210 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Logger;
+
+/**
+ * The NavigationCursor tracks the progress of the navigation through an
+ * <code>InstructionPlan</code>. It only stores the index of the current
+ * instruction, so any number of cursors can use the same plan. A cursor
+ * itself is meant to be used by a single thread (e.g. the thread receiving
+ * the location updates).<br/>
+ * <br/>
+ * The plan does not need to be complete. The cursor then extends it with the
+ * <code>InstructionManager</code> as soon as the instructions after the
+ * current one run short, while a longer plan created in the background can
+ * be handed over with <code>offerPlan()</code>.
+ * 
+ * @author Marius Runde
+ */
+public class NavigationCursor {
+
+	/**
+	 * The instruction plan. It is replaced by a longer one when it is
+	 * extended.
+	 */
+	private InstructionPlan plan;
+
+	/**
+	 * The InstructionManager extending the plan or <code>null</code> if the
+	 * plan is not extended by the cursor
+	 */
+	private final InstructionManager manager;
+
+	/**
+	 * Number of instructions after the current one that are created before
+	 * they are needed
+	 */
+	private final int lookAhead;
+
+	/**
+	 * Store the current instruction. Default = 0
+	 */
+	private int currentInstruction;
+
+	/**
+	 * Constructor of the NavigationCursor class. The cursor starts at the
+	 * first instruction.
+	 * 
+	 * @param plan
+	 *            The complete instruction plan
+	 */
+	public NavigationCursor(InstructionPlan plan) {
+		this(plan, null, 0);
+	}
+
+	/**
+	 * Constructor of the NavigationCursor class for a plan that is not
+	 * complete yet (see <code>InstructionManager.createPlan(int)</code>). The
+	 * cursor starts at the first instruction.
+	 * 
+	 * @param plan
+	 *            The instruction plan of the first route segments
+	 * @param manager
+	 *            The InstructionManager that has created the plan
+	 * @param lookAhead
+	 *            Number of instructions after the current one that are
+	 *            created before they are needed
+	 */
+	public NavigationCursor(InstructionPlan plan, InstructionManager manager,
+			int lookAhead) {
+		this.plan = plan;
+		this.manager = manager;
+		this.lookAhead = lookAhead;
+		this.currentInstruction = 0;
+	}
+
+	/**
+	 * @return The instruction plan. It might not be complete yet.
+	 */
+	public InstructionPlan getPlan() {
+		return this.plan;
+	}
+
+	/**
+	 * @return The InstructionManager extending the plan or <code>null</code>
+	 *         if the plan is not extended by the cursor. It can be used to
+	 *         complete the plan in the background (see
+	 *         <code>offerPlan()</code>).
+	 */
+	public InstructionManager getManager() {
+		return this.manager;
+	}
+
+	/**
+	 * Use a longer plan of the same route, e.g. one that has been completed in
+	 * the background. Plans of other routes and plans that are not longer than
+	 * the current one are ignored.
+	 * 
+	 * @param plan
+	 *            The instruction plan
+	 * @return <code>TRUE</code> if the plan is used
+	 */
+	public boolean offerPlan(InstructionPlan plan) {
+		int segments = this.plan.getNumberOfSegments();
+		if (plan.getRoute() == this.plan.getRoute()
+				&& plan.getNumberOfSegments() > segments) {
+			this.plan = plan;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Extend the plan until it contains the instruction at the given index and
+	 * the look-ahead after it or is complete
+	 * 
+	 * @param index
+	 *            Index of the instruction that is needed
+	 */
+	private void ensureInstructions(int index) {
+		int needed = index + this.lookAhead + 1;
+		if (this.manager != null
+				&& this.plan.getNumberOfInstructions() < needed) {
+			this.plan = this.manager.extendPlan(this.plan, needed);
+		}
+	}
+
+	/**
+	 * @return The index of the current instruction
+	 */
+	public int getIndex() {
+		return this.currentInstruction;
+	}
+
+	/**
+	 * Move to the instruction at the desired index
+	 * 
+	 * @param index
+	 *            Index of the instruction
+	 * @return The instruction. <code>Null</code> if there is no instruction
+	 *         at this index.
+	 */
+	public Instruction moveTo(int index) {
+		ensureInstructions(index);
+		if (index >= 0 && index < this.plan.getNumberOfInstructions()) {
+			this.currentInstruction = index;
+			return this.plan.getInstruction(index);
+		} else {
+			Logger.e("NavigationCursor", "Could not get instruction at index "
+					+ index);
+			return null;
+		}
+	}
+
+	/**
+	 * Get the current instruction
+	 * 
+	 * @return The current instruction
+	 */
+	public Instruction getCurrentInstruction() {
+		ensureInstructions(this.currentInstruction);
+		return this.plan.getInstruction(this.currentInstruction);
+	}
+
+	/**
+	 * Get the corresponding now instruction of the current instruction
+	 * 
+	 * @return Now instruction of current instruction
+	 */
+	public NowInstruction getNowInstruction() {
+		return new NowInstruction(getCurrentInstruction());
+	}
+
+	/**
+	 * Move to the next instruction
+	 * 
+	 * @return The next instruction. <code>Null</code> if last instruction has
+	 *         already been reached.
+	 */
+	public Instruction getNextInstruction() {
+		ensureInstructions(this.currentInstruction + 1);
+		if (this.plan.getNumberOfInstructions() > this.currentInstruction + 1) {
+			// Increase the pointer
+			this.currentInstruction++;
+			// Return the next instruction
+			return this.plan.getInstruction(this.currentInstruction);
+		} else {
+			// Return null when last instruction has already been reached
+			return null;
+		}
+	}
+
+	/**
+	 * Get the location (decision point) of the next instruction
+	 * 
+	 * @return The location of the next instruction. <code>Null</code> if last
+	 *         instruction has already been reached.
+	 */
+	public Coordinate getNextInstructionLocation() {
+		ensureInstructions(this.currentInstruction + 1);
+		if (this.plan.getNumberOfInstructions() > this.currentInstruction + 1) {
+			// Return the next instruction's decision point
+			return this.plan.getInstruction(this.currentInstruction + 1)
+					.getDecisionPoint();
+		} else {
+			// Return null when last instruction has already been reached
+			return null;
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package de.mrunde.bachelorthesis.instructions;
 
-import com.mapquest.android.maps.GeoPoint;
-
+import de.mrunde.bachelorthesis.basics.Coordinate;
 import de.mrunde.bachelorthesis.basics.Maneuver;
 
 /**
@@ -34,8 +33,8 @@ public class StreetFurnitureInstruction extends Instruction {
 	 *            Street furniture category (already formatted so that "_" are
 	 *            replaced with spaces)
 	 */
-	public StreetFurnitureInstruction(GeoPoint decisionPoint, int maneuverType,
-			int number, String category) {
+	public StreetFurnitureInstruction(Coordinate decisionPoint,
+			int maneuverType, int number, String category) {
 		super(decisionPoint, maneuverType);
 		this.number = number;
 		this.category = category;
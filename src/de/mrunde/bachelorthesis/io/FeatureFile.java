@@ -0,0 +1,505 @@
+package de.mrunde.bachelorthesis.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Landmark;
+import de.mrunde.bachelorthesis.basics.StreetFurniture;
+
+/**
+ * The FeatureFile reads the landmarks, street furniture and intersections
+ * from a binary feature file (see <code>FeatureFormat</code>). The file is
+ * usually memory-mapped, so that only the records that are actually read
+ * are loaded from the storage. The features can be read tile by tile, so that
+ * the memory needed for a route does not depend on the size of the file.
+ * One FeatureFile can be shared by several threads.
+ * 
+ * @author Marius Runde
+ */
+public class FeatureFile {
+
+	/**
+	 * The content of the file
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Number of strings in the string table
+	 */
+	private final int numberOfStrings;
+
+	/**
+	 * The strings that have already been decoded
+	 */
+	private final HashMap<Integer, String> strings;
+
+	/**
+	 * Position of the string offsets
+	 */
+	private final int stringOffsetsPosition;
+
+	/**
+	 * Position of the string data
+	 */
+	private final int stringDataPosition;
+
+	// --- Number and position of the records ---
+	/**
+	 * Number of local landmarks
+	 */
+	private final int numberOfLocalLandmarks;
+
+	/**
+	 * Position of the first local landmark
+	 */
+	private final int localLandmarksPosition;
+
+	/**
+	 * Number of global landmarks
+	 */
+	private final int numberOfGlobalLandmarks;
+
+	/**
+	 * Position of the first global landmark
+	 */
+	private final int globalLandmarksPosition;
+
+	/**
+	 * Number of street furniture
+	 */
+	private final int numberOfStreetFurniture;
+
+	/**
+	 * Position of the first street furniture
+	 */
+	private final int streetFurniturePosition;
+
+	/**
+	 * Number of intersections
+	 */
+	private final int numberOfIntersections;
+
+	/**
+	 * Position of the first intersection
+	 */
+	private final int intersectionsPosition;
+
+	// --- End of number and position of the records ---
+
+	// --- Tile directory ---
+	/**
+	 * Size of the tiles in microdegrees
+	 */
+	private final int tileSize;
+
+	/**
+	 * Number of tiles
+	 */
+	private final int numberOfTiles;
+
+	/**
+	 * Position of the tile directory
+	 */
+	private final int tilesPosition;
+
+	/**
+	 * Largest radius of all landmarks and street furniture in meters
+	 */
+	private final int maxRadius;
+
+	// --- End of tile directory ---
+
+	/**
+	 * Constructor of the FeatureFile class
+	 * 
+	 * @param buffer
+	 *            The content of the feature file
+	 * @throws IOException
+	 *             If the content is no valid feature file
+	 */
+	public FeatureFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		// Check the header
+		if (buffer.capacity() < FeatureFormat.HEADER_SIZE
+				|| buffer.getInt(FeatureFormat.HEADER_MAGIC) != FeatureFormat.MAGIC) {
+			throw new IOException("No feature file");
+		}
+		if (buffer.getInt(FeatureFormat.HEADER_VERSION) != FeatureFormat.VERSION) {
+			throw new IOException("Unsupported feature file version "
+					+ buffer.getInt(FeatureFormat.HEADER_VERSION));
+		}
+		if (buffer.getInt(FeatureFormat.HEADER_LENGTH) != buffer.capacity()) {
+			throw new IOException("Incomplete feature file");
+		}
+
+		// Calculate the positions of the string table and the records
+		this.numberOfStrings = buffer.getInt(FeatureFormat.HEADER_STRINGS);
+		this.strings = new HashMap<Integer, String>();
+		this.stringOffsetsPosition = FeatureFormat.HEADER_SIZE;
+		this.stringDataPosition = this.stringOffsetsPosition + 4
+				* (this.numberOfStrings + 1);
+
+		this.tileSize = buffer.getInt(FeatureFormat.HEADER_TILE_SIZE);
+		this.numberOfTiles = buffer.getInt(FeatureFormat.HEADER_TILES);
+		this.maxRadius = buffer.getInt(FeatureFormat.HEADER_MAX_RADIUS);
+		this.tilesPosition = this.stringDataPosition
+				+ buffer.getInt(FeatureFormat.HEADER_STRING_DATA);
+
+		this.numberOfLocalLandmarks = buffer
+				.getInt(FeatureFormat.HEADER_LOCAL_LANDMARKS);
+		this.localLandmarksPosition = this.tilesPosition
+				+ (this.numberOfTiles + 1) * FeatureFormat.TILE_RECORD_SIZE;
+		this.numberOfGlobalLandmarks = buffer
+				.getInt(FeatureFormat.HEADER_GLOBAL_LANDMARKS);
+		this.globalLandmarksPosition = this.localLandmarksPosition
+				+ this.numberOfLocalLandmarks
+				* FeatureFormat.LANDMARK_RECORD_SIZE;
+		this.numberOfStreetFurniture = buffer
+				.getInt(FeatureFormat.HEADER_STREET_FURNITURE);
+		this.streetFurniturePosition = this.globalLandmarksPosition
+				+ this.numberOfGlobalLandmarks
+				* FeatureFormat.LANDMARK_RECORD_SIZE;
+		this.numberOfIntersections = buffer
+				.getInt(FeatureFormat.HEADER_INTERSECTIONS);
+		this.intersectionsPosition = this.streetFurniturePosition
+				+ this.numberOfStreetFurniture
+				* FeatureFormat.STREET_FURNITURE_RECORD_SIZE;
+
+		if (this.tileSize <= 0
+				|| this.intersectionsPosition + this.numberOfIntersections
+						* FeatureFormat.INTERSECTION_RECORD_SIZE != buffer
+						.capacity()) {
+			throw new IOException("Corrupt feature file");
+		}
+
+		// The last entry of the tile directory contains the number of records
+		if (getTileStart(this.numberOfTiles, FeatureFormat.LOCAL_LANDMARKS) != this.numberOfLocalLandmarks
+				|| getTileStart(this.numberOfTiles,
+						FeatureFormat.GLOBAL_LANDMARKS) != this.numberOfGlobalLandmarks
+				|| getTileStart(this.numberOfTiles,
+						FeatureFormat.STREET_FURNITURE) != this.numberOfStreetFurniture
+				|| getTileStart(this.numberOfTiles, FeatureFormat.INTERSECTIONS) != this.numberOfIntersections) {
+			throw new IOException("Corrupt tile directory");
+		}
+	}
+
+	/**
+	 * Memory-map a feature file
+	 * 
+	 * @param file
+	 *            The feature file
+	 * @return The feature file
+	 * @throws IOException
+	 *             If the file could not be mapped or is no valid feature file
+	 */
+	public static FeatureFile map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return new FeatureFile(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			// The mapping stays valid after closing the file
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the checksum from the header of a feature file. This can be used to
+	 * check whether two feature files are equal without reading them
+	 * completely.
+	 * 
+	 * @param in
+	 *            Stream of the feature file. Only the header is read.
+	 * @return The checksum
+	 * @throws IOException
+	 *             If the header could not be read or is invalid
+	 */
+	public static int readChecksum(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != FeatureFormat.MAGIC) {
+			throw new IOException("No feature file");
+		}
+		data.readInt();
+		data.readInt();
+		return data.readInt();
+	}
+
+	/**
+	 * @return The number of local landmarks
+	 */
+	public int getNumberOfLocalLandmarks() {
+		return this.numberOfLocalLandmarks;
+	}
+
+	/**
+	 * @return The number of global landmarks
+	 */
+	public int getNumberOfGlobalLandmarks() {
+		return this.numberOfGlobalLandmarks;
+	}
+
+	/**
+	 * @return The number of street furniture
+	 */
+	public int getNumberOfStreetFurniture() {
+		return this.numberOfStreetFurniture;
+	}
+
+	/**
+	 * @return The number of intersections
+	 */
+	public int getNumberOfIntersections() {
+		return this.numberOfIntersections;
+	}
+
+	/**
+	 * @return The size of the tiles in microdegrees
+	 */
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	/**
+	 * @return The largest radius of all landmarks and street furniture in
+	 *         meters
+	 */
+	public int getMaxRadius() {
+		return this.maxRadius;
+	}
+
+	/**
+	 * Find a tile in the tile directory
+	 * 
+	 * @param row
+	 *            Row of the tile
+	 * @param col
+	 *            Column of the tile
+	 * @return Index of the tile or -1 if there are no features in this tile
+	 */
+	public int findTile(int row, int col) {
+		long key = FeatureFormat.tileKey(row, col);
+		int low = 0;
+		int high = this.numberOfTiles - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int position = this.tilesPosition + middle
+					* FeatureFormat.TILE_RECORD_SIZE;
+			long middleKey = FeatureFormat.tileKey(
+					this.buffer.getInt(position),
+					this.buffer.getInt(position + 4));
+			if (middleKey < key) {
+				low = middle + 1;
+			} else if (middleKey > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the index of the first record of a tile
+	 * 
+	 * @param tile
+	 *            Index of the tile
+	 * @param section
+	 *            The section (see <code>FeatureFormat</code>)
+	 * @return Index of the first record of the section in this tile
+	 */
+	public int getTileStart(int tile, int section) {
+		return this.buffer.getInt(this.tilesPosition + tile
+				* FeatureFormat.TILE_RECORD_SIZE + 8 + 4 * section);
+	}
+
+	/**
+	 * Get the index after the last record of a tile
+	 * 
+	 * @param tile
+	 *            Index of the tile
+	 * @param section
+	 *            The section (see <code>FeatureFormat</code>)
+	 * @return Index after the last record of the section in this tile
+	 */
+	public int getTileEnd(int tile, int section) {
+		return getTileStart(tile + 1, section);
+	}
+
+	/**
+	 * Read the latitude of a record without reading the whole record
+	 * 
+	 * @param section
+	 *            The section (see <code>FeatureFormat</code>)
+	 * @param index
+	 *            Index of the record
+	 * @return The latitude in microdegrees
+	 */
+	public int getLatitudeE6(int section, int index) {
+		return this.buffer.getInt(getPosition(section, index));
+	}
+
+	/**
+	 * Read the longitude of a record without reading the whole record
+	 * 
+	 * @param section
+	 *            The section (see <code>FeatureFormat</code>)
+	 * @param index
+	 *            Index of the record
+	 * @return The longitude in microdegrees
+	 */
+	public int getLongitudeE6(int section, int index) {
+		return this.buffer.getInt(getPosition(section, index) + 4);
+	}
+
+	/**
+	 * Read a local landmark
+	 * 
+	 * @param index
+	 *            Index of the local landmark
+	 * @return The local landmark
+	 */
+	public Landmark getLocalLandmark(int index) {
+		return readLandmark(true, this.localLandmarksPosition + index
+				* FeatureFormat.LANDMARK_RECORD_SIZE);
+	}
+
+	/**
+	 * Read a global landmark
+	 * 
+	 * @param index
+	 *            Index of the global landmark
+	 * @return The global landmark
+	 */
+	public Landmark getGlobalLandmark(int index) {
+		return readLandmark(false, this.globalLandmarksPosition + index
+				* FeatureFormat.LANDMARK_RECORD_SIZE);
+	}
+
+	/**
+	 * Read a street furniture
+	 * 
+	 * @param index
+	 *            Index of the street furniture
+	 * @param defaultRadius
+	 *            Radius of visual salience to use if the street furniture has
+	 *            no individual radius
+	 * @return The street furniture
+	 */
+	public StreetFurniture getStreetFurniture(int index, int defaultRadius) {
+		int position = this.streetFurniturePosition + index
+				* FeatureFormat.STREET_FURNITURE_RECORD_SIZE;
+		int radius = this.buffer.getInt(position + 8);
+		if (radius == FeatureFormat.DEFAULT_RADIUS) {
+			radius = defaultRadius;
+		}
+		return new StreetFurniture(new Coordinate(this.buffer.getInt(position),
+				this.buffer.getInt(position + 4)), getString(this.buffer
+				.getInt(position + 12)), radius);
+	}
+
+	/**
+	 * Read an intersection
+	 * 
+	 * @param index
+	 *            Index of the intersection
+	 * @return The location of the intersection
+	 */
+	public Coordinate getIntersection(int index) {
+		int position = this.intersectionsPosition + index
+				* FeatureFormat.INTERSECTION_RECORD_SIZE;
+		return new Coordinate(this.buffer.getInt(position),
+				this.buffer.getInt(position + 4));
+	}
+
+	/**
+	 * Get the position of a record
+	 * 
+	 * @param section
+	 *            The section (see <code>FeatureFormat</code>)
+	 * @param index
+	 *            Index of the record
+	 * @return The position of the record
+	 */
+	private int getPosition(int section, int index) {
+		switch (section) {
+		case FeatureFormat.LOCAL_LANDMARKS:
+			return this.localLandmarksPosition + index
+					* FeatureFormat.LANDMARK_RECORD_SIZE;
+		case FeatureFormat.GLOBAL_LANDMARKS:
+			return this.globalLandmarksPosition + index
+					* FeatureFormat.LANDMARK_RECORD_SIZE;
+		case FeatureFormat.STREET_FURNITURE:
+			return this.streetFurniturePosition + index
+					* FeatureFormat.STREET_FURNITURE_RECORD_SIZE;
+		case FeatureFormat.INTERSECTIONS:
+			return this.intersectionsPosition + index
+					* FeatureFormat.INTERSECTION_RECORD_SIZE;
+		default:
+			throw new IllegalArgumentException("Unknown section " + section);
+		}
+	}
+
+	/**
+	 * Read a landmark record
+	 * 
+	 * @param local
+	 *            Indicator for local or global landmark
+	 * @param position
+	 *            Position of the record
+	 * @return The landmark
+	 */
+	private Landmark readLandmark(boolean local, int position) {
+		return new Landmark(local, getString(this.buffer.getInt(position + 12)),
+				new Coordinate(this.buffer.getInt(position),
+						this.buffer.getInt(position + 4)),
+				this.buffer.getInt(position + 8), getString(this.buffer
+						.getInt(position + 16)));
+	}
+
+	/**
+	 * Get a string from the string table. Each string is only decoded once and
+	 * only the strings that are actually read are kept.
+	 * 
+	 * @param index
+	 *            Index of the string
+	 * @return The string or <code>null</code> if it is missing
+	 */
+	private String getString(int index) {
+		if (index == FeatureFormat.NO_STRING) {
+			return null;
+		}
+		Integer key = Integer.valueOf(index);
+		synchronized (this.strings) {
+			String string = this.strings.get(key);
+			if (string == null) {
+				int start = this.buffer.getInt(this.stringOffsetsPosition + 4
+						* index);
+				int end = this.buffer.getInt(this.stringOffsetsPosition + 4
+						* (index + 1));
+				byte[] bytes = new byte[end - start];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = this.buffer.get(this.stringDataPosition + start
+							+ i);
+				}
+				try {
+					string = new String(bytes, "UTF-8");
+				} catch (UnsupportedEncodingException e) {
+					// UTF-8 is always supported
+					throw new IllegalStateException(e);
+				}
+				this.strings.put(key, string);
+			}
+			return string;
+		}
+	}
+}
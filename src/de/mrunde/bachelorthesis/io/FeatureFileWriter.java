@@ -0,0 +1,327 @@
+package de.mrunde.bachelorthesis.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The FeatureFileWriter creates a binary feature file (see
+ * <code>FeatureFormat</code>) out of landmarks, street furniture and
+ * intersections. Equal strings (e.g. categories) are only stored once and the
+ * features are partitioned into tiles.<br/>
+ * <br/>
+ * This class does not depend on Android, so that it can be used by the
+ * converter at build time.
+ * 
+ * @author Marius Runde
+ */
+public class FeatureFileWriter {
+
+	/**
+	 * Size of the tiles in microdegrees
+	 */
+	private final int tileSize;
+
+	/**
+	 * Largest radius of all landmarks and street furniture in meters
+	 */
+	private int maxRadius = 0;
+
+	/**
+	 * Records of the local landmarks
+	 */
+	private final List<int[]> localLandmarks = new ArrayList<int[]>();
+
+	/**
+	 * Records of the global landmarks
+	 */
+	private final List<int[]> globalLandmarks = new ArrayList<int[]>();
+
+	/**
+	 * Records of the street furniture
+	 */
+	private final List<int[]> streetFurniture = new ArrayList<int[]>();
+
+	/**
+	 * Records of the intersections
+	 */
+	private final List<int[]> intersections = new ArrayList<int[]>();
+
+	/**
+	 * All strings in the order of their indexes
+	 */
+	private final List<String> strings = new ArrayList<String>();
+
+	/**
+	 * Indexes of the strings
+	 */
+	private final HashMap<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+	/**
+	 * Constructor of the FeatureFileWriter class using the default tile size
+	 */
+	public FeatureFileWriter() {
+		this(FeatureFormat.DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Constructor of the FeatureFileWriter class
+	 * 
+	 * @param tileSize
+	 *            Size of the tiles in microdegrees
+	 */
+	public FeatureFileWriter(int tileSize) {
+		if (tileSize <= 0) {
+			throw new IllegalArgumentException("Invalid tile size " + tileSize);
+		}
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Add a landmark
+	 * 
+	 * @param local
+	 *            Indicator for local or global landmark
+	 * @param title
+	 *            Title
+	 * @param lat
+	 *            Latitude of the center
+	 * @param lng
+	 *            Longitude of the center
+	 * @param radius
+	 *            Radius of visibility in meters
+	 * @param category
+	 *            Category
+	 */
+	public void addLandmark(boolean local, String title, double lat,
+			double lng, int radius, String category) {
+		int[] record = new int[] { toE6(lat), toE6(lng), radius,
+				addString(title), addString(category) };
+		this.maxRadius = Math.max(this.maxRadius, radius);
+		if (local) {
+			this.localLandmarks.add(record);
+		} else {
+			this.globalLandmarks.add(record);
+		}
+	}
+
+	/**
+	 * Add a street furniture
+	 * 
+	 * @param lat
+	 *            Latitude of the center
+	 * @param lng
+	 *            Longitude of the center
+	 * @param radius
+	 *            Radius of visual salience in meters or
+	 *            <code>FeatureFormat.DEFAULT_RADIUS</code>
+	 * @param category
+	 *            Category
+	 */
+	public void addStreetFurniture(double lat, double lng, int radius,
+			String category) {
+		this.streetFurniture.add(new int[] { toE6(lat), toE6(lng), radius,
+				addString(category) });
+		this.maxRadius = Math.max(this.maxRadius, radius);
+	}
+
+	/**
+	 * Add an intersection
+	 * 
+	 * @param lat
+	 *            Latitude
+	 * @param lng
+	 *            Longitude
+	 */
+	public void addIntersection(double lat, double lng) {
+		this.intersections.add(new int[] { toE6(lat), toE6(lng) });
+	}
+
+	/**
+	 * Write the feature file
+	 * 
+	 * @param out
+	 *            The stream to write to. It is not closed.
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		// Encode the strings
+		ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+		int[] stringOffsets = new int[this.strings.size() + 1];
+		for (int i = 0; i < this.strings.size(); i++) {
+			stringOffsets[i] = stringData.size();
+			byte[] bytes = this.strings.get(i).getBytes("UTF-8");
+			stringData.write(bytes, 0, bytes.length);
+		}
+		stringOffsets[this.strings.size()] = stringData.size();
+		while (stringData.size() % 4 != 0) {
+			stringData.write(0);
+		}
+
+		// Sort the records and count them per tile
+		int[][][] sections = new int[][][] { sort(this.localLandmarks),
+				sort(this.globalLandmarks), sort(this.streetFurniture),
+				sort(this.intersections) };
+		TreeMap<Long, int[]> tiles = new TreeMap<Long, int[]>();
+		for (int section = 0; section < FeatureFormat.SECTIONS; section++) {
+			for (int[] record : sections[section]) {
+				Long key = Long.valueOf(tileKey(record));
+				int[] counts = tiles.get(key);
+				if (counts == null) {
+					counts = new int[FeatureFormat.SECTIONS];
+					tiles.put(key, counts);
+				}
+				counts[section]++;
+			}
+		}
+
+		// Write everything after the header
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(body);
+		for (int i = 0; i < stringOffsets.length; i++) {
+			data.writeInt(stringOffsets[i]);
+		}
+		stringData.writeTo(data);
+		int[] first = new int[FeatureFormat.SECTIONS];
+		for (Map.Entry<Long, int[]> tile : tiles.entrySet()) {
+			int[] counts = tile.getValue();
+			long key = tile.getKey().longValue();
+			data.writeInt((int) (key >> 32));
+			data.writeInt((int) ((key & 0xFFFFFFFFL) - 0x80000000L));
+			for (int section = 0; section < FeatureFormat.SECTIONS; section++) {
+				data.writeInt(first[section]);
+				first[section] += counts[section];
+			}
+		}
+		data.writeInt(Integer.MAX_VALUE);
+		data.writeInt(Integer.MAX_VALUE);
+		for (int section = 0; section < FeatureFormat.SECTIONS; section++) {
+			data.writeInt(first[section]);
+		}
+		for (int section = 0; section < FeatureFormat.SECTIONS; section++) {
+			writeRecords(data, sections[section]);
+		}
+		data.flush();
+
+		CRC32 checksum = new CRC32();
+		byte[] bytes = body.toByteArray();
+		checksum.update(bytes);
+
+		// Write the header and the body
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(FeatureFormat.MAGIC);
+		header.writeInt(FeatureFormat.VERSION);
+		header.writeInt(FeatureFormat.HEADER_SIZE + bytes.length);
+		header.writeInt((int) checksum.getValue());
+		header.writeInt(this.strings.size());
+		header.writeInt(this.localLandmarks.size());
+		header.writeInt(this.globalLandmarks.size());
+		header.writeInt(this.streetFurniture.size());
+		header.writeInt(this.intersections.size());
+		header.writeInt(stringData.size());
+		header.writeInt(this.tileSize);
+		header.writeInt(tiles.size());
+		header.writeInt(this.maxRadius);
+		header.write(bytes);
+		header.flush();
+	}
+
+	/**
+	 * Sort records by their tile and then by their spatial key
+	 * 
+	 * @param records
+	 *            The records starting with latitude and longitude
+	 * @return The sorted records
+	 */
+	private int[][] sort(List<int[]> records) {
+		int[][] sorted = records.toArray(new int[records.size()][]);
+		Arrays.sort(sorted, new Comparator<int[]>() {
+
+			@Override
+			public int compare(int[] a, int[] b) {
+				long keyA = tileKey(a);
+				long keyB = tileKey(b);
+				if (keyA == keyB) {
+					keyA = FeatureFormat.spatialKey(a[0], a[1]);
+					keyB = FeatureFormat.spatialKey(b[0], b[1]);
+				}
+				return keyA < keyB ? -1 : (keyA == keyB ? 0 : 1);
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Get the key of the tile containing a record
+	 * 
+	 * @param record
+	 *            The record starting with latitude and longitude
+	 * @return The key of the tile
+	 */
+	private long tileKey(int[] record) {
+		return FeatureFormat.tileKey(
+				FeatureFormat.tile(record[0], this.tileSize),
+				FeatureFormat.tile(record[1], this.tileSize));
+	}
+
+	/**
+	 * Write sorted records
+	 * 
+	 * @param data
+	 *            The stream to write to
+	 * @param records
+	 *            The records
+	 * @throws IOException
+	 *             If the records could not be written
+	 */
+	private static void writeRecords(DataOutputStream data, int[][] records)
+			throws IOException {
+		for (int i = 0; i < records.length; i++) {
+			for (int j = 0; j < records[i].length; j++) {
+				data.writeInt(records[i][j]);
+			}
+		}
+	}
+
+	/**
+	 * Get the index of a string and add it to the string table if necessary
+	 * 
+	 * @param string
+	 *            The string
+	 * @return The index of the string or <code>FeatureFormat.NO_STRING</code>
+	 */
+	private int addString(String string) {
+		if (string == null) {
+			return FeatureFormat.NO_STRING;
+		}
+		Integer index = this.stringIndexes.get(string);
+		if (index == null) {
+			index = Integer.valueOf(this.strings.size());
+			this.strings.add(string);
+			this.stringIndexes.put(string, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Convert a coordinate into microdegrees the same way as a
+	 * <code>Coordinate</code> does
+	 * 
+	 * @param coordinate
+	 *            Latitude or longitude
+	 * @return The coordinate in microdegrees
+	 */
+	private static int toE6(double coordinate) {
+		return (int) (coordinate * 1E6);
+	}
+}
@@ -0,0 +1,240 @@
+package de.mrunde.bachelorthesis.io;
+
+/**
+ * The FeatureFormat describes the binary file format storing the landmarks,
+ * street furniture and intersections. It is written by the
+ * <code>FeatureFileWriter</code> and read by the <code>FeatureFile</code>.<br/>
+ * <br/>
+ * All numbers are big-endian integers. The file consists of:
+ * <ol>
+ * <li>Header (see the <code>HEADER_*</code> positions)</li>
+ * <li>String table: the start of each string in the string data plus the end
+ * of the last string, followed by the UTF-8 encoded string data padded to a
+ * multiple of 4 bytes</li>
+ * <li>Tile directory: row, column and the index of the first record of each
+ * section for every tile containing features, sorted by the tile key. It
+ * ends with an entry containing the number of records of each section.</li>
+ * <li>Local landmarks, global landmarks, street furniture and intersections
+ * as fixed-width records (see the <code>*_RECORD_SIZE</code> values)</li>
+ * </ol>
+ * The coordinates are stored in microdegrees. The features are partitioned
+ * into square tiles, so that only the tiles along a route have to be read.
+ * The records of each section are sorted by their tile and then by their
+ * spatial key, so that features close to each other are stored close to each
+ * other as well.
+ * 
+ * @author Marius Runde
+ */
+public class FeatureFormat {
+
+	/**
+	 * Magic number at the start of the file ("LMKF")
+	 */
+	public static final int MAGIC = 0x4C4D4B46;
+
+	/**
+	 * Version of the file format
+	 */
+	public static final int VERSION = 2;
+
+	// --- Positions in the header ---
+	/**
+	 * Position of the magic number
+	 */
+	public static final int HEADER_MAGIC = 0;
+
+	/**
+	 * Position of the version
+	 */
+	public static final int HEADER_VERSION = 4;
+
+	/**
+	 * Position of the length of the file in bytes
+	 */
+	public static final int HEADER_LENGTH = 8;
+
+	/**
+	 * Position of the CRC32 checksum of everything after the header
+	 */
+	public static final int HEADER_CHECKSUM = 12;
+
+	/**
+	 * Position of the number of strings
+	 */
+	public static final int HEADER_STRINGS = 16;
+
+	/**
+	 * Position of the number of local landmarks
+	 */
+	public static final int HEADER_LOCAL_LANDMARKS = 20;
+
+	/**
+	 * Position of the number of global landmarks
+	 */
+	public static final int HEADER_GLOBAL_LANDMARKS = 24;
+
+	/**
+	 * Position of the number of street furniture
+	 */
+	public static final int HEADER_STREET_FURNITURE = 28;
+
+	/**
+	 * Position of the number of intersections
+	 */
+	public static final int HEADER_INTERSECTIONS = 32;
+
+	/**
+	 * Position of the length of the padded string data in bytes
+	 */
+	public static final int HEADER_STRING_DATA = 36;
+
+	/**
+	 * Position of the size of the tiles in microdegrees
+	 */
+	public static final int HEADER_TILE_SIZE = 40;
+
+	/**
+	 * Position of the number of tiles
+	 */
+	public static final int HEADER_TILES = 44;
+
+	/**
+	 * Position of the largest radius of all landmarks and street furniture in
+	 * meters
+	 */
+	public static final int HEADER_MAX_RADIUS = 48;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	public static final int HEADER_SIZE = 52;
+
+	// --- End of positions in the header ---
+
+	// --- Sections of the file ---
+	/**
+	 * Section of the local landmarks
+	 */
+	public static final int LOCAL_LANDMARKS = 0;
+
+	/**
+	 * Section of the global landmarks
+	 */
+	public static final int GLOBAL_LANDMARKS = 1;
+
+	/**
+	 * Section of the street furniture
+	 */
+	public static final int STREET_FURNITURE = 2;
+
+	/**
+	 * Section of the intersections
+	 */
+	public static final int INTERSECTIONS = 3;
+
+	/**
+	 * Number of sections
+	 */
+	public static final int SECTIONS = 4;
+
+	// --- End of sections of the file ---
+
+	/**
+	 * Size of a tile directory entry in bytes: row, column and the index of
+	 * the first record of each section
+	 */
+	public static final int TILE_RECORD_SIZE = 8 + 4 * SECTIONS;
+
+	/**
+	 * Default size of the tiles in microdegrees (about 1 km in latitude)
+	 */
+	public static final int DEFAULT_TILE_SIZE = 10000;
+
+	/**
+	 * Size of a landmark record in bytes: latitude, longitude, radius, index
+	 * of the title and index of the category
+	 */
+	public static final int LANDMARK_RECORD_SIZE = 20;
+
+	/**
+	 * Size of a street furniture record in bytes: latitude, longitude, radius
+	 * and index of the category
+	 */
+	public static final int STREET_FURNITURE_RECORD_SIZE = 16;
+
+	/**
+	 * Size of an intersection record in bytes: latitude and longitude
+	 */
+	public static final int INTERSECTION_RECORD_SIZE = 8;
+
+	/**
+	 * Radius of a street furniture without an individual radius of visual
+	 * salience
+	 */
+	public static final int DEFAULT_RADIUS = -1;
+
+	/**
+	 * Index of a missing string
+	 */
+	public static final int NO_STRING = -1;
+
+	/**
+	 * The FeatureFormat class only offers constants and static functions
+	 */
+	private FeatureFormat() {
+	}
+
+	/**
+	 * Get the row or column of the tile that contains the given coordinate
+	 * 
+	 * @param coordinateE6
+	 *            Latitude or longitude in microdegrees
+	 * @param tileSize
+	 *            Size of the tiles in microdegrees
+	 * @return Row or column of the tile
+	 */
+	public static int tile(int coordinateE6, int tileSize) {
+		int result = coordinateE6 / tileSize;
+		if (coordinateE6 % tileSize < 0) {
+			// Round towards negative infinity
+			result--;
+		}
+		return result;
+	}
+
+	/**
+	 * Combine the row and column of a tile to a single key. Sorting the keys
+	 * sorts the tiles by row and then by column.
+	 * 
+	 * @param row
+	 *            Row of the tile
+	 * @param col
+	 *            Column of the tile
+	 * @return The key of the tile
+	 */
+	public static long tileKey(int row, int col) {
+		return ((long) row << 32) | ((long) col + 0x80000000L);
+	}
+
+	/**
+	 * Calculate the spatial key of a location. The key interleaves the bits
+	 * of the latitude and longitude (Z-order curve), so that sorting by the
+	 * key keeps locations close to each other together.
+	 * 
+	 * @param latE6
+	 *            Latitude in microdegrees
+	 * @param lngE6
+	 *            Longitude in microdegrees
+	 * @return The spatial key
+	 */
+	public static long spatialKey(int latE6, int lngE6) {
+		long lat = (long) latE6 + 90000000L;
+		long lng = (long) lngE6 + 180000000L;
+		long result = 0;
+		for (int i = 0; i < 32; i++) {
+			result |= ((lat >> i) & 1L) << (2 * i + 1);
+			result |= ((lng >> i) & 1L) << (2 * i);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,201 @@
+package de.mrunde.bachelorthesis.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HttpDownloader downloads data via HTTP and hands the body of the
+ * response straight to a <code>ResponseHandler</code>, so that it can be
+ * parsed while it is being received. The responses are requested compressed
+ * with gzip and each request uses timeouts, so that a bad mobile connection
+ * does not block the navigation forever.<br/>
+ * <br/>
+ * One instance should be shared by all downloads. The connections are kept
+ * alive and reused by the <code>HttpURLConnection</code> as long as each
+ * response is read completely, which is done by this class.<br/>
+ * <br/>
+ * This class does not depend on Android, so that it can be tested with the
+ * stub server of the tools.
+ * 
+ * @author Marius Runde
+ */
+public class HttpDownloader {
+
+	/**
+	 * Default timeout to establish a connection in milliseconds
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * Default timeout to wait for data of the response in milliseconds
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 20000;
+
+	/**
+	 * Size of the buffer of the response in bytes
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The ResponseHandler reads the body of a response
+	 * 
+	 * @param <T>
+	 *            Type of the result
+	 * @author Marius Runde
+	 */
+	public interface ResponseHandler<T> {
+
+		/**
+		 * Read the body of a response
+		 * 
+		 * @param in
+		 *            The (decompressed) body. The stream is closed by the
+		 *            <code>HttpDownloader</code>.
+		 * @return The result
+		 * @throws IOException
+		 *             If the body could not be read
+		 */
+		public T handleResponse(InputStream in) throws IOException;
+	}
+
+	/**
+	 * Timeout to establish a connection in milliseconds
+	 */
+	private final int connectTimeout;
+
+	/**
+	 * Timeout to wait for data of the response in milliseconds
+	 */
+	private final int readTimeout;
+
+	/**
+	 * Number of requests
+	 */
+	private int requests = 0;
+
+	/**
+	 * Number of responses compressed with gzip
+	 */
+	private int compressedResponses = 0;
+
+	/**
+	 * Constructor of the HttpDownloader class using the default timeouts
+	 */
+	public HttpDownloader() {
+		this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Constructor of the HttpDownloader class
+	 * 
+	 * @param connectTimeout
+	 *            Timeout to establish a connection in milliseconds
+	 * @param readTimeout
+	 *            Timeout to wait for data of the response in milliseconds
+	 */
+	public HttpDownloader(int connectTimeout, int readTimeout) {
+		if (connectTimeout < 0 || readTimeout < 0) {
+			throw new IllegalArgumentException("Invalid timeouts "
+					+ connectTimeout + ", " + readTimeout);
+		}
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Download data and read it with a handler
+	 * 
+	 * @param url
+	 *            URL of the data
+	 * @param handler
+	 *            Handler reading the body of the response
+	 * @return The result of the handler
+	 * @throws IOException
+	 *             If the data could not be downloaded, the server did not
+	 *             respond with HTTP 200 or the handler failed
+	 */
+	public <T> T get(String url, ResponseHandler<T> handler)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url)
+				.openConnection();
+		connection.setConnectTimeout(this.connectTimeout);
+		connection.setReadTimeout(this.readTimeout);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		synchronized (this) {
+			this.requests++;
+		}
+
+		InputStream in = null;
+		try {
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) {
+				// Read the error message, so that the connection can be reused
+				in = connection.getErrorStream();
+				discard(in);
+				throw new IOException("HTTP " + status + " "
+						+ connection.getResponseMessage());
+			}
+
+			in = connection.getInputStream();
+			if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+				synchronized (this) {
+					this.compressedResponses++;
+				}
+			}
+			in = new BufferedInputStream(in, BUFFER_SIZE);
+			T result = handler.handleResponse(in);
+
+			// Read the rest of the response (e.g. the end of a JSONP wrapper),
+			// so that the connection can be reused
+			discard(in);
+			return result;
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Read a stream until its end
+	 * 
+	 * @param in
+	 *            The stream or <code>null</code>
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private static void discard(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		byte[] buffer = new byte[256];
+		while (in.read(buffer) != -1) {
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * @return The number of requests
+	 */
+	public synchronized int getRequests() {
+		return this.requests;
+	}
+
+	/**
+	 * @return The number of responses compressed with gzip
+	 */
+	public synchronized int getCompressedResponses() {
+		return this.compressedResponses;
+	}
+
+	@Override
+	public String toString() {
+		return "HttpDownloader: " + getRequests() + " requests, "
+				+ getCompressedResponses() + " compressed";
+	}
+}
@@ -0,0 +1,561 @@
+package de.mrunde.bachelorthesis.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The JsonPullParser reads a JSON document token by token from a stream
+ * without building the whole document in memory. It is used to read large
+ * documents (e.g. the guidance of a long route) straight into primitive
+ * arrays.<br/>
+ * <br/>
+ * A JSONP wrapper like <code>renderBasicInformation( ... );</code> around the
+ * document is skipped on the fly. Everything after the end of the document is
+ * ignored.
+ * 
+ * @author Marius Runde
+ */
+public class JsonPullParser {
+
+	// --- Token types ---
+	/**
+	 * The start of an object
+	 */
+	public static final int BEGIN_OBJECT = 0;
+
+	/**
+	 * The end of an object
+	 */
+	public static final int END_OBJECT = 1;
+
+	/**
+	 * The start of an array
+	 */
+	public static final int BEGIN_ARRAY = 2;
+
+	/**
+	 * The end of an array
+	 */
+	public static final int END_ARRAY = 3;
+
+	/**
+	 * The name of a member of an object
+	 */
+	public static final int NAME = 4;
+
+	/**
+	 * A string value
+	 */
+	public static final int STRING = 5;
+
+	/**
+	 * A number value
+	 */
+	public static final int NUMBER = 6;
+
+	/**
+	 * A boolean value
+	 */
+	public static final int BOOLEAN = 7;
+
+	/**
+	 * A null value
+	 */
+	public static final int NULL = 8;
+
+	/**
+	 * The end of the document
+	 */
+	public static final int END_DOCUMENT = 9;
+
+	// --- End of token types ---
+
+	/**
+	 * Value of <code>next</code> if the next token has not been read yet
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * The stream to read from
+	 */
+	private final Reader reader;
+
+	/**
+	 * Buffer of the characters read from the stream
+	 */
+	private final char[] buffer = new char[8192];
+
+	/**
+	 * Position of the next character in the buffer
+	 */
+	private int position = 0;
+
+	/**
+	 * Number of characters in the buffer
+	 */
+	private int limit = 0;
+
+	/**
+	 * Store whether the end of the stream or of the document has been reached
+	 */
+	private boolean finished = false;
+
+	/**
+	 * Type of the next token or <code>NONE</code>
+	 */
+	private int next = NONE;
+
+	/**
+	 * Text of the next token if it is a name, string, number or boolean
+	 */
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Stack of the open objects and arrays. <code>TRUE</code> stands for an
+	 * object.
+	 */
+	private boolean[] stack = new boolean[32];
+
+	/**
+	 * Number of open objects and arrays
+	 */
+	private int depth = 0;
+
+	/**
+	 * Store whether the next token of the open object is a name
+	 */
+	private boolean expectName = false;
+
+	/**
+	 * Store whether the first token of the document has been read
+	 */
+	private boolean started = false;
+
+	/**
+	 * Constructor of the JsonPullParser class
+	 * 
+	 * @param reader
+	 *            The stream to read from
+	 */
+	public JsonPullParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Get the type of the next token without consuming it
+	 * 
+	 * @return The type of the next token
+	 * @throws IOException
+	 *             If the stream could not be read or is no valid JSON
+	 */
+	public int peek() throws IOException {
+		if (this.next == NONE) {
+			this.next = readToken();
+		}
+		return this.next;
+	}
+
+	/**
+	 * Check if the current object or array has another element
+	 * 
+	 * @return <code>TRUE</code> if there is another element
+	 * @throws IOException
+	 *             If the stream could not be read or is no valid JSON
+	 */
+	public boolean hasNext() throws IOException {
+		int token = peek();
+		return token != END_OBJECT && token != END_ARRAY
+				&& token != END_DOCUMENT;
+	}
+
+	/**
+	 * Consume the start of an object
+	 * 
+	 * @throws IOException
+	 *             If the next token is not the start of an object
+	 */
+	public void beginObject() throws IOException {
+		expect(BEGIN_OBJECT);
+	}
+
+	/**
+	 * Consume the end of an object
+	 * 
+	 * @throws IOException
+	 *             If the next token is not the end of an object
+	 */
+	public void endObject() throws IOException {
+		expect(END_OBJECT);
+	}
+
+	/**
+	 * Consume the start of an array
+	 * 
+	 * @throws IOException
+	 *             If the next token is not the start of an array
+	 */
+	public void beginArray() throws IOException {
+		expect(BEGIN_ARRAY);
+	}
+
+	/**
+	 * Consume the end of an array
+	 * 
+	 * @throws IOException
+	 *             If the next token is not the end of an array
+	 */
+	public void endArray() throws IOException {
+		expect(END_ARRAY);
+	}
+
+	/**
+	 * Consume the name of the next member of an object
+	 * 
+	 * @return The name
+	 * @throws IOException
+	 *             If the next token is not a name
+	 */
+	public String nextName() throws IOException {
+		expect(NAME);
+		return this.text.toString();
+	}
+
+	/**
+	 * Consume a string value. Numbers and booleans are returned as string.
+	 * 
+	 * @return The string or <code>null</code> for a null value
+	 * @throws IOException
+	 *             If the next token is no value
+	 */
+	public String nextString() throws IOException {
+		int token = peek();
+		if (token == NULL) {
+			this.next = NONE;
+			return null;
+		}
+		if (token != STRING && token != NUMBER && token != BOOLEAN) {
+			throw syntaxError("Expected a string but was token " + token);
+		}
+		this.next = NONE;
+		return this.text.toString();
+	}
+
+	/**
+	 * Consume a number value. Strings containing a number are accepted as
+	 * well.
+	 * 
+	 * @return The number
+	 * @throws IOException
+	 *             If the next token is no number
+	 */
+	public double nextDouble() throws IOException {
+		int token = peek();
+		if (token != NUMBER && token != STRING) {
+			throw syntaxError("Expected a number but was token " + token);
+		}
+		this.next = NONE;
+		try {
+			return Double.parseDouble(this.text.toString());
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected a number but was " + this.text);
+		}
+	}
+
+	/**
+	 * Consume a number value and cast it to an integer
+	 * 
+	 * @return The number
+	 * @throws IOException
+	 *             If the next token is no number
+	 */
+	public int nextInt() throws IOException {
+		return (int) nextDouble();
+	}
+
+	/**
+	 * Consume the next value including all of its members or elements
+	 * 
+	 * @throws IOException
+	 *             If the stream could not be read or is no valid JSON
+	 */
+	public void skipValue() throws IOException {
+		int count = 0;
+		do {
+			int token = peek();
+			if (token == END_DOCUMENT) {
+				throw syntaxError("Unexpected end of document");
+			}
+			this.next = NONE;
+			if (token == BEGIN_OBJECT || token == BEGIN_ARRAY) {
+				count++;
+			} else if (token == END_OBJECT || token == END_ARRAY) {
+				count--;
+			}
+		} while (count > 0);
+	}
+
+	/**
+	 * Consume the next token if it has the expected type
+	 * 
+	 * @param expected
+	 *            The expected type
+	 * @throws IOException
+	 *             If the next token has another type
+	 */
+	private void expect(int expected) throws IOException {
+		int token = peek();
+		if (token != expected) {
+			throw syntaxError("Expected token " + expected + " but was token "
+					+ token);
+		}
+		this.next = NONE;
+	}
+
+	/**
+	 * Read the next token from the stream
+	 * 
+	 * @return The type of the token
+	 * @throws IOException
+	 *             If the stream could not be read or is no valid JSON
+	 */
+	private int readToken() throws IOException {
+		if (!this.started) {
+			this.started = true;
+			skipWrapper();
+		}
+
+		int c = nextNonWhitespace();
+
+		// End of the document
+		if (c == -1 && this.depth == 0) {
+			return END_DOCUMENT;
+		}
+
+		// Separators between the members or elements
+		if (this.depth > 0) {
+			if (c == ',') {
+				c = nextNonWhitespace();
+				this.expectName = this.stack[this.depth - 1];
+			} else if (c == ':') {
+				c = nextNonWhitespace();
+			}
+		}
+
+		switch (c) {
+		case '{':
+			push(true);
+			return BEGIN_OBJECT;
+		case '}':
+			pop(true);
+			return END_OBJECT;
+		case '[':
+			push(false);
+			return BEGIN_ARRAY;
+		case ']':
+			pop(false);
+			return END_ARRAY;
+		case '"':
+			readString();
+			if (this.expectName) {
+				this.expectName = false;
+				return NAME;
+			}
+			return STRING;
+		case -1:
+			throw syntaxError("Unexpected end of document");
+		default:
+			readLiteral(c);
+			if (this.text.toString().equals("null")) {
+				return NULL;
+			} else if (this.text.toString().equals("true")
+					|| this.text.toString().equals("false")) {
+				return BOOLEAN;
+			} else {
+				return NUMBER;
+			}
+		}
+	}
+
+	/**
+	 * Skip a JSONP wrapper like <code>callback(</code> in front of the
+	 * document
+	 * 
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private void skipWrapper() throws IOException {
+		int c = nextNonWhitespace();
+		if (Character.isJavaIdentifierStart(c)) {
+			while (c != '(' && c != -1) {
+				c = read();
+			}
+		} else if (c != -1) {
+			// The character belongs to the document
+			this.position--;
+		}
+	}
+
+	/**
+	 * Open an object or array
+	 * 
+	 * @param object
+	 *            <code>TRUE</code> for an object
+	 */
+	private void push(boolean object) {
+		if (this.depth == this.stack.length) {
+			boolean[] newStack = new boolean[this.depth * 2];
+			System.arraycopy(this.stack, 0, newStack, 0, this.depth);
+			this.stack = newStack;
+		}
+		this.stack[this.depth] = object;
+		this.depth++;
+		this.expectName = object;
+	}
+
+	/**
+	 * Close an object or array
+	 * 
+	 * @param object
+	 *            <code>TRUE</code> for an object
+	 * @throws IOException
+	 *             If the open object or array does not match
+	 */
+	private void pop(boolean object) throws IOException {
+		if (this.depth == 0 || this.stack[this.depth - 1] != object) {
+			throw syntaxError("Unexpected end of "
+					+ (object ? "object" : "array"));
+		}
+		this.depth--;
+		this.expectName = false;
+		if (this.depth == 0) {
+			// Ignore everything after the document (e.g. the end of a JSONP
+			// wrapper)
+			this.finished = true;
+		}
+	}
+
+	/**
+	 * Read the rest of a string into <code>text</code>
+	 * 
+	 * @throws IOException
+	 *             If the string is not terminated
+	 */
+	private void readString() throws IOException {
+		this.text.setLength(0);
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return;
+			} else if (c == -1) {
+				throw syntaxError("Unterminated string");
+			} else if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'b':
+					this.text.append('\b');
+					break;
+				case 'f':
+					this.text.append('\f');
+					break;
+				case 'n':
+					this.text.append('\n');
+					break;
+				case 'r':
+					this.text.append('\r');
+					break;
+				case 't':
+					this.text.append('\t');
+					break;
+				case 'u':
+					int value = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit < 0) {
+							throw syntaxError("Invalid unicode escape");
+						}
+						value = value * 16 + digit;
+					}
+					this.text.append((char) value);
+					break;
+				case -1:
+					throw syntaxError("Unterminated string");
+				default:
+					this.text.append((char) c);
+				}
+			} else {
+				this.text.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * Read a number, boolean or null into <code>text</code>
+	 * 
+	 * @param first
+	 *            The first character of the literal
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private void readLiteral(int first) throws IOException {
+		this.text.setLength(0);
+		int c = first;
+		while (c != -1 && c != ',' && c != ':' && c != '}' && c != ']'
+				&& c != ')' && !Character.isWhitespace(c)) {
+			this.text.append((char) c);
+			c = read();
+		}
+		if (c != -1) {
+			// The character belongs to the next token
+			this.position--;
+		}
+	}
+
+	/**
+	 * Read the next character that is no whitespace
+	 * 
+	 * @return The character or -1 at the end of the stream
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private int nextNonWhitespace() throws IOException {
+		int c = read();
+		while (c != -1 && Character.isWhitespace(c)) {
+			c = read();
+		}
+		return c;
+	}
+
+	/**
+	 * Read the next character from the buffer and refill it if necessary
+	 * 
+	 * @return The character or -1 at the end of the stream
+	 * @throws IOException
+	 *             If the stream could not be read
+	 */
+	private int read() throws IOException {
+		if (this.finished) {
+			return -1;
+		}
+		if (this.position == this.limit) {
+			this.limit = this.reader.read(this.buffer, 0, this.buffer.length);
+			this.position = 0;
+			if (this.limit <= 0) {
+				this.limit = 0;
+				this.finished = true;
+				return -1;
+			}
+		}
+		return this.buffer[this.position++];
+	}
+
+	/**
+	 * Create an exception for invalid JSON
+	 * 
+	 * @param message
+	 *            Description of the error
+	 * @return The exception
+	 */
+	private IOException syntaxError(String message) {
+		return new IOException(message);
+	}
+}
@@ -0,0 +1,544 @@
+package de.mrunde.bachelorthesis.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import de.mrunde.bachelorthesis.basics.Logger;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.basics.RouteSegment;
+
+/**
+ * The RouteCache stores parsed routes on the disk, so that a route which has
+ * been requested before neither needs to be downloaded nor parsed again. The
+ * routes are identified by their quantized start and destination and their
+ * route type. Old routes expire after a while and the least recently used
+ * routes are removed when the cache exceeds its maximum size.<br/>
+ * <br/>
+ * Each route is stored in its own file. The shape points are stored as
+ * differences to the previous shape point and all numbers as variable-length
+ * integers, so that a route only needs a few bytes per shape point. The time
+ * of the last access is the time of the last modification of the file.<br/>
+ * <br/>
+ * This class does not depend on Android, so that it can be tested with the
+ * tools as well.
+ * 
+ * @author Marius Runde
+ */
+public class RouteCache {
+
+	/**
+	 * Magic number at the start of each file ("RTEC")
+	 */
+	public static final int MAGIC = 0x52544543;
+
+	/**
+	 * Version of the file format
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Extension of the files of the routes
+	 */
+	public static final String FILE_EXTENSION = ".route";
+
+	/**
+	 * Default maximum size of the cache in bytes
+	 */
+	public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+	/**
+	 * Default time after which a route expires in milliseconds (one week)
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = 7 * 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Default size of the grid cells the start and destination are quantized
+	 * to in microdegrees (about 50m)
+	 */
+	public static final int DEFAULT_QUANTIZATION = 500;
+
+	/**
+	 * Directory of the files
+	 */
+	private final File directory;
+
+	/**
+	 * Maximum size of the cache in bytes
+	 */
+	private final long maxSize;
+
+	/**
+	 * Time after which a route expires in milliseconds
+	 */
+	private final long timeToLive;
+
+	/**
+	 * Size of the grid cells the start and destination are quantized to in
+	 * microdegrees
+	 */
+	private int quantization = DEFAULT_QUANTIZATION;
+
+	/**
+	 * Number of routes found in the cache
+	 */
+	private int hits = 0;
+
+	/**
+	 * Number of routes not found in the cache or expired
+	 */
+	private int misses = 0;
+
+	/**
+	 * Constructor of the RouteCache class using the default maximum size and
+	 * time to live
+	 * 
+	 * @param directory
+	 *            Directory of the files. It is created if necessary.
+	 */
+	public RouteCache(File directory) {
+		this(directory, DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Constructor of the RouteCache class
+	 * 
+	 * @param directory
+	 *            Directory of the files. It is created if necessary.
+	 * @param maxSize
+	 *            Maximum size of the cache in bytes
+	 * @param timeToLive
+	 *            Time after which a route expires in milliseconds
+	 */
+	public RouteCache(File directory, long maxSize, long timeToLive) {
+		if (maxSize <= 0 || timeToLive <= 0) {
+			throw new IllegalArgumentException("Invalid maximum size "
+					+ maxSize + " or time to live " + timeToLive);
+		}
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		directory.mkdirs();
+	}
+
+	/**
+	 * Set the size of the grid cells the start and destination are quantized
+	 * to. Routes with a start and destination in the same cells share their
+	 * key.
+	 * 
+	 * @param quantization
+	 *            Size of the grid cells in microdegrees
+	 */
+	public void setQuantization(int quantization) {
+		if (quantization <= 0) {
+			throw new IllegalArgumentException("Invalid quantization "
+					+ quantization);
+		}
+		this.quantization = quantization;
+	}
+
+	/**
+	 * Create the key of a route
+	 * 
+	 * @param fromLat
+	 *            Latitude of the start
+	 * @param fromLng
+	 *            Longitude of the start
+	 * @param toLat
+	 *            Latitude of the destination
+	 * @param toLng
+	 *            Longitude of the destination
+	 * @param routeType
+	 *            The route type (e.g. "fastest")
+	 * @return The key
+	 */
+	public String createKey(double fromLat, double fromLng, double toLat,
+			double toLng, String routeType) {
+		// Only letters and digits are used, so that the key can be used as
+		// file name
+		return quantize(fromLat) + "_" + quantize(fromLng) + "_"
+				+ quantize(toLat) + "_" + quantize(toLng) + "_"
+				+ String.valueOf(routeType).replaceAll("[^A-Za-z0-9]", "");
+	}
+
+	/**
+	 * Quantize a latitude or longitude
+	 * 
+	 * @param degrees
+	 *            The latitude or longitude
+	 * @return Index of the grid cell
+	 */
+	private long quantize(double degrees) {
+		return Math.round(degrees * 1E6 / this.quantization);
+	}
+
+	/**
+	 * Get a route from the cache
+	 * 
+	 * @param key
+	 *            Key of the route (see <code>createKey</code>)
+	 * @return The route or <code>null</code> if it is not in the cache or has
+	 *         expired
+	 */
+	public synchronized Route get(String key) {
+		File file = getFile(key);
+		if (!file.exists()) {
+			this.misses++;
+			return null;
+		}
+
+		try {
+			Route route = null;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException("Unsupported route file");
+				}
+				long created = in.readLong();
+				if (System.currentTimeMillis() - created <= this.timeToLive) {
+					route = readRoute(in);
+				}
+			} finally {
+				in.close();
+			}
+
+			if (route == null) {
+				// The route has expired
+				file.delete();
+				this.misses++;
+				return null;
+			}
+
+			// Mark the route as recently used
+			file.setLastModified(System.currentTimeMillis());
+			this.hits++;
+			return route;
+		} catch (IOException e) {
+			Logger.w("RouteCache",
+					"Could not read the route. This is the error message: "
+							+ e.getMessage());
+			file.delete();
+			this.misses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Put a route into the cache. The least recently used routes are removed
+	 * if the cache exceeds its maximum size afterwards.
+	 * 
+	 * @param key
+	 *            Key of the route (see <code>createKey</code>)
+	 * @param route
+	 *            The route
+	 * @return <code>TRUE</code> if the route has been stored
+	 */
+	public synchronized boolean put(String key, Route route) {
+		if (!route.isImportSuccessful()) {
+			return false;
+		}
+
+		// Write into a temporary file first, so that no incomplete route can
+		// be read
+		File file = getFile(key);
+		File temp = new File(this.directory, key + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(System.currentTimeMillis());
+				writeRoute(route, out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file)) {
+					throw new IOException("Could not rename " + temp);
+				}
+			}
+		} catch (IOException e) {
+			Logger.w("RouteCache",
+					"Could not write the route. This is the error message: "
+							+ e.getMessage());
+			temp.delete();
+			return false;
+		}
+
+		trim();
+		return true;
+	}
+
+	/**
+	 * Remove the least recently used routes until the cache does not exceed
+	 * its maximum size anymore
+	 */
+	private void trim() {
+		File[] files = listFiles();
+		long size = 0;
+		for (int i = 0; i < files.length; i++) {
+			size += files[i].length();
+		}
+		if (size <= this.maxSize) {
+			return;
+		}
+
+		// Sort the files by the time of their last access
+		final long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return lastModified[a] < lastModified[b] ? -1
+						: (lastModified[a] > lastModified[b] ? 1 : 0);
+			}
+		});
+		for (int i = 0; i < order.length && size > this.maxSize; i++) {
+			File file = files[order[i]];
+			long length = file.length();
+			if (file.delete()) {
+				size -= length;
+			}
+		}
+	}
+
+	/**
+	 * Remove all routes from the cache
+	 */
+	public synchronized void clear() {
+		File[] files = listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+	}
+
+	/**
+	 * @return The number of routes found in the cache
+	 */
+	public synchronized int getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return The number of routes not found in the cache or expired
+	 */
+	public synchronized int getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return The size of all routes in the cache in bytes
+	 */
+	public synchronized long getSize() {
+		File[] files = listFiles();
+		long size = 0;
+		for (int i = 0; i < files.length; i++) {
+			size += files[i].length();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteCache: " + getHits() + " hits, " + getMisses()
+				+ " misses";
+	}
+
+	/**
+	 * Get the file of a route
+	 * 
+	 * @param key
+	 *            Key of the route
+	 * @return The file
+	 */
+	private File getFile(String key) {
+		return new File(this.directory, key + FILE_EXTENSION);
+	}
+
+	/**
+	 * @return The files of all routes in the cache
+	 */
+	private File[] listFiles() {
+		File[] files = this.directory.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		int size = 0;
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(FILE_EXTENSION)) {
+				files[size++] = files[i];
+			}
+		}
+		File[] result = new File[size];
+		System.arraycopy(files, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * Write a route in the compact form
+	 * 
+	 * @param route
+	 *            The route
+	 * @param out
+	 *            The output
+	 * @throws IOException
+	 *             If the route could not be written
+	 */
+	public static void writeRoute(Route route, DataOutputStream out)
+			throws IOException {
+		// Write the shape points as differences to the previous one
+		int numberOfShapePoints = route.getNumberOfShapePoints();
+		writeVarInt(out, numberOfShapePoints);
+		int lastLat = 0;
+		int lastLng = 0;
+		for (int i = 0; i < numberOfShapePoints; i++) {
+			int lat = route.getLatitudeE6(i);
+			int lng = route.getLongitudeE6(i);
+			writeSignedVarInt(out, lat - lastLat);
+			writeSignedVarInt(out, lng - lastLng);
+			lastLat = lat;
+			lastLng = lng;
+		}
+
+		// Write the decision point, maneuver type and distance of each route
+		// segment
+		int numberOfSegments = route.getNumberOfSegments();
+		writeVarInt(out, numberOfSegments);
+		for (int i = 0; i < numberOfSegments; i++) {
+			RouteSegment segment = route.getSegment(i);
+			writeVarInt(out, segment.getEndIndex());
+			writeSignedVarInt(out, segment.getManeuverType());
+			writeVarInt(out, segment.getDistance());
+		}
+	}
+
+	/**
+	 * Read a route in the compact form
+	 * 
+	 * @param in
+	 *            The input
+	 * @return The route
+	 * @throws IOException
+	 *             If the route could not be read or is corrupt
+	 */
+	public static Route readRoute(DataInputStream in) throws IOException {
+		// Read the shape points
+		int numberOfShapePoints = readVarInt(in);
+		if (numberOfShapePoints <= 0 || numberOfShapePoints > in.available()) {
+			throw new IOException("Corrupt number of shape points");
+		}
+		int[] shapePoints = new int[2 * numberOfShapePoints];
+		int lat = 0;
+		int lng = 0;
+		for (int i = 0; i < numberOfShapePoints; i++) {
+			lat += readSignedVarInt(in);
+			lng += readSignedVarInt(in);
+			shapePoints[2 * i] = lat;
+			shapePoints[2 * i + 1] = lng;
+		}
+
+		// Read the route segments
+		int numberOfSegments = readVarInt(in);
+		if (numberOfSegments <= 0 || numberOfSegments > in.available()) {
+			throw new IOException("Corrupt number of route segments");
+		}
+		int[] decisionPointIndexes = new int[numberOfSegments];
+		int[] maneuvers = new int[numberOfSegments];
+		int[] distances = new int[numberOfSegments];
+		for (int i = 0; i < numberOfSegments; i++) {
+			decisionPointIndexes[i] = readVarInt(in);
+			maneuvers[i] = readSignedVarInt(in);
+			distances[i] = readVarInt(in);
+			if (decisionPointIndexes[i] >= numberOfShapePoints) {
+				throw new IOException("Corrupt route segment " + i);
+			}
+		}
+		return new Route(shapePoints, decisionPointIndexes, maneuvers,
+				distances);
+	}
+
+	/**
+	 * Write a non-negative integer with 7 bits per byte
+	 * 
+	 * @param out
+	 *            The output
+	 * @param value
+	 *            The integer
+	 * @throws IOException
+	 *             If the integer could not be written
+	 */
+	private static void writeVarInt(DataOutputStream out, int value)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Write an integer with 7 bits per byte. The sign is moved into the
+	 * lowest bit, so that small negative integers need few bytes as well.
+	 * 
+	 * @param out
+	 *            The output
+	 * @param value
+	 *            The integer
+	 * @throws IOException
+	 *             If the integer could not be written
+	 */
+	private static void writeSignedVarInt(DataOutputStream out, int value)
+			throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Read a non-negative integer with 7 bits per byte
+	 * 
+	 * @param in
+	 *            The input
+	 * @return The integer
+	 * @throws IOException
+	 *             If the integer could not be read
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Corrupt integer");
+	}
+
+	/**
+	 * Read an integer with 7 bits per byte and the sign in the lowest bit
+	 * 
+	 * @param in
+	 *            The input
+	 * @return The integer
+	 * @throws IOException
+	 *             If the integer could not be read
+	 */
+	private static int readSignedVarInt(DataInputStream in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,455 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import org.json.JSONObject;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.GeoMath;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.basics.RouteSegment;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.tools.Benchmark;
+import de.mrunde.bachelorthesis.tools.BenchmarkRunner;
+import de.mrunde.bachelorthesis.tools.CityGenerator;
+
+/**
+ * The InstructionBenchmarks measure each stage of the instruction pipeline on
+ * a desktop JVM: reading the route, reading the features, the searches for
+ * each kind of feature and the creation of the instruction plan. It is placed
+ * in the package of the <code>InstructionManager</code> to call the searches
+ * directly, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -cp json.jar -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/instructions/InstructionBenchmarks.java
+ * java -cp tools/bin:json.jar de.mrunde.bachelorthesis.instructions.InstructionBenchmarks \
+ *     -data munster,synthetic -points 100,1000,10000 -features 10000,100000 search
+ * </pre>
+ * 
+ * Each benchmark is run for every combination of the data sets, numbers of
+ * shape points and numbers of features. The "munster" data set uses the
+ * features of res/raw/features.bin and a route along its intersections, the
+ * "synthetic" data set a city of the <code>CityGenerator</code> with the given
+ * number of features. An optional regular expression selects the benchmarks by name.
+ * 
+ * @author Marius Runde
+ */
+public class InstructionBenchmarks {
+
+	/**
+	 * Seed of the <code>CityGenerator</code>, so that every run measures the
+	 * same data
+	 */
+	private static final long SEED = 4711;
+
+	/**
+	 * Data set of a benchmark
+	 */
+	private static class DataSet {
+
+		/**
+		 * Name of the data set
+		 */
+		private final String name;
+
+		/**
+		 * Number of shape points of the route
+		 */
+		private final int shapePoints;
+
+		/**
+		 * Number of features
+		 */
+		private final int features;
+
+		/**
+		 * Guidance of the route in the format of the MapQuest API
+		 */
+		private final byte[] guidance;
+
+		/**
+		 * The features
+		 */
+		private final FeatureFile featureFile;
+
+		/**
+		 * Constructor of the DataSet class
+		 * 
+		 * @param name
+		 *            Name of the data set
+		 * @param shapePoints
+		 *            Number of shape points of the route
+		 * @param guidance
+		 *            Guidance of the route in the format of the MapQuest API
+		 * @param featureFile
+		 *            The features
+		 */
+		private DataSet(String name, int shapePoints, byte[] guidance,
+				FeatureFile featureFile) {
+			this.name = name;
+			this.shapePoints = shapePoints;
+			this.guidance = guidance;
+			this.featureFile = featureFile;
+			this.features = featureFile.getNumberOfLocalLandmarks()
+					+ featureFile.getNumberOfGlobalLandmarks()
+					+ featureFile.getNumberOfStreetFurniture()
+					+ featureFile.getNumberOfIntersections();
+		}
+	}
+
+	/**
+	 * Run the benchmarks
+	 * 
+	 * @param args
+	 *            Options and an optional regular expression to select the
+	 *            benchmarks
+	 * @throws Exception
+	 *             If a benchmark failed
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] data = { "munster", "synthetic" };
+		int[] points = { 100, 1000, 10000 };
+		int[] features = { 10000, 100000 };
+		File featureFile = new File("res/raw/features.bin");
+		int warmupIterations = 3;
+		int iterations = 5;
+		long iterationTime = 1000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Pattern filter = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-data")) {
+					data = args[++i].split(",");
+				} else if (args[i].equals("-points")) {
+					points = parseList(args[++i]);
+				} else if (args[i].equals("-features")) {
+					features = parseList(args[++i]);
+				} else if (args[i].equals("-file")) {
+					featureFile = new File(args[++i]);
+				} else if (args[i].equals("-wi")) {
+					warmupIterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-i")) {
+					iterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-time")) {
+					iterationTime = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (filter == null && !args[i].startsWith("-")) {
+					filter = Pattern.compile(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: InstructionBenchmarks [-data munster,synthetic] "
+					+ "[-points n,...] [-features n,...] [-file features.bin] "
+					+ "[-wi warmup iterations] [-i iterations] [-time ms] "
+					+ "[-threads n] [regex]");
+			System.exit(1);
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations,
+				iterations, iterationTime);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			System.out.println(String.format(Locale.US,
+					"%-32s %-10s %8s %9s %4s %12s   %10s  %s", "Benchmark",
+					"Data", "Points", "Features", "Cnt", "Score", "Error",
+					"Units"));
+			for (String name : data) {
+				for (int shapePoints : points) {
+					if (name.equals("munster")) {
+						run(runner, createMunsterDataSet(featureFile,
+								shapePoints), executor, filter);
+					} else if (name.equals("synthetic")) {
+						for (int count : features) {
+							run(runner, createSyntheticDataSet(shapePoints,
+									count), executor, filter);
+						}
+					} else {
+						System.err.println("Unknown data set: " + name);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Run all benchmarks on a data set and print the results
+	 * 
+	 * @param runner
+	 *            The benchmark runner
+	 * @param dataSet
+	 *            The data set
+	 * @param executor
+	 *            Executor to create the instruction plan in parallel
+	 * @param filter
+	 *            Regular expression to select the benchmarks or
+	 *            <code>null</code> to run all benchmarks
+	 * @throws Exception
+	 *             If a benchmark failed
+	 */
+	private static void run(BenchmarkRunner runner, DataSet dataSet,
+			ExecutorService executor, Pattern filter) throws Exception {
+		for (Benchmark benchmark : createBenchmarks(dataSet, executor)) {
+			if (filter != null
+					&& !filter.matcher(benchmark.getName()).find()) {
+				continue;
+			}
+			double[] result = runner.measure(benchmark);
+			System.out.println(String.format(Locale.US,
+					"%-32s %-10s %8d %9d %4d %12.3f +- %10.3f  us/op",
+					benchmark.getName(), dataSet.name, dataSet.shapePoints,
+					dataSet.features, result.length,
+					BenchmarkRunner.mean(result),
+					BenchmarkRunner.standardDeviation(result)));
+		}
+	}
+
+	/**
+	 * Create the benchmarks of all stages of the instruction pipeline
+	 * 
+	 * @param dataSet
+	 *            The data set
+	 * @param executor
+	 *            Executor to create the instruction plan in parallel
+	 * @return The benchmarks
+	 */
+	private static List<Benchmark> createBenchmarks(final DataSet dataSet,
+			final ExecutorService executor) {
+		final Route route = new Route(new ByteArrayInputStream(
+				dataSet.guidance));
+		final FeatureIndex index = InstructionManager
+				.createFeatureIndex(dataSet.featureFile);
+		final InstructionManager im = new InstructionManager(route, index);
+		final String json = new String(dataSet.guidance);
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		// --- Read the route ---
+		benchmarks.add(new Benchmark("route.json") {
+
+			@Override
+			public Object run() throws Exception {
+				return new Route(new JSONObject(json));
+			}
+		});
+		benchmarks.add(new Benchmark("route.stream") {
+
+			@Override
+			public Object run() {
+				return new Route(new ByteArrayInputStream(dataSet.guidance));
+			}
+		});
+		// --- End of read the route ---
+
+		// --- Read the features ---
+		benchmarks.add(new Benchmark("features.route") {
+
+			@Override
+			public Object run() {
+				return new InstructionManager(route, dataSet.featureFile);
+			}
+		});
+		benchmarks.add(new Benchmark("features.index") {
+
+			@Override
+			public Object run() {
+				return InstructionManager
+						.createFeatureIndex(dataSet.featureFile);
+			}
+		});
+		// --- End of read the features ---
+
+		// --- Search for the features of each route segment ---
+		benchmarks.add(new Benchmark("search.globalLandmarkAlongRoute") {
+
+			@Override
+			public Object run() {
+				int found = 0;
+				for (int i = 0; i < route.getNumberOfSegments(); i++) {
+					RouteSegment rs = route.getSegment(i);
+					if (im.searchForGlobalLandmarkAlongRoute(
+							rs.getEndIndex(), rs.getStartIndex()) != null) {
+						found++;
+					}
+				}
+				return found;
+			}
+		});
+		benchmarks.add(new Benchmark("search.localLandmarkAlongRoute") {
+
+			@Override
+			public Object run() {
+				int found = 0;
+				for (int i = 0; i < route.getNumberOfSegments(); i++) {
+					RouteSegment rs = route.getSegment(i);
+					if (im.searchForLocalLandmarkAlongRoute(rs.getEndIndex(),
+							rs.getStartIndex()) != null) {
+						found++;
+					}
+				}
+				return found;
+			}
+		});
+		benchmarks.add(new Benchmark("search.localLandmark") {
+
+			@Override
+			public Object run() {
+				int found = 0;
+				for (int i = 0; i < route.getNumberOfSegments(); i++) {
+					if (im.searchForLocalLandmark(route.getSegment(i)
+							.getEndIndex()) != null) {
+						found++;
+					}
+				}
+				return found;
+			}
+		});
+		benchmarks.add(new Benchmark("search.streetFurniture") {
+
+			@Override
+			public Object run() {
+				int found = 0;
+				for (int i = 0; i < route.getNumberOfSegments(); i++) {
+					RouteSegment rs = route.getSegment(i);
+					if (im.searchForStreetFurniture(rs.getEndIndex(),
+							rs.getStartIndex()) != null) {
+						found++;
+					}
+				}
+				return found;
+			}
+		});
+		benchmarks.add(new Benchmark("search.intersections") {
+
+			@Override
+			public Object run() {
+				int found = 0;
+				for (int i = 0; i < route.getNumberOfSegments(); i++) {
+					RouteSegment rs = route.getSegment(i);
+					found += im.searchForIntersections(rs.getEndIndex(),
+							rs.getStartIndex());
+				}
+				return found;
+			}
+		});
+		// --- End of search for the features of each route segment ---
+
+		// --- Create the instruction plan ---
+		benchmarks.add(new Benchmark("plan.sequential") {
+
+			@Override
+			public Object run() {
+				return im.createPlan();
+			}
+		});
+		benchmarks.add(new Benchmark("plan.parallel") {
+
+			@Override
+			public Object run() throws Exception {
+				return im.createPlan(executor);
+			}
+		});
+		// --- End of create the instruction plan ---
+
+		return benchmarks;
+	}
+
+	/**
+	 * Create the data set of Muenster. The route is a tour along the
+	 * intersections of the feature file, always continuing with the closest
+	 * intersection that has not been visited yet.
+	 * 
+	 * @param file
+	 *            The feature file
+	 * @param shapePoints
+	 *            Number of shape points of the route
+	 * @return The data set
+	 * @throws IOException
+	 *             If the feature file could not be read
+	 */
+	private static DataSet createMunsterDataSet(File file, int shapePoints)
+			throws IOException {
+		FeatureFile features = FeatureFile.map(file);
+		int count = features.getNumberOfIntersections();
+		int decisionPoints = Math.max(2, Math.min(count, shapePoints
+				/ CityGenerator.POINTS_PER_DECISION_POINT));
+
+		Coordinate[] intersections = new Coordinate[count];
+		for (int i = 0; i < count; i++) {
+			intersections[i] = features.getIntersection(i);
+		}
+		boolean[] visited = new boolean[count];
+		Coordinate[] tour = new Coordinate[decisionPoints];
+		int current = 0;
+		for (int i = 0; i < decisionPoints; i++) {
+			visited[current] = true;
+			tour[i] = intersections[current];
+			int closest = -1;
+			double closestDistance = Double.MAX_VALUE;
+			for (int j = 0; j < count; j++) {
+				if (visited[j]) {
+					continue;
+				}
+				double distance = GeoMath.equirectangular(
+						tour[i].getLatitude(), tour[i].getLongitude(),
+						intersections[j].getLatitude(),
+						intersections[j].getLongitude());
+				if (distance < closestDistance) {
+					closestDistance = distance;
+					closest = j;
+				}
+			}
+			current = closest;
+		}
+
+		return new DataSet("munster", shapePoints, new CityGenerator(SEED)
+				.createGuidance(tour, shapePoints), features);
+	}
+
+	/**
+	 * Create a synthetic data set with the <code>CityGenerator</code>
+	 * 
+	 * @param shapePoints
+	 *            Number of shape points of the route
+	 * @param features
+	 *            Number of features
+	 * @return The data set
+	 */
+	private static DataSet createSyntheticDataSet(int shapePoints,
+			int features) {
+		CityGenerator generator = new CityGenerator(SEED);
+		Coordinate[] tour = generator.createTour(Math.max(2, shapePoints
+				/ CityGenerator.POINTS_PER_DECISION_POINT));
+		return new DataSet("synthetic", shapePoints, generator.createGuidance(
+				tour, shapePoints), generator.createFeatureFile(tour, features));
+	}
+
+	/**
+	 * Parse a comma separated list of numbers
+	 * 
+	 * @param list
+	 *            The list
+	 * @return The numbers
+	 */
+	private static int[] parseList(String list) {
+		String[] values = list.split(",");
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Integer.parseInt(values[i]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,309 @@
+package de.mrunde.bachelorthesis.instructions;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.basics.RouteSegment;
+import de.mrunde.bachelorthesis.basics.StreetFurniture;
+import de.mrunde.bachelorthesis.basics.StreetFurnitureCategory;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.tools.CityGenerator;
+
+/**
+ * The SearchComparison tool compares the street furniture and intersection
+ * searches of the <code>InstructionManager</code> with the shape point loop
+ * of the original app, which checked every feature against every shape point
+ * of a route segment without any index. It is placed in the package of the
+ * <code>InstructionManager</code> to call the searches directly, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/instructions/SearchComparison.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.instructions.SearchComparison res/raw/features.bin
+ * </pre>
+ * 
+ * The routes are random tours through the locations of the features of the
+ * feature file (e.g. Muenster), with few shape points on long straight links
+ * as well as many shape points. The tool exits with status 1 if any route
+ * segment gets a different result.
+ * 
+ * @author Marius Runde
+ */
+public class SearchComparison {
+
+	/**
+	 * Maximum distance to an intersection as in the
+	 * <code>InstructionManager</code>
+	 */
+	private static final int MAX_DISTANCE_TO_INTERSECTION = 16;
+
+	/**
+	 * Maximum number of street furniture as in the
+	 * <code>InstructionManager</code>
+	 */
+	private static final int MAX_NUMBER_OF_STREET_FURNITURE = 2;
+
+	/**
+	 * Maximum number of intersections as in the
+	 * <code>InstructionManager</code>
+	 */
+	private static final int MAX_NUMBER_OF_INTERSECTIONS = 3;
+
+	/**
+	 * Numbers of shape points per decision point of the routes
+	 */
+	private static final int[] POINTS_PER_DECISION_POINT = { 1, 2, 5, 10, 30 };
+
+	/**
+	 * Largest number of decision points of a route
+	 */
+	private static final int MAX_DECISION_POINTS = 20;
+
+	/**
+	 * Number of differences that are printed
+	 */
+	private static final int MAX_REPORTED = 10;
+
+	/**
+	 * Run the comparison
+	 * 
+	 * @param args
+	 *            Options and the feature file
+	 */
+	public static void main(String[] args) {
+		long seed = 4711;
+		int routes = 1000;
+		File file = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-routes")) {
+					routes = Integer.parseInt(args[++i]);
+				} else if (file == null && !args[i].startsWith("-")) {
+					file = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			if (file == null) {
+				throw new IllegalArgumentException("No feature file");
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: SearchComparison [-seed n] [-routes n] "
+					+ "<features.bin>");
+			System.exit(1);
+			return;
+		}
+
+		FeatureIndex features;
+		try {
+			features = InstructionManager.createFeatureIndex(FeatureFile
+					.map(file));
+		} catch (IOException e) {
+			System.err.println("Could not read the features. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+			return;
+		}
+		List<Coordinate> locations = getLocations(features);
+
+		Random random = new Random(seed);
+		CityGenerator generator = new CityGenerator(seed);
+		int segments = 0;
+		int streetFurniture = 0;
+		int intersections = 0;
+		int differences = 0;
+		for (int r = 0; r < routes; r++) {
+			// Create a random tour through the locations of the features
+			Collections.shuffle(locations, random);
+			Coordinate[] tour = locations.subList(0,
+					2 + random.nextInt(MAX_DECISION_POINTS - 1)).toArray(
+					new Coordinate[0]);
+			int shapePoints = tour.length
+					* POINTS_PER_DECISION_POINT[random
+							.nextInt(POINTS_PER_DECISION_POINT.length)];
+			Route route = new Route(new ByteArrayInputStream(
+					generator.createGuidance(tour, shapePoints)));
+			InstructionManager im = new InstructionManager(route, features);
+
+			// Compare the searches on each route segment
+			for (int i = 0; i < route.getNumberOfSegments(); i++) {
+				RouteSegment rs = route.getSegment(i);
+				int indexCurrent = rs.getEndIndex();
+				int indexPrevious = rs.getStartIndex();
+				segments++;
+
+				String[] expectedStreetFurniture = searchForStreetFurniture(
+						route, features, indexCurrent, indexPrevious);
+				String[] actualStreetFurniture = im.searchForStreetFurniture(
+						indexCurrent, indexPrevious);
+				if (expectedStreetFurniture != null) {
+					streetFurniture++;
+				}
+				if (!Arrays.equals(expectedStreetFurniture,
+						actualStreetFurniture)) {
+					differences++;
+					if (differences <= MAX_REPORTED) {
+						System.out.println("Route " + r + ", segment " + i
+								+ ": street furniture "
+								+ Arrays.toString(actualStreetFurniture)
+								+ " instead of "
+								+ Arrays.toString(expectedStreetFurniture));
+					}
+				}
+
+				int expectedIntersections = searchForIntersections(route,
+						features, indexCurrent, indexPrevious);
+				int actualIntersections = im.searchForIntersections(
+						indexCurrent, indexPrevious);
+				if (expectedIntersections > 0) {
+					intersections++;
+				}
+				if (expectedIntersections != actualIntersections) {
+					differences++;
+					if (differences <= MAX_REPORTED) {
+						System.out.println("Route " + r + ", segment " + i
+								+ ": " + actualIntersections
+								+ " intersections instead of "
+								+ expectedIntersections);
+					}
+				}
+			}
+		}
+
+		System.out.println(routes + " routes, " + segments + " segments ("
+				+ streetFurniture + " with street furniture, "
+				+ intersections + " with intersections), " + differences
+				+ " differences");
+		if (differences > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Get the locations of all features
+	 * 
+	 * @param features
+	 *            The features
+	 * @return The locations
+	 */
+	private static List<Coordinate> getLocations(FeatureIndex features) {
+		List<Coordinate> result = new ArrayList<Coordinate>();
+		for (int i = 0; i < features.getLocalLandmarks().size(); i++) {
+			result.add(features.getLocalLandmarks().get(i).getCenter());
+		}
+		for (int i = 0; i < features.getGlobalLandmarks().size(); i++) {
+			result.add(features.getGlobalLandmarks().get(i).getCenter());
+		}
+		for (int i = 0; i < features.getStreetFurniture().size(); i++) {
+			result.add(features.getStreetFurniture().get(i).getCenter());
+		}
+		result.addAll(features.getIntersections());
+		return result;
+	}
+
+	/**
+	 * Search for a street furniture on a route segment like the original app
+	 * 
+	 * @param route
+	 *            The route
+	 * @param features
+	 *            The features
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
+	 * @return Number of street furniture and index of the street furniture
+	 *         category
+	 */
+	private static String[] searchForStreetFurniture(Route route,
+			FeatureIndex features, int indexCurrent, int indexPrevious) {
+		String[] categories = StreetFurnitureCategory.getCategories();
+		int[] numberOfStreetFurniture = new int[categories.length];
+		int[] indexLastStreetFurniture = new int[categories.length];
+
+		List<StreetFurniture> streetFurniture = features.getStreetFurniture();
+		for (int i = 0; i < streetFurniture.size(); i++) {
+			int indexCategory = 0;
+			while (!categories[indexCategory].replace("_", " ").equals(
+					streetFurniture.get(i).getCategory())) {
+				indexCategory++;
+			}
+			Coordinate center = streetFurniture.get(i).getCenter();
+			for (int j = indexCurrent; j > indexPrevious + 1; j--) {
+				double distance = route.distanceTo(j, center.getLatitude(),
+						center.getLongitude());
+				if (distance <= streetFurniture.get(i).getRadius()) {
+					if (numberOfStreetFurniture[indexCategory] == 0) {
+						indexLastStreetFurniture[indexCategory] = j;
+					}
+					numberOfStreetFurniture[indexCategory]++;
+					break;
+				}
+			}
+		}
+
+		String[] result = null;
+		for (int k = 0; k < categories.length; k++) {
+			if (0 < numberOfStreetFurniture[k]
+					&& numberOfStreetFurniture[k] <= MAX_NUMBER_OF_STREET_FURNITURE) {
+				if (result == null) {
+					result = new String[2];
+				}
+				result[0] = String.valueOf(numberOfStreetFurniture[k]);
+				result[1] = categories[k].replace("_", " ");
+				if (searchForIntersections(route, features, indexCurrent,
+						indexLastStreetFurniture[k]) > 0) {
+					result = null;
+				} else {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Search for intersections on a route segment like the original app
+	 * 
+	 * @param route
+	 *            The route
+	 * @param features
+	 *            The features
+	 * @param indexCurrent
+	 *            Index of the decision point in the shape points
+	 * @param indexPrevious
+	 *            Index of the previous decision point in the shape points
+	 * @return Number of intersections
+	 */
+	private static int searchForIntersections(Route route,
+			FeatureIndex features, int indexCurrent, int indexPrevious) {
+		int result = 0;
+		List<Coordinate> intersections = features.getIntersections();
+		for (int i = 0; i < intersections.size(); i++) {
+			Coordinate intersection = intersections.get(i);
+			for (int j = indexCurrent; j > indexPrevious; j--) {
+				double distance = route.distanceTo(j,
+						intersection.getLatitude(),
+						intersection.getLongitude());
+				if (distance <= MAX_DISTANCE_TO_INTERSECTION) {
+					result++;
+					break;
+				}
+			}
+			if (result > MAX_NUMBER_OF_INTERSECTIONS) {
+				result = 0;
+				break;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,143 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.mrunde.bachelorthesis.instructions.BatchInstructionService;
+import de.mrunde.bachelorthesis.instructions.FeatureIndex;
+import de.mrunde.bachelorthesis.instructions.Instruction;
+import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+
+/**
+ * The BatchInstructions tool creates the instructions for many guidance files
+ * with the <code>BatchInstructionService</code> on a desktop JVM or server,
+ * e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -cp json.jar -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/BatchInstructions.java
+ * java -cp tools/bin:json.jar de.mrunde.bachelorthesis.tools.BatchInstructions \
+ *     res/raw/features.bin 4 routes/*.json
+ * </pre>
+ * 
+ * The org.json library is part of Android and must be added to the class path
+ * on a desktop JVM (json.jar). The instructions of each route are written to
+ * the standard output in the order of the guidance files, the statistics to
+ * the standard error stream.
+ * 
+ * @author Marius Runde
+ */
+public class BatchInstructions {
+
+	/**
+	 * Create the instructions for all guidance files
+	 * 
+	 * @param args
+	 *            Feature file, number of threads and the guidance files
+	 */
+	public static void main(final String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: BatchInstructions <features.bin> "
+					+ "<threads> <guidance.json>...");
+			System.exit(1);
+		}
+
+		int threads;
+		try {
+			threads = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			threads = 0;
+		}
+		if (threads <= 0) {
+			System.err.println("Invalid number of threads: " + args[1]);
+			System.exit(1);
+		}
+
+		FeatureIndex features;
+		try {
+			features = InstructionManager.createFeatureIndex(FeatureFile
+					.map(new File(args[0])));
+		} catch (IOException e) {
+			System.err.println("Could not read the features. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.err.println("Features: " + features.toString());
+
+		// Open the guidance files one after another while they are processed
+		Iterator<InputStream> guidance = new Iterator<InputStream>() {
+
+			private int next = 2;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < args.length;
+			}
+
+			@Override
+			public InputStream next() {
+				try {
+					return new BufferedInputStream(new FileInputStream(
+							args[this.next++]));
+				} catch (FileNotFoundException e) {
+					throw new IllegalArgumentException(e.getMessage());
+				}
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			BatchInstructionService service = new BatchInstructionService(
+					features, executor, threads * 4);
+			BatchInstructionService.Statistics statistics = service.run(
+					guidance, new BatchInstructionService.Listener() {
+
+						@Override
+						public void onInstructions(int route,
+								InstructionPlan plan) {
+							System.out.println(args[route + 2] + ": "
+									+ plan.getNumberOfInstructions()
+									+ " instructions");
+							for (Instruction instruction : plan
+									.getInstructions()) {
+								System.out.println("\t"
+										+ instruction.toString()
+										+ " | "
+										+ instruction.getDecisionPoint()
+												.toString());
+							}
+						}
+
+						@Override
+						public void onError(int route, String message) {
+							System.err.println(args[route + 2] + ": "
+									+ message);
+						}
+					});
+			System.err.println(statistics.toString());
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted");
+			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Could not open a guidance file. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package de.mrunde.bachelorthesis.tools;
+
+/**
+ * A Benchmark measures one operation (e.g. reading a route or creating the
+ * instructions). It is run repeatedly by the <code>BenchmarkRunner</code>.
+ * 
+ * @author Marius Runde
+ */
+public abstract class Benchmark {
+
+	/**
+	 * Name of the benchmark
+	 */
+	private final String name;
+
+	/**
+	 * Constructor of the Benchmark class
+	 * 
+	 * @param name
+	 *            Name of the benchmark
+	 */
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The name of the benchmark
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Run the operation once
+	 * 
+	 * @return The result of the operation. It is consumed by the runner, so
+	 *         that the operation cannot be optimized away.
+	 * @throws Exception
+	 *             If the operation failed
+	 */
+	public abstract Object run() throws Exception;
+}
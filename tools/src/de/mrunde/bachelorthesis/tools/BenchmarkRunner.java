@@ -0,0 +1,131 @@
+package de.mrunde.bachelorthesis.tools;
+
+/**
+ * The BenchmarkRunner measures the average time of an operation. Like JMH in
+ * its average time mode, each benchmark first runs some warmup iterations so
+ * that the JIT compiler has optimized the code, followed by the measured
+ * iterations. Each iteration runs the operation repeatedly for a fixed time.
+ * 
+ * @author Marius Runde
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Number of warmup iterations
+	 */
+	private final int warmupIterations;
+
+	/**
+	 * Number of measured iterations
+	 */
+	private final int iterations;
+
+	/**
+	 * Duration of each iteration in nanoseconds
+	 */
+	private final long iterationTime;
+
+	/**
+	 * Stores the last result of each operation, so that the JIT compiler
+	 * cannot remove the operation
+	 */
+	private volatile Object blackhole;
+
+	/**
+	 * Constructor of the BenchmarkRunner class
+	 * 
+	 * @param warmupIterations
+	 *            Number of warmup iterations
+	 * @param iterations
+	 *            Number of measured iterations
+	 * @param iterationTime
+	 *            Duration of each iteration in milliseconds
+	 */
+	public BenchmarkRunner(int warmupIterations, int iterations,
+			long iterationTime) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException(
+					"At least one iteration must be measured");
+		}
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationTime = iterationTime * 1000000;
+	}
+
+	/**
+	 * Measure a benchmark
+	 * 
+	 * @param benchmark
+	 *            The benchmark
+	 * @return The average time of the operation in microseconds for each
+	 *         measured iteration
+	 * @throws Exception
+	 *             If the operation failed
+	 */
+	public double[] measure(Benchmark benchmark) throws Exception {
+		for (int i = 0; i < this.warmupIterations; i++) {
+			runIteration(benchmark);
+		}
+		double[] result = new double[this.iterations];
+		for (int i = 0; i < this.iterations; i++) {
+			result[i] = runIteration(benchmark);
+		}
+		return result;
+	}
+
+	/**
+	 * Run the operation repeatedly until the iteration time has passed
+	 * 
+	 * @param benchmark
+	 *            The benchmark
+	 * @return The average time of the operation in microseconds
+	 * @throws Exception
+	 *             If the operation failed
+	 */
+	private double runIteration(Benchmark benchmark) throws Exception {
+		long start = System.nanoTime();
+		long end = start + this.iterationTime;
+		long now;
+		long operations = 0;
+		do {
+			this.blackhole = benchmark.run();
+			operations++;
+			now = System.nanoTime();
+		} while (now < end);
+		return (now - start) / 1000.0 / operations;
+	}
+
+	/**
+	 * Calculate the mean of the measured iterations
+	 * 
+	 * @param values
+	 *            The results of the iterations
+	 * @return The mean
+	 */
+	public static double mean(double[] values) {
+		double sum = 0;
+		for (int i = 0; i < values.length; i++) {
+			sum += values[i];
+		}
+		return sum / values.length;
+	}
+
+	/**
+	 * Calculate the standard deviation of the measured iterations
+	 * 
+	 * @param values
+	 *            The results of the iterations
+	 * @return The sample standard deviation or 0 for a single iteration
+	 */
+	public static double standardDeviation(double[] values) {
+		if (values.length < 2) {
+			return 0;
+		}
+		double mean = mean(values);
+		double sum = 0;
+		for (int i = 0; i < values.length; i++) {
+			sum += (values[i] - mean) * (values[i] - mean);
+		}
+		return Math.sqrt(sum / (values.length - 1));
+	}
+}
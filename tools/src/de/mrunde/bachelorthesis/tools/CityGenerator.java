@@ -0,0 +1,935 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.GeoMath;
+import de.mrunde.bachelorthesis.basics.LandmarkCategory;
+import de.mrunde.bachelorthesis.basics.Maneuver;
+import de.mrunde.bachelorthesis.basics.StreetFurnitureCategory;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.io.FeatureFileWriter;
+import de.mrunde.bachelorthesis.io.FeatureFormat;
+
+/**
+ * The CityGenerator creates a synthetic grid city for load and scalability
+ * tests: a route along its streets as guidance in the format of the MapQuest
+ * API and the landmarks, street furniture and intersections around the route.
+ * The same seed always creates the same city, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/CityGenerator.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.tools.CityGenerator \
+ *     -points 100000 -margin 30000 city/
+ * </pre>
+ * 
+ * This writes guidance.json and features.bin into the output directory and
+ * with -json also the landmarks, street furniture and intersections in the
+ * format of the files in res/raw. The number of features is set by their
+ * densities in features per square kilometer of the city, which covers the
+ * route and a margin around it. Alternatively -features sets the total number
+ * of features, which is split by the ratio of the densities.
+ * 
+ * @author Marius Runde
+ */
+public class CityGenerator {
+
+	/**
+	 * Default length of a block of the city in meters
+	 */
+	public static final double DEFAULT_BLOCK_SIZE = 100;
+
+	/**
+	 * Default margin of the city around the route in meters
+	 */
+	public static final double DEFAULT_MARGIN = 500;
+
+	/**
+	 * Average number of shape points between two decision points
+	 */
+	public static final int POINTS_PER_DECISION_POINT = 10;
+
+	/**
+	 * Latitude of the center of the city (Muenster)
+	 */
+	private static final double CENTER_LAT = 51.962;
+
+	/**
+	 * Longitude of the center of the city (Muenster)
+	 */
+	private static final double CENTER_LNG = 7.626;
+
+	/**
+	 * Listener to receive the features of the city
+	 */
+	public interface Listener {
+
+		/**
+		 * Called for each landmark
+		 * 
+		 * @param local
+		 *            <code>TRUE</code> for a local landmark,
+		 *            <code>FALSE</code> for a global landmark
+		 * @param title
+		 *            Title
+		 * @param lat
+		 *            Latitude of the center
+		 * @param lng
+		 *            Longitude of the center
+		 * @param radius
+		 *            Radius of visibility in meters
+		 * @param category
+		 *            Category
+		 * @throws IOException
+		 *             If the landmark could not be written
+		 */
+		void onLandmark(boolean local, String title, double lat, double lng,
+				int radius, String category) throws IOException;
+
+		/**
+		 * Called for each street furniture
+		 * 
+		 * @param lat
+		 *            Latitude of the center
+		 * @param lng
+		 *            Longitude of the center
+		 * @param radius
+		 *            Radius of visual salience in meters or
+		 *            <code>FeatureFormat.DEFAULT_RADIUS</code>
+		 * @param category
+		 *            Category
+		 * @throws IOException
+		 *             If the street furniture could not be written
+		 */
+		void onStreetFurniture(double lat, double lng, int radius,
+				String category) throws IOException;
+
+		/**
+		 * Called for each intersection
+		 * 
+		 * @param lat
+		 *            Latitude
+		 * @param lng
+		 *            Longitude
+		 * @throws IOException
+		 *             If the intersection could not be written
+		 */
+		void onIntersection(double lat, double lng) throws IOException;
+	}
+
+	/**
+	 * Seed of the random generator
+	 */
+	private final long seed;
+
+	/**
+	 * Length of a block in meters
+	 */
+	private double blockSize = DEFAULT_BLOCK_SIZE;
+
+	/**
+	 * Margin of the city around the route in meters
+	 */
+	private double margin = DEFAULT_MARGIN;
+
+	// --- Densities in features per square kilometer ---
+
+	/**
+	 * Density of the local landmarks
+	 */
+	private double localLandmarkDensity = 30;
+
+	/**
+	 * Density of the global landmarks
+	 */
+	private double globalLandmarkDensity = 2;
+
+	/**
+	 * Density of the street furniture
+	 */
+	private double streetFurnitureDensity = 60;
+
+	/**
+	 * Density of the intersections. A block size of 100 meters has 100
+	 * crossings of streets per square kilometer.
+	 */
+	private double intersectionDensity = 100;
+
+	// --- End of densities in features per square kilometer ---
+
+	/**
+	 * Constructor of the CityGenerator class
+	 * 
+	 * @param seed
+	 *            Seed of the random generator
+	 */
+	public CityGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param blockSize
+	 *            Length of a block in meters
+	 */
+	public void setBlockSize(double blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Invalid block size: "
+					+ blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @param margin
+	 *            Margin of the city around the route in meters
+	 */
+	public void setMargin(double margin) {
+		if (margin < 0) {
+			throw new IllegalArgumentException("Invalid margin: " + margin);
+		}
+		this.margin = margin;
+	}
+
+	/**
+	 * Set the densities of the features in features per square kilometer
+	 * 
+	 * @param localLandmarks
+	 *            Density of the local landmarks
+	 * @param globalLandmarks
+	 *            Density of the global landmarks
+	 * @param streetFurniture
+	 *            Density of the street furniture
+	 * @param intersections
+	 *            Density of the intersections
+	 */
+	public void setDensities(double localLandmarks, double globalLandmarks,
+			double streetFurniture, double intersections) {
+		if (localLandmarks < 0 || globalLandmarks < 0 || streetFurniture < 0
+				|| intersections < 0) {
+			throw new IllegalArgumentException("Invalid densities");
+		}
+		this.localLandmarkDensity = localLandmarks;
+		this.globalLandmarkDensity = globalLandmarks;
+		this.streetFurnitureDensity = streetFurniture;
+		this.intersectionDensity = intersections;
+	}
+
+	/**
+	 * Create a tour along the streets of the city. It turns left or right at
+	 * every decision point and goes straight on for one to four blocks in
+	 * between.
+	 * 
+	 * @param decisionPoints
+	 *            Number of decision points including the start and the
+	 *            destination
+	 * @return The decision points
+	 */
+	public Coordinate[] createTour(int decisionPoints) {
+		if (decisionPoints < 2) {
+			throw new IllegalArgumentException(
+					"A tour needs at least two decision points");
+		}
+		Random random = new Random(this.seed);
+		double blockLat = getBlockLatitude();
+		double blockLng = getBlockLongitude();
+
+		Coordinate[] tour = new Coordinate[decisionPoints];
+		int row = 0;
+		int col = 0;
+		int direction = 0;
+		for (int i = 0; i < decisionPoints; i++) {
+			tour[i] = new Coordinate(CENTER_LAT + row * blockLat, CENTER_LNG
+					+ col * blockLng);
+			direction = (direction + (random.nextBoolean() ? 1 : 3)) % 4;
+			int blocks = 1 + random.nextInt(4);
+			row += direction == 0 ? blocks : direction == 2 ? -blocks : 0;
+			col += direction == 1 ? blocks : direction == 3 ? -blocks : 0;
+		}
+		return tour;
+	}
+
+	/**
+	 * Write the guidance of a route in the format of the MapQuest API. Each
+	 * point of the tour becomes a decision point, the links between them are
+	 * filled with shape points. The guidance is written while it is created,
+	 * so that routes with millions of shape points need little memory.
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param shapePoints
+	 *            Number of shape points of the route. There is at least one
+	 *            shape point for each decision point.
+	 * @param out
+	 *            The writer to write to. It is not closed.
+	 * @throws IOException
+	 *             If the guidance could not be written
+	 */
+	public void writeGuidance(Coordinate[] tour, int shapePoints, Writer out)
+			throws IOException {
+		// Distribute the shape points over the links by their lengths
+		int links = tour.length - 1;
+		double[] lengths = new double[links];
+		double totalLength = 0;
+		for (int i = 0; i < links; i++) {
+			lengths[i] = GeoMath.equirectangular(tour[i].getLatitude(),
+					tour[i].getLongitude(), tour[i + 1].getLatitude(),
+					tour[i + 1].getLongitude());
+			totalLength += lengths[i];
+		}
+		int free = Math.max(0, shapePoints - tour.length);
+		int[] pointsPerLink = new int[links];
+		int distributed = 0;
+		for (int i = 0; i < links; i++) {
+			if (totalLength > 0) {
+				pointsPerLink[i] = (int) (free * lengths[i] / totalLength);
+			}
+			distributed += pointsPerLink[i];
+		}
+		for (int i = 0; distributed < free; i = (i + 1) % links) {
+			pointsPerLink[i]++;
+			distributed++;
+		}
+
+		// --- Write the maneuvers ---
+		// Each maneuver refers to the link starting at its decision point
+		out.write("{\"guidance\":{\"GuidanceNodeCollection\":[");
+		for (int i = 0; i <= links; i++) {
+			int maneuver;
+			if (i == 0) {
+				maneuver = Maneuver.STRAIGHT;
+			} else if (i == links) {
+				maneuver = Maneuver.DESTINATION;
+			} else {
+				maneuver = getManeuver(tour[i - 1], tour[i], tour[i + 1]);
+			}
+			out.write((i == 0 ? "" : ",") + "{\"maneuverType\":" + maneuver
+					+ ",\"linkIds\":[" + i + "]}");
+		}
+		// --- End of write the maneuvers ---
+
+		// --- Write the shape points ---
+		out.write("],\"shapePoints\":[");
+		for (int i = 0; i < links; i++) {
+			double lat = tour[i].getLatitude();
+			double lng = tour[i].getLongitude();
+			double dLat = tour[i + 1].getLatitude() - lat;
+			double dLng = tour[i + 1].getLongitude() - lng;
+			for (int j = 0; j <= pointsPerLink[i]; j++) {
+				double f = (double) j / (pointsPerLink[i] + 1);
+				out.write(String.format(Locale.US, "%.6f,%.6f,", lat + f
+						* dLat, lng + f * dLng));
+			}
+		}
+		out.write(String.format(Locale.US, "%.6f,%.6f",
+				tour[links].getLatitude(), tour[links].getLongitude()));
+		// --- End of write the shape points ---
+
+		// --- Write the links ---
+		// The destination has a link without length
+		out.write("],\"GuidanceLinkCollection\":[");
+		int shapeIndex = 0;
+		for (int i = 0; i < links; i++) {
+			out.write(String.format(Locale.US,
+					"{\"length\":%.6f,\"shapeIndex\":%d},", lengths[i] / 1000,
+					shapeIndex));
+			shapeIndex += pointsPerLink[i] + 1;
+		}
+		out.write("{\"length\":0,\"shapeIndex\":" + shapeIndex + "}]}}");
+		// --- End of write the links ---
+	}
+
+	/**
+	 * Create the guidance of a route in the format of the MapQuest API (see
+	 * <code>writeGuidance()</code>)
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param shapePoints
+	 *            Number of shape points of the route
+	 * @return The guidance encoded as UTF-8
+	 */
+	public byte[] createGuidance(Coordinate[] tour, int shapePoints) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			writeGuidance(tour, shapePoints, writer);
+			writer.flush();
+		} catch (IOException e) {
+			// Cannot happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Create the features of the city around a tour by their densities
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param listener
+	 *            The listener to receive the features
+	 * @return The number of features
+	 * @throws IOException
+	 *             If the listener could not write a feature
+	 */
+	public int createFeatures(Coordinate[] tour, Listener listener)
+			throws IOException {
+		double area = getArea(tour);
+		return createFeatures(tour,
+				(int) Math.round(this.localLandmarkDensity * area),
+				(int) Math.round(this.globalLandmarkDensity * area),
+				(int) Math.round(this.streetFurnitureDensity * area),
+				(int) Math.round(this.intersectionDensity * area), listener);
+	}
+
+	/**
+	 * Create a fixed number of features of the city around a tour. The number
+	 * is split by the ratio of the densities.
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param features
+	 *            Number of features
+	 * @param listener
+	 *            The listener to receive the features
+	 * @return The number of features
+	 * @throws IOException
+	 *             If the listener could not write a feature
+	 */
+	public int createFeatures(Coordinate[] tour, int features,
+			Listener listener) throws IOException {
+		double total = this.localLandmarkDensity + this.globalLandmarkDensity
+				+ this.streetFurnitureDensity + this.intersectionDensity;
+		if (total == 0) {
+			return 0;
+		}
+		int localLandmarks = (int) (features * this.localLandmarkDensity / total);
+		int globalLandmarks = (int) (features * this.globalLandmarkDensity / total);
+		int streetFurniture = (int) (features * this.streetFurnitureDensity / total);
+		return createFeatures(tour, localLandmarks, globalLandmarks,
+				streetFurniture, features - localLandmarks - globalLandmarks
+						- streetFurniture, listener);
+	}
+
+	/**
+	 * Create the features of the city around a tour as feature file (see
+	 * <code>FeatureFormat</code>)
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param features
+	 *            Number of features or a negative number to use the densities
+	 * @return The feature file
+	 */
+	public FeatureFile createFeatureFile(Coordinate[] tour, int features) {
+		FeatureFileWriter writer = new FeatureFileWriter();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			if (features < 0) {
+				createFeatures(tour, createListener(writer));
+			} else {
+				createFeatures(tour, features, createListener(writer));
+			}
+			writer.write(out);
+			return new FeatureFile(ByteBuffer.wrap(out.toByteArray()));
+		} catch (IOException e) {
+			// Cannot happen in memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Create the features of the city. The streets run along the rows and
+	 * columns of the grid. Intersections are placed where they cross, all
+	 * other features inside the blocks.
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @param localLandmarks
+	 *            Number of local landmarks
+	 * @param globalLandmarks
+	 *            Number of global landmarks
+	 * @param streetFurniture
+	 *            Number of street furniture
+	 * @param intersections
+	 *            Number of intersections
+	 * @param listener
+	 *            The listener to receive the features
+	 * @return The number of features
+	 * @throws IOException
+	 *             If the listener could not write a feature
+	 */
+	private int createFeatures(Coordinate[] tour, int localLandmarks,
+			int globalLandmarks, int streetFurniture, int intersections,
+			Listener listener) throws IOException {
+		// Use another sequence of random numbers than the tour
+		Random random = new Random(~this.seed);
+		double blockLat = getBlockLatitude();
+		double blockLng = getBlockLongitude();
+		double[] bounds = getBounds(tour);
+		int rows = Math.max(1, (int) ((bounds[2] - bounds[0]) / blockLat));
+		int cols = Math.max(1, (int) ((bounds[3] - bounds[1]) / blockLng));
+		// Align the grid of the city with the streets of the tour
+		double minLat = CENTER_LAT
+				+ Math.floor((bounds[0] - CENTER_LAT) / blockLat) * blockLat;
+		double minLng = CENTER_LNG
+				+ Math.floor((bounds[1] - CENTER_LNG) / blockLng) * blockLng;
+
+		String[] landmarkCategories = LandmarkCategory.getCategories();
+		String[] streetFurnitureCategories = StreetFurnitureCategory
+				.getCategories();
+
+		for (int i = 0; i < localLandmarks; i++) {
+			listener.onLandmark(true, "Local landmark " + i, minLat
+					+ (random.nextInt(rows) + random.nextDouble()) * blockLat,
+					minLng + (random.nextInt(cols) + random.nextDouble())
+							* blockLng, 50 + random.nextInt(51),
+					landmarkCategories[random.nextInt(landmarkCategories.length)]);
+		}
+		for (int i = 0; i < globalLandmarks; i++) {
+			listener.onLandmark(false, "Global landmark " + i, minLat
+					+ (random.nextInt(rows) + random.nextDouble()) * blockLat,
+					minLng + (random.nextInt(cols) + random.nextDouble())
+							* blockLng, 200 + random.nextInt(301),
+					landmarkCategories[random.nextInt(landmarkCategories.length)]);
+		}
+		for (int i = 0; i < streetFurniture; i++) {
+			String category = streetFurnitureCategories[random
+					.nextInt(streetFurnitureCategories.length)];
+			// Only railway bridges are visible from further away
+			listener.onStreetFurniture(
+					minLat + (random.nextInt(rows) + random.nextDouble())
+							* blockLat,
+					minLng + (random.nextInt(cols) + random.nextDouble())
+							* blockLng,
+					category.equals(StreetFurnitureCategory.RAILWAY_BRIDGE) ? 50
+							: FeatureFormat.DEFAULT_RADIUS, category);
+		}
+		for (int i = 0; i < intersections; i++) {
+			listener.onIntersection(minLat + random.nextInt(rows + 1)
+					* blockLat, minLng + random.nextInt(cols + 1) * blockLng);
+		}
+		return localLandmarks + globalLandmarks + streetFurniture
+				+ intersections;
+	}
+
+	/**
+	 * Create a listener adding the features to a feature file
+	 * 
+	 * @param writer
+	 *            The writer of the feature file
+	 * @return The listener
+	 */
+	public static Listener createListener(final FeatureFileWriter writer) {
+		return new Listener() {
+
+			@Override
+			public void onLandmark(boolean local, String title, double lat,
+					double lng, int radius, String category) {
+				writer.addLandmark(local, title, lat, lng, radius, category);
+			}
+
+			@Override
+			public void onStreetFurniture(double lat, double lng, int radius,
+					String category) {
+				writer.addStreetFurniture(lat, lng, radius, category);
+			}
+
+			@Override
+			public void onIntersection(double lat, double lng) {
+				writer.addIntersection(lat, lng);
+			}
+		};
+	}
+
+	/**
+	 * Get the area of the city around a tour
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @return The area in square kilometers
+	 */
+	public double getArea(Coordinate[] tour) {
+		double[] bounds = getBounds(tour);
+		double height = (bounds[2] - bounds[0]) / getBlockLatitude()
+				* this.blockSize;
+		double width = (bounds[3] - bounds[1]) / getBlockLongitude()
+				* this.blockSize;
+		return height * width / 1000000;
+	}
+
+	/**
+	 * Get the bounds of the city: the bounding box of the tour extended by the
+	 * margin
+	 * 
+	 * @param tour
+	 *            The decision points
+	 * @return Minimum latitude, minimum longitude, maximum latitude and
+	 *         maximum longitude
+	 */
+	private double[] getBounds(Coordinate[] tour) {
+		double[] bounds = { Double.MAX_VALUE, Double.MAX_VALUE,
+				-Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (Coordinate c : tour) {
+			bounds[0] = Math.min(bounds[0], c.getLatitude());
+			bounds[1] = Math.min(bounds[1], c.getLongitude());
+			bounds[2] = Math.max(bounds[2], c.getLatitude());
+			bounds[3] = Math.max(bounds[3], c.getLongitude());
+		}
+		double marginLat = this.margin / this.blockSize * getBlockLatitude();
+		double marginLng = this.margin / this.blockSize * getBlockLongitude();
+		bounds[0] -= marginLat;
+		bounds[1] -= marginLng;
+		bounds[2] += marginLat;
+		bounds[3] += marginLng;
+		return bounds;
+	}
+
+	/**
+	 * @return The length of a block in degrees of latitude
+	 */
+	private double getBlockLatitude() {
+		return Math.toDegrees(this.blockSize / GeoMath.EARTH_RADIUS);
+	}
+
+	/**
+	 * @return The length of a block in degrees of longitude
+	 */
+	private double getBlockLongitude() {
+		return getBlockLatitude() / GeoMath.cosLatitude(CENTER_LAT);
+	}
+
+	/**
+	 * Get the maneuver type at a decision point from the angle between the
+	 * previous and the next link
+	 * 
+	 * @param previous
+	 *            The previous decision point
+	 * @param current
+	 *            The decision point
+	 * @param next
+	 *            The next decision point
+	 * @return The maneuver type
+	 */
+	private static int getManeuver(Coordinate previous, Coordinate current,
+			Coordinate next) {
+		double cosLat = GeoMath.cosLatitude(current.getLatitude());
+		double inLat = current.getLatitude() - previous.getLatitude();
+		double inLng = (current.getLongitude() - previous.getLongitude())
+				* cosLat;
+		double outLat = next.getLatitude() - current.getLatitude();
+		double outLng = (next.getLongitude() - current.getLongitude())
+				* cosLat;
+		// Positive angles turn to the left
+		double angle = Math.toDegrees(Math.atan2(inLng * outLat - inLat
+				* outLng, inLng * outLng + inLat * outLat));
+		if (angle > 135) {
+			return Maneuver.SHARP_LEFT;
+		} else if (angle > 45) {
+			return Maneuver.LEFT;
+		} else if (angle > 20) {
+			return Maneuver.SLIGHT_LEFT;
+		} else if (angle >= -20) {
+			return Maneuver.STRAIGHT;
+		} else if (angle >= -45) {
+			return Maneuver.SLIGHT_RIGHT;
+		} else if (angle >= -135) {
+			return Maneuver.RIGHT;
+		} else {
+			return Maneuver.SHARP_RIGHT;
+		}
+	}
+
+	/**
+	 * Listener writing the features in the format of the JSON files in
+	 * res/raw. The features arrive sorted by their kind, so the files are
+	 * written while the features are created.
+	 */
+	private static class JsonFeatureWriter implements Listener {
+
+		/**
+		 * Writer of the landmarks
+		 */
+		private final Writer landmarks;
+
+		/**
+		 * Writer of the street furniture
+		 */
+		private final Writer streetFurniture;
+
+		/**
+		 * Writer of the intersections
+		 */
+		private final Writer intersections;
+
+		/**
+		 * Name of the current array of landmarks ("local" or "global")
+		 */
+		private String landmarkArray;
+
+		/**
+		 * <code>TRUE</code> if no street furniture has been written yet
+		 */
+		private boolean firstStreetFurniture = true;
+
+		/**
+		 * <code>TRUE</code> if no intersection has been written yet
+		 */
+		private boolean firstIntersection = true;
+
+		/**
+		 * Constructor of the JsonFeatureWriter class
+		 * 
+		 * @param landmarks
+		 *            Writer of the landmarks
+		 * @param streetFurniture
+		 *            Writer of the street furniture
+		 * @param intersections
+		 *            Writer of the intersections
+		 * @throws IOException
+		 *             If the files could not be written
+		 */
+		private JsonFeatureWriter(Writer landmarks, Writer streetFurniture,
+				Writer intersections) throws IOException {
+			this.landmarks = landmarks;
+			this.streetFurniture = streetFurniture;
+			this.intersections = intersections;
+			landmarks.write("{");
+			streetFurniture.write("[");
+			intersections.write("[");
+		}
+
+		@Override
+		public void onLandmark(boolean local, String title, double lat,
+				double lng, int radius, String category) throws IOException {
+			String array = local ? "local" : "global";
+			if (!array.equals(this.landmarkArray)) {
+				this.landmarks.write((this.landmarkArray == null ? ""
+						: "\n\t],") + "\n\t\"" + array + "\": [\n");
+				this.landmarkArray = array;
+			} else {
+				this.landmarks.write(",\n");
+			}
+			this.landmarks.write(String.format(Locale.US,
+					"\t\t{\"title\": \"%s\", \"center\": {\"lat\": %.6f, "
+							+ "\"lng\": %.6f}, \"radius\": %d, "
+							+ "\"category\": \"%s\"}", title, lat, lng,
+					radius, category));
+		}
+
+		@Override
+		public void onStreetFurniture(double lat, double lng, int radius,
+				String category) throws IOException {
+			this.streetFurniture.write(this.firstStreetFurniture ? "\n"
+					: ",\n");
+			this.firstStreetFurniture = false;
+			this.streetFurniture.write(String.format(Locale.US,
+					"\t{\"center\": {\"lat\": %.6f, \"lng\": %.6f}, "
+							+ "\"category\": \"%s\"", lat, lng, category));
+			if (radius != FeatureFormat.DEFAULT_RADIUS) {
+				this.streetFurniture.write(", \"radius\": " + radius);
+			}
+			this.streetFurniture.write("}");
+		}
+
+		@Override
+		public void onIntersection(double lat, double lng) throws IOException {
+			this.intersections.write(this.firstIntersection ? "\n" : ",\n");
+			this.firstIntersection = false;
+			this.intersections.write(String.format(Locale.US,
+					"\t{\"lat\": %.6f, \"lng\": %.6f}", lat, lng));
+		}
+
+		/**
+		 * Finish the files
+		 * 
+		 * @throws IOException
+		 *             If the files could not be written
+		 */
+		private void finish() throws IOException {
+			this.landmarks.write(this.landmarkArray == null ? "\n}\n"
+					: "\n\t]\n}\n");
+			this.streetFurniture.write("\n]\n");
+			this.intersections.write("\n]\n");
+		}
+	}
+
+	/**
+	 * Create a city and write it into a directory
+	 * 
+	 * @param args
+	 *            Options and the output directory
+	 */
+	public static void main(String[] args) {
+		long seed = 4711;
+		int shapePoints = 1000;
+		int features = -1;
+		boolean json = false;
+		File directory = null;
+		CityGenerator generator;
+
+		try {
+			double blockSize = DEFAULT_BLOCK_SIZE;
+			double margin = DEFAULT_MARGIN;
+			String[] densities = null;
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-points")) {
+					shapePoints = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-block")) {
+					blockSize = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-margin")) {
+					margin = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-densities")) {
+					densities = args[++i].split(",");
+				} else if (args[i].equals("-features")) {
+					features = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-json")) {
+					json = true;
+				} else if (directory == null && !args[i].startsWith("-")) {
+					directory = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			if (directory == null) {
+				throw new IllegalArgumentException("No output directory");
+			}
+			generator = new CityGenerator(seed);
+			generator.setBlockSize(blockSize);
+			generator.setMargin(margin);
+			if (densities != null) {
+				generator.setDensities(Double.parseDouble(densities[0]),
+						Double.parseDouble(densities[1]),
+						Double.parseDouble(densities[2]),
+						Double.parseDouble(densities[3]));
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: CityGenerator [-seed n] [-points n] "
+					+ "[-block meters] [-margin meters] "
+					+ "[-densities local,global,furniture,intersections] "
+					+ "[-features n] [-json] <output directory>");
+			System.exit(1);
+			return;
+		}
+
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not create " + directory);
+			}
+			Coordinate[] tour = generator.createTour(Math.max(2, shapePoints
+					/ POINTS_PER_DECISION_POINT));
+
+			// Write the guidance
+			Writer guidance = new OutputStreamWriter(new BufferedOutputStream(
+					new FileOutputStream(new File(directory, "guidance.json"))),
+					"UTF-8");
+			try {
+				generator.writeGuidance(tour, shapePoints, guidance);
+			} finally {
+				guidance.close();
+			}
+
+			// Write the features
+			FeatureFileWriter writer = new FeatureFileWriter();
+			Listener listener = createListener(writer);
+			JsonFeatureWriter jsonWriter = null;
+			if (json) {
+				jsonWriter = new JsonFeatureWriter(open(directory,
+						"landmarks.json"), open(directory,
+						"streetfurniture.json"), open(directory,
+						"intersections.json"));
+				final Listener binaryListener = listener;
+				final JsonFeatureWriter jsonListener = jsonWriter;
+				listener = new Listener() {
+
+					@Override
+					public void onLandmark(boolean local, String title,
+							double lat, double lng, int radius, String category)
+							throws IOException {
+						binaryListener.onLandmark(local, title, lat, lng,
+								radius, category);
+						jsonListener.onLandmark(local, title, lat, lng,
+								radius, category);
+					}
+
+					@Override
+					public void onStreetFurniture(double lat, double lng,
+							int radius, String category) throws IOException {
+						binaryListener.onStreetFurniture(lat, lng, radius,
+								category);
+						jsonListener.onStreetFurniture(lat, lng, radius,
+								category);
+					}
+
+					@Override
+					public void onIntersection(double lat, double lng)
+							throws IOException {
+						binaryListener.onIntersection(lat, lng);
+						jsonListener.onIntersection(lat, lng);
+					}
+				};
+			}
+			int count;
+			try {
+				if (features < 0) {
+					count = generator.createFeatures(tour, listener);
+				} else {
+					count = generator.createFeatures(tour, features, listener);
+				}
+				if (jsonWriter != null) {
+					jsonWriter.finish();
+				}
+			} finally {
+				if (jsonWriter != null) {
+					jsonWriter.landmarks.close();
+					jsonWriter.streetFurniture.close();
+					jsonWriter.intersections.close();
+				}
+			}
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					new File(directory, "features.bin")));
+			try {
+				writer.write(out);
+			} finally {
+				out.close();
+			}
+
+			System.err.println(String.format(Locale.US,
+					"Shape points: %d, decision points: %d, features: %d, "
+							+ "area: %.2f km2", shapePoints, tour.length,
+					count, generator.getArea(tour)));
+		} catch (IOException e) {
+			System.err.println("Could not create the city. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Open a file of the output directory
+	 * 
+	 * @param directory
+	 *            The output directory
+	 * @param name
+	 *            Name of the file
+	 * @return The writer
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	private static Writer open(File directory, String name) throws IOException {
+		return new OutputStreamWriter(new BufferedOutputStream(
+				new FileOutputStream(new File(directory, name))), "UTF-8");
+	}
+}
@@ -0,0 +1,261 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import de.mrunde.bachelorthesis.io.FeatureFileWriter;
+import de.mrunde.bachelorthesis.io.FeatureFormat;
+import de.mrunde.bachelorthesis.io.JsonPullParser;
+
+/**
+ * The FeatureConverter converts the landmarks, street furniture and
+ * intersections from their JSON files into a binary feature file (see
+ * <code>FeatureFormat</code>). It runs at build time on a desktop JVM, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/FeatureConverter.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.tools.FeatureConverter \
+ *     res/raw/landmarks.json res/raw/streetfurniture.json \
+ *     res/raw/intersections.json res/raw/features.bin
+ * </pre>
+ * 
+ * The JSON files are read as UTF-8 just like the app did before. An optional
+ * fifth argument sets the size of the tiles in microdegrees (default:
+ * <code>FeatureFormat.DEFAULT_TILE_SIZE</code>). Larger tiles suit sparse
+ * country-scale data, smaller tiles dense city-scale data.
+ * 
+ * @author Marius Runde
+ */
+public class FeatureConverter {
+
+	/**
+	 * Convert the JSON files into a binary feature file
+	 * 
+	 * @param args
+	 *            Landmarks file, street furniture file, intersections file,
+	 *            output file and optionally the tile size
+	 */
+	public static void main(String[] args) {
+		if (args.length != 4 && args.length != 5) {
+			System.err.println("Usage: FeatureConverter <landmarks.json> "
+					+ "<streetfurniture.json> <intersections.json> <output> "
+					+ "[<tile size in microdegrees>]");
+			System.exit(1);
+		}
+
+		int tileSize = FeatureFormat.DEFAULT_TILE_SIZE;
+		if (args.length == 5) {
+			try {
+				tileSize = Integer.parseInt(args[4]);
+			} catch (NumberFormatException e) {
+				tileSize = 0;
+			}
+			if (tileSize <= 0) {
+				System.err.println("Invalid tile size: " + args[4]);
+				System.exit(1);
+			}
+		}
+
+		try {
+			FeatureFileWriter writer = new FeatureFileWriter(tileSize);
+			readLandmarks(args[0], writer);
+			readStreetFurniture(args[1], writer);
+			readIntersections(args[2], writer);
+
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					args[3]));
+			try {
+				writer.write(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Could not convert the features. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Read the local and global landmarks
+	 * 
+	 * @param file
+	 *            The landmarks file
+	 * @param writer
+	 *            The writer to add the landmarks to
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static void readLandmarks(String file, FeatureFileWriter writer)
+			throws IOException {
+		Reader reader = open(file);
+		try {
+			JsonPullParser parser = new JsonPullParser(reader);
+			parser.beginObject();
+			while (parser.hasNext()) {
+				String name = parser.nextName();
+				if (name.equals("local") || name.equals("global")) {
+					boolean local = name.equals("local");
+					parser.beginArray();
+					while (parser.hasNext()) {
+						String title = null;
+						String category = null;
+						double[] center = null;
+						int radius = 0;
+						parser.beginObject();
+						while (parser.hasNext()) {
+							String field = parser.nextName();
+							if (field.equals("title")) {
+								title = parser.nextString();
+							} else if (field.equals("center")) {
+								center = readLocation(parser);
+							} else if (field.equals("radius")) {
+								radius = parser.nextInt();
+							} else if (field.equals("category")) {
+								category = parser.nextString();
+							} else {
+								parser.skipValue();
+							}
+						}
+						parser.endObject();
+						if (center == null) {
+							throw new IOException("Landmark without center");
+						}
+						writer.addLandmark(local, title, center[0], center[1],
+								radius, category);
+					}
+					parser.endArray();
+				} else {
+					parser.skipValue();
+				}
+			}
+			parser.endObject();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read the street furniture
+	 * 
+	 * @param file
+	 *            The street furniture file
+	 * @param writer
+	 *            The writer to add the street furniture to
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static void readStreetFurniture(String file,
+			FeatureFileWriter writer) throws IOException {
+		Reader reader = open(file);
+		try {
+			JsonPullParser parser = new JsonPullParser(reader);
+			parser.beginArray();
+			while (parser.hasNext()) {
+				String category = null;
+				double[] center = null;
+				int radius = FeatureFormat.DEFAULT_RADIUS;
+				parser.beginObject();
+				while (parser.hasNext()) {
+					String field = parser.nextName();
+					if (field.equals("center")) {
+						center = readLocation(parser);
+					} else if (field.equals("radius")) {
+						radius = parser.nextInt();
+					} else if (field.equals("category")) {
+						category = parser.nextString();
+					} else {
+						parser.skipValue();
+					}
+				}
+				parser.endObject();
+				if (center == null) {
+					throw new IOException("Street furniture without center");
+				}
+				writer.addStreetFurniture(center[0], center[1], radius,
+						category);
+			}
+			parser.endArray();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read the intersections
+	 * 
+	 * @param file
+	 *            The intersections file
+	 * @param writer
+	 *            The writer to add the intersections to
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static void readIntersections(String file, FeatureFileWriter writer)
+			throws IOException {
+		Reader reader = open(file);
+		try {
+			JsonPullParser parser = new JsonPullParser(reader);
+			parser.beginArray();
+			while (parser.hasNext()) {
+				double[] location = readLocation(parser);
+				writer.addIntersection(location[0], location[1]);
+			}
+			parser.endArray();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read an object with the members "lat" and "lng"
+	 * 
+	 * @param parser
+	 *            Parser positioned at the object
+	 * @return Latitude and longitude
+	 * @throws IOException
+	 *             If the object could not be read
+	 */
+	private static double[] readLocation(JsonPullParser parser)
+			throws IOException {
+		double[] result = new double[2];
+		boolean hasLat = false;
+		boolean hasLng = false;
+		parser.beginObject();
+		while (parser.hasNext()) {
+			String field = parser.nextName();
+			if (field.equals("lat")) {
+				result[0] = parser.nextDouble();
+				hasLat = true;
+			} else if (field.equals("lng")) {
+				result[1] = parser.nextDouble();
+				hasLng = true;
+			} else {
+				parser.skipValue();
+			}
+		}
+		parser.endObject();
+		if (!hasLat || !hasLng) {
+			throw new IOException("Location without lat or lng");
+		}
+		return result;
+	}
+
+	/**
+	 * Open a JSON file
+	 * 
+	 * @param file
+	 *            The file
+	 * @return Reader of the file
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	private static Reader open(String file) throws IOException {
+		return new InputStreamReader(new FileInputStream(file), "UTF-8");
+	}
+}
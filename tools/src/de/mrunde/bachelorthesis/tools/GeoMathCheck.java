@@ -0,0 +1,488 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import de.mrunde.bachelorthesis.basics.GeoMath;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.io.FeatureFormat;
+
+/**
+ * The GeoMathCheck tool compares the distances of <code>GeoMath</code> with
+ * the distances the app calculated before, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/GeoMathCheck.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.tools.GeoMathCheck res/raw/features.bin
+ * </pre>
+ * 
+ * The locations are all pairs of features of the feature file and pairs of
+ * synthetic locations spread over the whole world. The following tolerances
+ * are checked:
+ * <ul>
+ * <li>The equirectangular approximation deviates at most 5 mm (city area of
+ * the feature file) or 2 cm (whole world up to 80 degrees latitude) from the
+ * haversine formula up to 300 m.</li>
+ * <li>The equirectangular approximation deviates at most 1.5 m (city area of
+ * the feature file) or 4 m (whole world) from
+ * <code>org.osmdroid.util.GeoPoint.distanceTo()</code> up to 300 m, which
+ * the landmark searches used before. osmdroid truncates to whole meters and
+ * converts to radians with float precision.</li>
+ * <li>The haversine formula deviates at most 0.25 % (city area) or 0.7 %
+ * (whole world) from the distances of
+ * <code>android.location.Location.distanceBetween()</code>, which the
+ * NaviActivity used before. The Earth is a sphere for the haversine formula
+ * and an ellipsoid for Android.</li>
+ * </ul>
+ * Both old functions need the Android runtime, so their calculations are
+ * reproduced here. The tool exits with status 1 if any tolerance is
+ * exceeded.
+ * 
+ * @author Marius Runde
+ */
+public class GeoMathCheck {
+
+	/**
+	 * Largest distance in meters for which the equirectangular approximation
+	 * is used
+	 */
+	private static final double SHORT_DISTANCE = 300;
+
+	/**
+	 * Largest distance in meters between two synthetic locations compared
+	 * with Android
+	 */
+	private static final double LONG_DISTANCE = 50000;
+
+	/**
+	 * Tolerance between the equirectangular approximation and the haversine
+	 * formula in the city area in meters
+	 */
+	private static final double HAVERSINE_CITY_TOLERANCE = 0.005;
+
+	/**
+	 * Tolerance between the equirectangular approximation and the haversine
+	 * formula in the whole world in meters
+	 */
+	private static final double HAVERSINE_WORLD_TOLERANCE = 0.02;
+
+	/**
+	 * Tolerance between the equirectangular approximation and osmdroid in the
+	 * city area in meters
+	 */
+	private static final double OSMDROID_CITY_TOLERANCE = 1.5;
+
+	/**
+	 * Tolerance between the equirectangular approximation and osmdroid in the
+	 * whole world in meters
+	 */
+	private static final double OSMDROID_WORLD_TOLERANCE = 4;
+
+	/**
+	 * Relative tolerance between the haversine formula and Android in the
+	 * city area
+	 */
+	private static final double ANDROID_CITY_TOLERANCE = 0.0025;
+
+	/**
+	 * Relative tolerance between the haversine formula and Android in the
+	 * whole world
+	 */
+	private static final double ANDROID_WORLD_TOLERANCE = 0.007;
+
+	/**
+	 * Semi-major axis of the WGS84 ellipsoid in meters (as used by Android)
+	 */
+	private static final double WGS84_A = 6378137.0;
+
+	/**
+	 * Semi-minor axis of the WGS84 ellipsoid in meters (as used by Android)
+	 */
+	private static final double WGS84_B = 6356752.3142;
+
+	/**
+	 * The Deviation class collects the largest deviation of one comparison
+	 * 
+	 * @author Marius Runde
+	 */
+	private static class Deviation {
+
+		/**
+		 * Description of the comparison
+		 */
+		private final String name;
+
+		/**
+		 * The allowed deviation
+		 */
+		private final double tolerance;
+
+		/**
+		 * Indicator whether the deviation is relative to the distance
+		 */
+		private final boolean relative;
+
+		/**
+		 * Number of compared distances
+		 */
+		private int count = 0;
+
+		/**
+		 * The largest deviation
+		 */
+		private double max = 0;
+
+		/**
+		 * Description of the locations with the largest deviation
+		 */
+		private String worst = "-";
+
+		/**
+		 * Constructor of the Deviation class
+		 * 
+		 * @param name
+		 *            Description of the comparison
+		 * @param tolerance
+		 *            The allowed deviation
+		 * @param relative
+		 *            <code>TRUE</code> if the deviation is relative to the
+		 *            distance
+		 */
+		public Deviation(String name, double tolerance, boolean relative) {
+			this.name = name;
+			this.tolerance = tolerance;
+			this.relative = relative;
+		}
+
+		/**
+		 * Compare a distance with the expected one
+		 * 
+		 * @param actual
+		 *            The distance of <code>GeoMath</code>
+		 * @param expected
+		 *            The distance calculated before
+		 * @param lat1
+		 *            Latitude of the first location
+		 * @param lng1
+		 *            Longitude of the first location
+		 * @param lat2
+		 *            Latitude of the second location
+		 * @param lng2
+		 *            Longitude of the second location
+		 */
+		public void add(double actual, double expected, double lat1,
+				double lng1, double lat2, double lng2) {
+			double deviation = Math.abs(actual - expected);
+			if (this.relative) {
+				// Very short distances are dominated by the rounding of
+				// Android's float result
+				if (expected < 1) {
+					return;
+				}
+				deviation /= expected;
+			}
+			this.count++;
+			if (deviation > this.max) {
+				this.max = deviation;
+				this.worst = String.format(Locale.US,
+						"(%.6f,%.6f) -> (%.6f,%.6f): %.4f instead of %.4f",
+						lat1, lng1, lat2, lng2, actual, expected);
+			}
+		}
+
+		/**
+		 * @return <code>TRUE</code> if the largest deviation is within the
+		 *         tolerance
+		 */
+		public boolean isWithinTolerance() {
+			return this.max <= this.tolerance;
+		}
+
+		@Override
+		public String toString() {
+			String unit = this.relative ? " %" : " m";
+			double factor = this.relative ? 100 : 1;
+			return String.format(Locale.US, "%-45s %7d pairs, max %.4f%s "
+					+ "(tolerance %.4f%s) %s%n\tworst %s", this.name,
+					this.count, this.max * factor, unit, this.tolerance
+							* factor, unit, isWithinTolerance() ? "OK"
+							: "FAILED", this.worst);
+		}
+	}
+
+	/**
+	 * Calculate a distance like <code>org.osmdroid.util.GeoPoint</code> does:
+	 * the coordinates are truncated to microdegrees and converted to radians
+	 * with float precision, the distance is calculated with the spherical law
+	 * of cosines and truncated to whole meters.
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location
+	 * @param lng1
+	 *            Longitude of the first location
+	 * @param lat2
+	 *            Latitude of the second location
+	 * @param lng2
+	 *            Longitude of the second location
+	 * @return The distance in whole meters
+	 */
+	private static int osmdroidDistance(double lat1, double lng1, double lat2,
+			double lng2) {
+		double a1 = 0.017453292f * (int) (lat1 * 1E6) / 1E6;
+		double a2 = 0.017453292f * (int) (lng1 * 1E6) / 1E6;
+		double b1 = 0.017453292f * (int) (lat2 * 1E6) / 1E6;
+		double b2 = 0.017453292f * (int) (lng2 * 1E6) / 1E6;
+
+		double cosA1 = Math.cos(a1);
+		double cosB1 = Math.cos(b1);
+		double t1 = cosA1 * Math.cos(a2) * cosB1 * Math.cos(b2);
+		double t2 = cosA1 * Math.sin(a2) * cosB1 * Math.sin(b2);
+		double t3 = Math.sin(a1) * Math.sin(b1);
+		double angle = Math.acos(Math.min(1, t1 + t2 + t3));
+
+		return (int) (GeoMath.EARTH_RADIUS * angle);
+	}
+
+	/**
+	 * Calculate a distance like
+	 * <code>android.location.Location.distanceBetween()</code> does: the
+	 * inverse formula of Vincenty on the WGS84 ellipsoid with at most 20
+	 * iterations and a float result
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location
+	 * @param lng1
+	 *            Longitude of the first location
+	 * @param lat2
+	 *            Latitude of the second location
+	 * @param lng2
+	 *            Longitude of the second location
+	 * @return The distance in meters
+	 */
+	private static float androidDistance(double lat1, double lng1,
+			double lat2, double lng2) {
+		double f = (WGS84_A - WGS84_B) / WGS84_A;
+		double aSqMinusBSqOverBSq = (WGS84_A * WGS84_A - WGS84_B * WGS84_B)
+				/ (WGS84_B * WGS84_B);
+
+		double l = Math.toRadians(lng2 - lng1);
+		double u1 = Math.atan((1.0 - f) * Math.tan(Math.toRadians(lat1)));
+		double u2 = Math.atan((1.0 - f) * Math.tan(Math.toRadians(lat2)));
+		double cosU1 = Math.cos(u1);
+		double cosU2 = Math.cos(u2);
+		double sinU1 = Math.sin(u1);
+		double sinU2 = Math.sin(u2);
+
+		double sigma = 0;
+		double sinSigma = 0;
+		double cosSigma = 0;
+		double cosSqAlpha = 0;
+		double cos2SM = 0;
+		double lambda = l;
+		for (int i = 0; i < 20; i++) {
+			double lambdaOrig = lambda;
+			double sinLambda = Math.sin(lambda);
+			double cosLambda = Math.cos(lambda);
+			double t1 = cosU2 * sinLambda;
+			double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+			sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+			cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+			sigma = Math.atan2(sinSigma, cosSigma);
+			double sinAlpha = sinSigma == 0 ? 0 : cosU1 * cosU2 * sinLambda
+					/ sinSigma;
+			cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+			cos2SM = cosSqAlpha == 0 ? 0 : cosSigma - 2.0 * sinU1 * sinU2
+					/ cosSqAlpha;
+			double c = f / 16.0 * cosSqAlpha
+					* (4.0 + f * (4.0 - 3.0 * cosSqAlpha));
+			lambda = l
+					+ (1.0 - c)
+					* f
+					* sinAlpha
+					* (sigma + c * sinSigma
+							* (cos2SM + c * cosSigma
+									* (-1.0 + 2.0 * cos2SM * cos2SM)));
+			if (Math.abs(lambda - lambdaOrig) < 1.0e-12) {
+				break;
+			}
+		}
+
+		double uSquared = cosSqAlpha * aSqMinusBSqOverBSq;
+		double a = 1 + uSquared / 16384.0
+				* (4096.0 + uSquared
+						* (-768 + uSquared * (320.0 - 175.0 * uSquared)));
+		double b = uSquared / 1024.0
+				* (256.0 + uSquared
+						* (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+		double deltaSigma = b
+				* sinSigma
+				* (cos2SM + b / 4.0
+						* (cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM) - b / 6.0
+								* cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma)
+								* (-3.0 + 4.0 * cos2SM * cos2SM)));
+		return (float) (WGS84_B * a * (sigma - deltaSigma));
+	}
+
+	/**
+	 * Compare the distances between two locations
+	 * 
+	 * @param lat1
+	 *            Latitude of the first location
+	 * @param lng1
+	 *            Longitude of the first location
+	 * @param lat2
+	 *            Latitude of the second location
+	 * @param lng2
+	 *            Longitude of the second location
+	 * @param haversine
+	 *            Deviations of the equirectangular approximation from the
+	 *            haversine formula
+	 * @param osmdroid
+	 *            Deviations of the equirectangular approximation from
+	 *            osmdroid
+	 * @param android
+	 *            Deviations of the haversine formula from Android
+	 */
+	private static void compare(double lat1, double lng1, double lat2,
+			double lng2, Deviation haversine, Deviation osmdroid,
+			Deviation android) {
+		double distance = GeoMath.haversine(lat1, lng1, lat2, lng2);
+		android.add(distance, androidDistance(lat1, lng1, lat2, lng2), lat1,
+				lng1, lat2, lng2);
+		if (distance <= SHORT_DISTANCE) {
+			// Route.distanceTo() uses the cosine of the shape point
+			double equirectangular = GeoMath.equirectangular(lat1, lng1,
+					lat2, lng2, GeoMath.cosLatitude(lat1));
+			haversine.add(equirectangular, distance, lat1, lng1, lat2, lng2);
+			osmdroid.add(equirectangular,
+					osmdroidDistance(lat1, lng1, lat2, lng2), lat1, lng1,
+					lat2, lng2);
+		}
+	}
+
+	/**
+	 * Read the locations of all features of a feature file
+	 * 
+	 * @param features
+	 *            The feature file
+	 * @return Latitude and longitude of each feature
+	 */
+	private static List<double[]> readLocations(FeatureFile features) {
+		int[] sizes = { features.getNumberOfLocalLandmarks(),
+				features.getNumberOfGlobalLandmarks(),
+				features.getNumberOfStreetFurniture(),
+				features.getNumberOfIntersections() };
+		List<double[]> result = new ArrayList<double[]>();
+		for (int section = 0; section < FeatureFormat.SECTIONS; section++) {
+			for (int i = 0; i < sizes[section]; i++) {
+				result.add(new double[] {
+						features.getLatitudeE6(section, i) / 1E6,
+						features.getLongitudeE6(section, i) / 1E6 });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compare the distances and print the largest deviations
+	 * 
+	 * @param args
+	 *            Options and the feature file
+	 */
+	public static void main(String[] args) {
+		long seed = 4711;
+		int points = 100000;
+		File file = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-points")) {
+					points = Integer.parseInt(args[++i]);
+				} else if (file == null && !args[i].startsWith("-")) {
+					file = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			if (file == null) {
+				throw new IllegalArgumentException("No feature file");
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: GeoMathCheck [-seed n] [-points n] "
+					+ "<features.bin>");
+			System.exit(1);
+			return;
+		}
+
+		List<double[]> locations;
+		try {
+			locations = readLocations(FeatureFile.map(file));
+		} catch (IOException e) {
+			System.err.println("Could not read the features. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		// Compare all pairs of features
+		Deviation[] city = {
+				new Deviation("City: equirectangular vs. haversine",
+						HAVERSINE_CITY_TOLERANCE, false),
+				new Deviation("City: equirectangular vs. osmdroid",
+						OSMDROID_CITY_TOLERANCE, false),
+				new Deviation("City: haversine vs. Android",
+						ANDROID_CITY_TOLERANCE, true) };
+		for (int i = 0; i < locations.size(); i++) {
+			for (int j = 0; j < locations.size(); j++) {
+				if (i != j) {
+					double[] from = locations.get(i);
+					double[] to = locations.get(j);
+					compare(from[0], from[1], to[0], to[1], city[0], city[1],
+							city[2]);
+				}
+			}
+		}
+
+		// Compare synthetic locations in the whole world. Half of them are
+		// close to each other.
+		Deviation[] world = {
+				new Deviation("World: equirectangular vs. haversine",
+						HAVERSINE_WORLD_TOLERANCE, false),
+				new Deviation("World: equirectangular vs. osmdroid",
+						OSMDROID_WORLD_TOLERANCE, false),
+				new Deviation("World: haversine vs. Android",
+						ANDROID_WORLD_TOLERANCE, true) };
+		Random random = new Random(seed);
+		for (int i = 0; i < points; i++) {
+			double lat = random.nextDouble() * 160 - 80;
+			double lng = random.nextDouble() * 360 - 180;
+			double distance = random.nextDouble()
+					* (i % 2 == 0 ? SHORT_DISTANCE : LONG_DISTANCE);
+			double bearing = random.nextDouble() * 2 * Math.PI;
+			double toLat = lat + distance * Math.cos(bearing)
+					/ GeoMath.METERS_PER_DEGREE;
+			double toLng = lng + distance * Math.sin(bearing)
+					/ (GeoMath.METERS_PER_DEGREE * GeoMath.cosLatitude(lat));
+			compare(lat, lng, toLat, toLng, world[0], world[1], world[2]);
+		}
+
+		boolean successful = true;
+		for (Deviation deviation : city) {
+			System.out.println(deviation.toString());
+			successful &= deviation.isWithinTolerance();
+		}
+		for (Deviation deviation : world) {
+			System.out.println(deviation.toString());
+			successful &= deviation.isWithinTolerance();
+		}
+		if (!successful) {
+			System.err.println("Tolerance exceeded");
+			System.exit(1);
+		}
+	}
+}
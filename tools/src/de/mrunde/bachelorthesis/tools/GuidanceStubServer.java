@@ -0,0 +1,475 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.io.HttpDownloader;
+
+/**
+ * The GuidanceStubServer is a minimal local HTTP/1.1 server answering every
+ * request with the same guidance file, so that the downloads of the guidance
+ * can be tested without the MapQuest API. It supports keep-alive connections
+ * and gzip compression and can delay its responses to test the timeouts.
+ * With <code>-requests</code> it downloads the guidance repeatedly with the
+ * <code>HttpDownloader</code> and reports the connections, bytes and latency,
+ * e.g.:
+ * 
+ * <pre>
+ * GuidanceStubServer -requests 50 guidance.json
+ * GuidanceStubServer -requests 5 -delay 500 -timeout 200 guidance.json
+ * GuidanceStubServer -port 8080 guidance.json
+ * </pre>
+ * 
+ * Without <code>-requests</code> the server runs until it is stopped.
+ * 
+ * @author Marius Runde
+ */
+public class GuidanceStubServer implements Runnable {
+
+	/**
+	 * Path of the guidance on the server
+	 */
+	public static final String PATH = "/guidance/v1/route";
+
+	/**
+	 * The socket accepting the connections
+	 */
+	private final ServerSocket serverSocket;
+
+	/**
+	 * The uncompressed guidance
+	 */
+	private final byte[] body;
+
+	/**
+	 * The guidance compressed with gzip
+	 */
+	private final byte[] compressedBody;
+
+	/**
+	 * Delay of each response in milliseconds
+	 */
+	private volatile long delay = 0;
+
+	/**
+	 * Indicator whether responses are compressed if the client accepts it
+	 */
+	private volatile boolean gzip = true;
+
+	/**
+	 * Number of accepted connections
+	 */
+	private int connections = 0;
+
+	/**
+	 * Number of answered requests
+	 */
+	private int requests = 0;
+
+	/**
+	 * Number of sent bytes of the bodies
+	 */
+	private long bytesSent = 0;
+
+	/**
+	 * Constructor of the GuidanceStubServer class. The server is started with
+	 * <code>start()</code>.
+	 * 
+	 * @param port
+	 *            Port of the server or 0 to use any free port
+	 * @param body
+	 *            The guidance
+	 * @throws IOException
+	 *             If the port could not be opened
+	 */
+	public GuidanceStubServer(int port, byte[] body) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50,
+				InetAddress.getByName("127.0.0.1"));
+		this.body = body;
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(compressed);
+		out.write(body);
+		out.close();
+		this.compressedBody = compressed.toByteArray();
+	}
+
+	/**
+	 * Set the delay of each response
+	 * 
+	 * @param delay
+	 *            Delay in milliseconds
+	 */
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * Set whether responses are compressed if the client accepts it
+	 * 
+	 * @param gzip
+	 *            <code>TRUE</code> to compress the responses
+	 */
+	public void setGzip(boolean gzip) {
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @return The port of the server
+	 */
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return The URL of the guidance
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + getPort() + PATH;
+	}
+
+	/**
+	 * Start accepting connections in a background thread
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "GuidanceStubServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop accepting connections
+	 * 
+	 * @throws IOException
+	 *             If the socket could not be closed
+	 */
+	public void close() throws IOException {
+		this.serverSocket.close();
+	}
+
+	@Override
+	public void run() {
+		while (!this.serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (IOException e) {
+				// The server has been closed
+				return;
+			}
+			synchronized (this) {
+				this.connections++;
+			}
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						handle(socket);
+					} catch (IOException e) {
+						// The client has closed the connection
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// Nothing to do
+						}
+					}
+				}
+			}, "GuidanceStubServer connection");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Answer the requests of a connection until the client closes it
+	 * 
+	 * @param socket
+	 *            The connection
+	 * @throws IOException
+	 *             If the connection failed
+	 */
+	private void handle(Socket socket) throws IOException {
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		// Write the header and body at once, so that the response is not
+		// delayed by the acknowledgements of the client
+		OutputStream out = new BufferedOutputStream(socket.getOutputStream(),
+				this.body.length + 1024);
+		while (true) {
+			// Read the request line and the headers
+			String requestLine = readLine(in);
+			if (requestLine == null) {
+				return;
+			}
+			boolean acceptsGzip = false;
+			boolean close = false;
+			String header;
+			while ((header = readLine(in)) != null && header.length() > 0) {
+				String lower = header.toLowerCase(Locale.US);
+				if (lower.startsWith("accept-encoding:")
+						&& lower.contains("gzip")) {
+					acceptsGzip = true;
+				} else if (lower.startsWith("connection:")
+						&& lower.contains("close")) {
+					close = true;
+				}
+			}
+
+			if (this.delay > 0) {
+				try {
+					Thread.sleep(this.delay);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+
+			// Write the response
+			String[] request = requestLine.split(" ");
+			boolean found = request.length >= 2
+					&& request[1].startsWith(PATH);
+			boolean compressed = found && acceptsGzip && this.gzip;
+			byte[] content = found ? (compressed ? this.compressedBody
+					: this.body) : "Not found".getBytes("US-ASCII");
+			StringBuilder response = new StringBuilder();
+			response.append(found ? "HTTP/1.1 200 OK\r\n"
+					: "HTTP/1.1 404 Not Found\r\n");
+			response.append("Content-Type: application/json\r\n");
+			if (compressed) {
+				response.append("Content-Encoding: gzip\r\n");
+			}
+			response.append("Content-Length: ").append(content.length)
+					.append("\r\n");
+			if (close) {
+				response.append("Connection: close\r\n");
+			}
+			response.append("\r\n");
+			out.write(response.toString().getBytes("US-ASCII"));
+			out.write(content);
+			out.flush();
+			synchronized (this) {
+				this.requests++;
+				this.bytesSent += content.length;
+			}
+			if (close) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Read a line of the request
+	 * 
+	 * @param in
+	 *            The request
+	 * @return The line without the line break or <code>null</code> at the end
+	 *         of the stream
+	 * @throws IOException
+	 *             If the request could not be read
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			line.append((char) c);
+		}
+		return line.length() > 0 ? line.toString() : null;
+	}
+
+	/**
+	 * @return The number of accepted connections
+	 */
+	public synchronized int getConnections() {
+		return this.connections;
+	}
+
+	/**
+	 * @return The number of answered requests
+	 */
+	public synchronized int getRequests() {
+		return this.requests;
+	}
+
+	/**
+	 * @return The number of sent bytes of the bodies
+	 */
+	public synchronized long getBytesSent() {
+		return this.bytesSent;
+	}
+
+	/**
+	 * Start the server and optionally download the guidance from it
+	 * 
+	 * @param args
+	 *            Options and the guidance file
+	 */
+	public static void main(String[] args) {
+		int port = 0;
+		long delay = 0;
+		boolean gzip = true;
+		int numberOfRequests = 0;
+		int connectTimeout = HttpDownloader.DEFAULT_CONNECT_TIMEOUT;
+		int readTimeout = HttpDownloader.DEFAULT_READ_TIMEOUT;
+		List<String> files = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-delay")) {
+					delay = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-nogzip")) {
+					gzip = false;
+				} else if (args[i].equals("-requests")) {
+					numberOfRequests = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-connecttimeout")) {
+					connectTimeout = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-timeout")) {
+					readTimeout = Integer.parseInt(args[++i]);
+				} else if (!args[i].startsWith("-")) {
+					files.add(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			if (files.size() != 1) {
+				throw new IllegalArgumentException("Wrong number of files");
+			}
+			if (port < 0 || delay < 0 || numberOfRequests < 0) {
+				throw new IllegalArgumentException("Invalid option");
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: GuidanceStubServer [-port n] "
+					+ "[-delay ms] [-nogzip] [-requests n] "
+					+ "[-connecttimeout ms] [-timeout ms] <guidance.json>");
+			System.exit(1);
+			return;
+		}
+
+		try {
+			GuidanceStubServer server = new GuidanceStubServer(port,
+					readFile(new File(files.get(0))));
+			server.setDelay(delay);
+			server.setGzip(gzip);
+			server.start();
+			System.out.println("Serving " + files.get(0) + " at "
+					+ server.getUrl());
+
+			if (numberOfRequests == 0) {
+				// Run until the process is stopped
+				Thread.sleep(Long.MAX_VALUE);
+			}
+			download(server, numberOfRequests, new HttpDownloader(
+					connectTimeout, readTimeout));
+			server.close();
+		} catch (Exception e) {
+			System.err.println("Could not run the server. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Download the guidance repeatedly and print the results
+	 * 
+	 * @param server
+	 *            The server
+	 * @param numberOfRequests
+	 *            Number of downloads
+	 * @param downloader
+	 *            The downloader
+	 */
+	private static void download(GuidanceStubServer server,
+			int numberOfRequests, HttpDownloader downloader) {
+		HttpDownloader.ResponseHandler<Route> handler = new HttpDownloader.ResponseHandler<Route>() {
+
+			@Override
+			public Route handleResponse(InputStream in) throws IOException {
+				return new Route(in);
+			}
+		};
+
+		double[] latencies = new double[numberOfRequests];
+		int failures = 0;
+		for (int i = 0; i < numberOfRequests; i++) {
+			long start = System.nanoTime();
+			try {
+				Route route = downloader.get(server.getUrl(), handler);
+				if (!route.isImportSuccessful()) {
+					failures++;
+				}
+			} catch (IOException e) {
+				if (failures == 0) {
+					System.out.println("Download failed: " + e);
+				}
+				failures++;
+			}
+			latencies[i] = (System.nanoTime() - start) / 1E6;
+		}
+		Arrays.sort(latencies);
+		double sum = 0;
+		for (int i = 0; i < latencies.length; i++) {
+			sum += latencies[i];
+		}
+
+		System.out.println("Requests:    " + numberOfRequests + " ("
+				+ failures + " failed, "
+				+ downloader.getCompressedResponses() + " compressed)");
+		System.out.println("Connections: " + server.getConnections());
+		System.out.println(String.format(Locale.US,
+				"Bytes:       %d sent, %d per response (%d uncompressed)",
+				server.getBytesSent(),
+				server.getRequests() == 0 ? 0 : server.getBytesSent()
+						/ server.getRequests(), server.body.length));
+		System.out.println(String.format(Locale.US,
+				"Latency:     mean %.2f ms, p50 %.2f ms, max %.2f ms", sum
+						/ latencies.length,
+				latencies[latencies.length / 2],
+				latencies[latencies.length - 1]));
+	}
+
+	/**
+	 * Read a file completely
+	 * 
+	 * @param file
+	 *            The file
+	 * @return The content
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static byte[] readFile(File file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				out.write(buffer, 0, length);
+			}
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,175 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.mrunde.bachelorthesis.basics.Maneuver;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.instructions.Instruction;
+import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
+import de.mrunde.bachelorthesis.instructions.LandmarkInstruction;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+import de.mrunde.bachelorthesis.io.FeatureFileWriter;
+
+/**
+ * The RouteStartCheck tool checks the instructions of a route whose first
+ * segment is a turn at the very first shape point, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/RouteStartCheck.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.tools.RouteStartCheck
+ * </pre>
+ * 
+ * The route leads east from its start and turns north at the next shape
+ * point. A local landmark lies next to the start, once on the left (north)
+ * and once on the right (south) of the first link. There is no shape point
+ * before the start, so the side of the landmark has to be taken from the
+ * first link. The tool exits with status 1 if the instructions could not be
+ * created or the landmark is on the wrong side.
+ * 
+ * @author Marius Runde
+ */
+public class RouteStartCheck {
+
+	/**
+	 * Latitude of the start of the route
+	 */
+	private static final double START_LAT = 51.96;
+
+	/**
+	 * Longitude of the start of the route
+	 */
+	private static final double START_LNG = 7.62;
+
+	/**
+	 * Distance of the landmark from the start in degrees of latitude (about
+	 * 20 m)
+	 */
+	private static final double LANDMARK_OFFSET = 0.00018;
+
+	/**
+	 * Radius of visibility of the landmark in meters
+	 */
+	private static final int LANDMARK_RADIUS = 50;
+
+	/**
+	 * Title of the landmark
+	 */
+	private static final String LANDMARK_TITLE = "Start Landmark";
+
+	/**
+	 * The guidance of the route in the format of the MapQuest API. The first
+	 * maneuver is at the first shape point.
+	 */
+	private static final String GUIDANCE = "{\"guidance\":{"
+			+ "\"GuidanceNodeCollection\":["
+			+ "{\"maneuverType\":" + Maneuver.LEFT + ",\"linkIds\":[0]},"
+			+ "{\"maneuverType\":" + Maneuver.LEFT + ",\"linkIds\":[1]},"
+			+ "{\"maneuverType\":" + Maneuver.DESTINATION
+			+ ",\"linkIds\":[2]}],"
+			+ "\"shapePoints\":[51.96,7.62,51.96,7.625,51.965,7.625],"
+			+ "\"GuidanceLinkCollection\":["
+			+ "{\"length\":0,\"shapeIndex\":0},"
+			+ "{\"length\":0.343,\"shapeIndex\":1},"
+			+ "{\"length\":0.556,\"shapeIndex\":2}]}}";
+
+	/**
+	 * Run the check
+	 * 
+	 * @param args
+	 *            No arguments
+	 */
+	public static void main(String[] args) {
+		if (args.length > 0) {
+			System.err.println("Usage: RouteStartCheck");
+			System.exit(1);
+			return;
+		}
+
+		boolean successful;
+		try {
+			successful = check(true) & check(false);
+		} catch (IOException e) {
+			System.err.println("Could not create the route. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (!successful) {
+			System.err.println("Check failed");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Create the instructions of the route with a landmark next to the start
+	 * and check the side of the landmark
+	 * 
+	 * @param left
+	 *            Indicator whether the landmark is on the left of the first
+	 *            link
+	 * @return <code>TRUE</code> if the landmark is on the expected side
+	 * @throws IOException
+	 *             If the route or the features could not be created
+	 */
+	private static boolean check(boolean left) throws IOException {
+		String side = left ? "left" : "right";
+		Route route = new Route(new ByteArrayInputStream(
+				GUIDANCE.getBytes("UTF-8")));
+		InstructionManager im = new InstructionManager(route,
+				createFeatures(left));
+		if (!im.isImportSuccessful()) {
+			System.out.println("Landmark on the " + side
+					+ ": import not successful");
+			return false;
+		}
+
+		InstructionPlan plan;
+		try {
+			plan = im.createPlan();
+		} catch (RuntimeException e) {
+			System.out.println("Landmark on the " + side + ": " + e);
+			return false;
+		}
+		for (int i = 0; i < plan.getNumberOfInstructions(); i++) {
+			Instruction instruction = plan.getInstruction(i);
+			if (instruction instanceof LandmarkInstruction
+					&& ((LandmarkInstruction) instruction).getLocal()
+							.getTitle().equals(LANDMARK_TITLE)) {
+				boolean correct = ((LandmarkInstruction) instruction)
+						.getLeftTurn() == left;
+				System.out.println("Landmark on the " + side + ": \""
+						+ instruction + "\""
+						+ (correct ? "" : " (wrong side)"));
+				return correct;
+			}
+		}
+		System.out.println("Landmark on the " + side
+				+ ": no landmark instruction");
+		return false;
+	}
+
+	/**
+	 * Create a feature file with a local landmark next to the start of the
+	 * route
+	 * 
+	 * @param left
+	 *            Indicator whether the landmark is on the left (north) or
+	 *            right (south) of the first link
+	 * @return The feature file
+	 * @throws IOException
+	 *             If the feature file could not be created
+	 */
+	private static FeatureFile createFeatures(boolean left) throws IOException {
+		FeatureFileWriter writer = new FeatureFileWriter();
+		writer.addLandmark(true, LANDMARK_TITLE, START_LAT
+				+ (left ? LANDMARK_OFFSET : -LANDMARK_OFFSET), START_LNG,
+				LANDMARK_RADIUS, "restaurant");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out);
+		return new FeatureFile(ByteBuffer.wrap(out.toByteArray()));
+	}
+}
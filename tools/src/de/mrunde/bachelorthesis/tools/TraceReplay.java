@@ -0,0 +1,618 @@
+package de.mrunde.bachelorthesis.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import de.mrunde.bachelorthesis.basics.Coordinate;
+import de.mrunde.bachelorthesis.basics.GeoMath;
+import de.mrunde.bachelorthesis.basics.Route;
+import de.mrunde.bachelorthesis.instructions.DecisionPointTracker;
+import de.mrunde.bachelorthesis.instructions.InstructionManager;
+import de.mrunde.bachelorthesis.instructions.InstructionPlan;
+import de.mrunde.bachelorthesis.instructions.NavigationCursor;
+import de.mrunde.bachelorthesis.io.FeatureFile;
+
+/**
+ * The TraceReplay tool feeds a GPS trace into the
+ * <code>DecisionPointTracker</code> like the location updates of
+ * <code>NaviActivity</code>, e.g.:
+ * 
+ * <pre>
+ * javac -d tools/bin -sourcepath src:tools/src tools/src/de/mrunde/bachelorthesis/tools/TraceReplay.java
+ * java -cp tools/bin de.mrunde.bachelorthesis.tools.TraceReplay \
+ *     -repeat 100 city/guidance.json city/features.bin trace.gpx
+ * </pre>
+ * 
+ * The trace is read from a GPX file (track points with time) or a CSV file
+ * (time in seconds, latitude, longitude per line). Without a trace a
+ * synthetic one is driven along the route, optionally with a wrong turn at a
+ * decision point. By default the fixes are replayed as fast as possible,
+ * -speedup replays them at a multiple of their recorded speed.
+ * 
+ * The report contains the processing time of each fix, the fixes at which the
+ * instructions switched and the fixes at which the guidance would have been
+ * updated. The tool cannot request a new route, so after such a reroute
+ * trigger the tracker is reset and follows the old route again.
+ * 
+ * @author Marius Runde
+ */
+public class TraceReplay {
+
+	/**
+	 * Default speed of a synthetic trace in meters per second (50 km/h)
+	 */
+	private static final double DEFAULT_SPEED = 13.9;
+
+	/**
+	 * Default interval between the fixes of a synthetic trace in milliseconds
+	 */
+	private static final long DEFAULT_INTERVAL = 1000;
+
+	/**
+	 * Default standard deviation of the GPS error of a synthetic trace in
+	 * meters
+	 */
+	private static final double DEFAULT_NOISE = 5;
+
+	/**
+	 * Length of the wrong way of a synthetic trace in meters
+	 */
+	private static final double WRONG_TURN_LENGTH = 300;
+
+	/**
+	 * A single location fix of a trace
+	 */
+	private static class Fix {
+
+		/**
+		 * Time of the fix in milliseconds since the start of the trace
+		 */
+		private final long time;
+
+		/**
+		 * Latitude
+		 */
+		private final double lat;
+
+		/**
+		 * Longitude
+		 */
+		private final double lng;
+
+		/**
+		 * Constructor of the Fix class
+		 * 
+		 * @param time
+		 *            Time of the fix in milliseconds
+		 * @param lat
+		 *            Latitude
+		 * @param lng
+		 *            Longitude
+		 */
+		private Fix(long time, double lat, double lng) {
+			this.time = time;
+			this.lat = lat;
+			this.lng = lng;
+		}
+	}
+
+	/**
+	 * Replay a trace
+	 * 
+	 * @param args
+	 *            Options, guidance file, feature file and optionally the trace
+	 */
+	public static void main(String[] args) {
+		int repeat = 1;
+		double speedup = 0;
+		boolean verbose = false;
+		double speed = DEFAULT_SPEED;
+		long interval = DEFAULT_INTERVAL;
+		double noise = DEFAULT_NOISE;
+		long seed = 4711;
+		int wrongTurn = -1;
+		String csv = null;
+		List<String> files = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-repeat")) {
+					repeat = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-speedup")) {
+					speedup = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-v")) {
+					verbose = true;
+				} else if (args[i].equals("-speed")) {
+					speed = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-interval")) {
+					interval = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-noise")) {
+					noise = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-wrongturn")) {
+					wrongTurn = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-csv")) {
+					csv = args[++i];
+				} else if (!args[i].startsWith("-")) {
+					files.add(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			if (files.size() != 2 && files.size() != 3) {
+				throw new IllegalArgumentException("Wrong number of files");
+			}
+			if (repeat < 1 || speed <= 0 || interval <= 0) {
+				throw new IllegalArgumentException("Invalid option");
+			}
+		} catch (RuntimeException e) {
+			System.err.println("Usage: TraceReplay [-repeat n] [-speedup x] "
+					+ "[-v] [-speed m/s] [-interval ms] [-noise m] [-seed n] "
+					+ "[-wrongturn instruction] [-csv synthetic.csv] "
+					+ "<guidance.json> <features.bin> [<trace.gpx|trace.csv>]");
+			System.exit(1);
+			return;
+		}
+
+		try {
+			// Create the instruction plan
+			Route route = readRoute(files.get(0));
+			InstructionPlan plan = new InstructionManager(route,
+					FeatureFile.map(new File(files.get(1)))).createPlan();
+
+			// Read or create the trace
+			Fix[] trace;
+			if (files.size() == 3) {
+				String file = files.get(2);
+				if (file.toLowerCase(Locale.US).endsWith(".gpx")) {
+					trace = readGpx(file);
+				} else {
+					trace = readCsv(file);
+				}
+			} else {
+				trace = createTrace(route, plan, speed, interval, noise, seed,
+						wrongTurn);
+				if (csv != null) {
+					writeCsv(trace, csv);
+				}
+			}
+			if (trace.length == 0) {
+				throw new IOException("The trace is empty");
+			}
+
+			System.out.println("Route: " + route.getNumberOfShapePoints()
+					+ " shape points, " + plan.getNumberOfInstructions()
+					+ " instructions");
+			System.out.println("Trace: " + trace.length + " fixes, "
+					+ (trace[trace.length - 1].time - trace[0].time) / 1000
+					+ " s");
+			replay(plan, trace, repeat, speedup, verbose);
+		} catch (IOException e) {
+			System.err.println("Could not replay the trace. This is the error message: "
+					+ e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Replay the trace and print the report
+	 * 
+	 * @param plan
+	 *            The instruction plan
+	 * @param trace
+	 *            The trace
+	 * @param repeat
+	 *            How often the trace is replayed
+	 * @param speedup
+	 *            Multiple of the recorded speed or 0 to replay the fixes as
+	 *            fast as possible
+	 * @param verbose
+	 *            <code>TRUE</code> to print every event of the first replay
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting for the
+	 *             next fix
+	 */
+	private static void replay(InstructionPlan plan, Fix[] trace, int repeat,
+			double speedup, boolean verbose) throws InterruptedException {
+		long[] latencies = new long[trace.length * repeat];
+		int[] events = new int[5];
+		double sumSwitchDistance = 0;
+		double maxSwitchDistance = 0;
+		int reroutes = 0;
+		long start = System.nanoTime();
+
+		for (int r = 0; r < repeat; r++) {
+			NavigationCursor cursor = new NavigationCursor(plan);
+			DecisionPointTracker tracker = new DecisionPointTracker(cursor);
+			long replayStart = System.nanoTime();
+			for (int i = 0; i < trace.length; i++) {
+				Fix fix = trace[i];
+				if (speedup > 0) {
+					// Wait until the fix is due
+					long due = replayStart
+							+ (long) ((fix.time - trace[0].time) * 1000000 / speedup);
+					long wait = due - System.nanoTime();
+					if (wait > 0) {
+						Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+					}
+				}
+
+				Coordinate decisionPoint = cursor.getCurrentInstruction()
+						.getDecisionPoint();
+				int instruction = cursor.getIndex();
+				long before = System.nanoTime();
+				int result = tracker.onLocationChanged(fix.lat, fix.lng);
+				latencies[r * trace.length + i] = System.nanoTime() - before;
+
+				if (r > 0 || result == DecisionPointTracker.NONE) {
+					continue;
+				}
+				events[result]++;
+				double distance = GeoMath.haversine(fix.lat, fix.lng,
+						decisionPoint.getLatitude(),
+						decisionPoint.getLongitude());
+				String event;
+				switch (result) {
+				case DecisionPointTracker.NEXT_INSTRUCTION:
+					event = "next instruction " + cursor.getIndex();
+					sumSwitchDistance += distance;
+					maxSwitchDistance = Math.max(maxSwitchDistance, distance);
+					break;
+				case DecisionPointTracker.NOW_INSTRUCTION:
+					event = "now instruction " + instruction;
+					break;
+				case DecisionPointTracker.UPDATE_GUIDANCE:
+					event = "reroute trigger at instruction " + instruction;
+					reroutes++;
+					tracker.reset();
+					break;
+				default:
+					event = "destination reached";
+					break;
+				}
+				if (verbose || result == DecisionPointTracker.UPDATE_GUIDANCE) {
+					System.out.println(String.format(Locale.US,
+							"  fix %6d  %8.1f s  %-40s %7.1f m to %.6f,%.6f",
+							i, (fix.time - trace[0].time) / 1000.0, event,
+							distance, decisionPoint.getLatitude(),
+							decisionPoint.getLongitude()));
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1E9;
+
+		// --- Print the report ---
+		Arrays.sort(latencies);
+		long sum = 0;
+		for (long latency : latencies) {
+			sum += latency;
+		}
+		System.out.println(String.format(Locale.US,
+				"Replayed %d fixes in %.3f s (%.0f fixes/s)", latencies.length,
+				seconds, latencies.length / seconds));
+		System.out.println(String.format(Locale.US,
+				"Latency per fix: mean %.2f us, p50 %.2f us, p99 %.2f us, "
+						+ "max %.2f us", sum / 1000.0 / latencies.length,
+				percentile(latencies, 50) / 1000.0,
+				percentile(latencies, 99) / 1000.0,
+				latencies[latencies.length - 1] / 1000.0));
+		System.out.println(String.format(Locale.US,
+				"Instruction switches: %d (distance to the decision point: "
+						+ "mean %.1f m, max %.1f m), now instructions: %d",
+				events[DecisionPointTracker.NEXT_INSTRUCTION],
+				events[DecisionPointTracker.NEXT_INSTRUCTION] == 0 ? 0
+						: sumSwitchDistance
+								/ events[DecisionPointTracker.NEXT_INSTRUCTION],
+				maxSwitchDistance, events[DecisionPointTracker.NOW_INSTRUCTION]));
+		System.out.println("Reroute triggers: " + reroutes
+				+ ", destination reached: "
+				+ (events[DecisionPointTracker.DESTINATION_REACHED] > 0));
+		// --- End of print the report ---
+	}
+
+	/**
+	 * Get a percentile of sorted values
+	 * 
+	 * @param sorted
+	 *            The sorted values
+	 * @param percent
+	 *            The percentile
+	 * @return The value
+	 */
+	private static long percentile(long[] sorted, int percent) {
+		int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	/**
+	 * Drive a synthetic trace along the route
+	 * 
+	 * @param route
+	 *            The route
+	 * @param plan
+	 *            The instruction plan of the route
+	 * @param speed
+	 *            Speed in meters per second
+	 * @param interval
+	 *            Interval between the fixes in milliseconds
+	 * @param noise
+	 *            Standard deviation of the GPS error in meters
+	 * @param seed
+	 *            Seed of the random generator of the GPS error
+	 * @param wrongTurn
+	 *            Index of the instruction whose decision point is passed
+	 *            going straight on for a while before turning back, or -1
+	 * @return The trace
+	 */
+	private static Fix[] createTrace(Route route, InstructionPlan plan,
+			double speed, long interval, double noise, long seed,
+			int wrongTurn) {
+		// Create the way along the shape points
+		List<Coordinate> way = new ArrayList<Coordinate>();
+		Coordinate wrongTurnPoint = wrongTurn >= 0
+				&& wrongTurn < plan.getNumberOfInstructions() ? plan
+				.getInstruction(wrongTurn).getDecisionPoint() : null;
+		for (int i = 0; i < route.getNumberOfShapePoints(); i++) {
+			Coordinate point = route.getShapePoint(i);
+			way.add(point);
+			if (i > 0 && point.equals(wrongTurnPoint)) {
+				// Go straight on and come back again
+				Coordinate previous = route.getShapePoint(i - 1);
+				double length = GeoMath.haversine(previous.getLatitude(),
+						previous.getLongitude(), point.getLatitude(),
+						point.getLongitude());
+				if (length > 0) {
+					double f = WRONG_TURN_LENGTH / length;
+					way.add(new Coordinate(point.getLatitude() + f
+							* (point.getLatitude() - previous.getLatitude()),
+							point.getLongitude()
+									+ f
+									* (point.getLongitude() - previous
+											.getLongitude())));
+					way.add(point);
+				}
+				wrongTurnPoint = null;
+			}
+		}
+
+		// Drive along the way with a constant speed
+		Random random = new Random(seed);
+		double metersPerDegree = GeoMath.EARTH_RADIUS * Math.PI / 180;
+		List<Fix> trace = new ArrayList<Fix>();
+		double step = speed * interval / 1000;
+		double position = 0;
+		double wayStart = 0;
+		for (int i = 0; i < way.size() - 1; i++) {
+			Coordinate a = way.get(i);
+			Coordinate b = way.get(i + 1);
+			double length = GeoMath.haversine(a.getLatitude(),
+					a.getLongitude(), b.getLatitude(), b.getLongitude());
+			while (position <= wayStart + length) {
+				double f = length > 0 ? (position - wayStart) / length : 0;
+				double lat = a.getLatitude() + f
+						* (b.getLatitude() - a.getLatitude());
+				double lng = a.getLongitude() + f
+						* (b.getLongitude() - a.getLongitude());
+				lat += random.nextGaussian() * noise / metersPerDegree;
+				lng += random.nextGaussian() * noise / metersPerDegree
+						/ GeoMath.cosLatitude(lat);
+				trace.add(new Fix(trace.size() * interval, lat, lng));
+				position += step;
+			}
+			wayStart += length;
+		}
+		return trace.toArray(new Fix[trace.size()]);
+	}
+
+	/**
+	 * Read the guidance
+	 * 
+	 * @param file
+	 *            The guidance file
+	 * @return The route
+	 * @throws IOException
+	 *             If the guidance could not be read
+	 */
+	private static Route readRoute(String file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			Route route = new Route(in);
+			if (!route.isImportSuccessful()) {
+				throw new IOException("Invalid guidance: " + file);
+			}
+			return route;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read a trace from a CSV file. Each line contains the time in seconds,
+	 * the latitude and the longitude. Lines which do not start with a number
+	 * (e.g. a header) are skipped.
+	 * 
+	 * @param file
+	 *            The CSV file
+	 * @return The trace
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static Fix[] readCsv(String file) throws IOException {
+		List<Fix> trace = new ArrayList<Fix>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] values = line.split("[,;\\s]+");
+				if (values.length < 3) {
+					continue;
+				}
+				try {
+					trace.add(new Fix(
+							(long) (Double.parseDouble(values[0]) * 1000),
+							Double.parseDouble(values[1]), Double
+									.parseDouble(values[2])));
+				} catch (NumberFormatException e) {
+					// Skip the header
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return trace.toArray(new Fix[trace.size()]);
+	}
+
+	/**
+	 * Write a trace into a CSV file
+	 * 
+	 * @param trace
+	 *            The trace
+	 * @param file
+	 *            The CSV file
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	private static void writeCsv(Fix[] trace, String file) throws IOException {
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write("time,lat,lng\n");
+			for (Fix fix : trace) {
+				writer.write(String.format(Locale.US, "%.3f,%.6f,%.6f\n",
+						fix.time / 1000.0, fix.lat, fix.lng));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Read a trace from the track points of a GPX file. Track points without
+	 * a time are one second apart.
+	 * 
+	 * @param file
+	 *            The GPX file
+	 * @return The trace
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static Fix[] readGpx(String file) throws IOException {
+		final List<Fix> trace = new ArrayList<Fix>();
+		final SimpleDateFormat format = new SimpleDateFormat(
+				"yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		DefaultHandler handler = new DefaultHandler() {
+
+			/**
+			 * Latitude of the current track point
+			 */
+			private double lat;
+
+			/**
+			 * Longitude of the current track point
+			 */
+			private double lng;
+
+			/**
+			 * Time of the current track point or <code>null</code> if it has
+			 * none
+			 */
+			private StringBuilder time;
+
+			/**
+			 * Time of the first track point in milliseconds
+			 */
+			private long firstTime = -1;
+
+			@Override
+			public void startElement(String uri, String localName,
+					String qName, Attributes attributes) {
+				if (qName.equals("trkpt")) {
+					this.lat = Double.parseDouble(attributes.getValue("lat"));
+					this.lng = Double.parseDouble(attributes.getValue("lon"));
+					this.time = null;
+				} else if (qName.equals("time")) {
+					this.time = new StringBuilder();
+				}
+			}
+
+			@Override
+			public void characters(char[] ch, int start, int length) {
+				if (this.time != null) {
+					this.time.append(ch, start, length);
+				}
+			}
+
+			@Override
+			public void endElement(String uri, String localName, String qName)
+					throws SAXException {
+				if (!qName.equals("trkpt")) {
+					return;
+				}
+				long fixTime = trace.size() * 1000L;
+				if (this.time != null) {
+					// Cut off fractions of seconds and the time zone (UTC)
+					String text = this.time.toString().trim();
+					try {
+						fixTime = format.parse(text).getTime();
+						int dot = text.indexOf('.');
+						if (dot > 0) {
+							int end = dot + 1;
+							while (end < text.length()
+									&& Character.isDigit(text.charAt(end))) {
+								end++;
+							}
+							fixTime += (long) (Double.parseDouble(text
+									.substring(dot, end)) * 1000);
+						}
+					} catch (ParseException e) {
+						throw new SAXException("Invalid time: " + text);
+					}
+					if (this.firstTime < 0) {
+						this.firstTime = fixTime;
+					}
+					fixTime -= this.firstTime;
+				}
+				trace.add(new Fix(fixTime, this.lat, this.lng));
+			}
+		};
+
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(in, handler);
+		} catch (SAXException e) {
+			throw new IOException(e.getMessage());
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e.getMessage());
+		} finally {
+			in.close();
+		}
+		return trace.toArray(new Fix[trace.size()]);
+	}
+}